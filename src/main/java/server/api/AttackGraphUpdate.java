@@ -0,0 +1,311 @@
+package server.api;
+
+import server.attackgraph.Arc;
+import server.attackgraph.AttackGraph;
+import server.attackgraph.AttackGraphDelta;
+import server.attackgraph.AttackPath;
+import server.attackgraph.ImpactMetric;
+import server.attackgraph.MulvalAttackGraph;
+import server.attackgraph.Vertex;
+import server.attackgraph.fact.DataLogCommand;
+import server.hostInformation.InformationSystem;
+import server.monitoring.Monitoring;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incremental update of the attack graph and of the attack paths of a monitoring object, when only some of the
+ * facts given to MulVAL change (for example after a new vulnerability scan).
+ * <p>
+ * Only the attack paths whose target depends on a changed fact are computed and scored again, the other
+ * attack paths are kept. When the change only removes facts, the attack graph is updated without running
+ * MulVAL; when it adds facts that are not in the attack graph yet, MulVAL is run again to derive their
+ * consequences, and the unchanged part of the new attack graph is found by comparing it with the previous one.
+ */
+public class AttackGraphUpdate {
+
+    /**
+     * Load the facts of a MulVAL input file
+     *
+     * @param mulvalInputFilePath the path of the MulVAL input file
+     * @return the normalized facts of the file
+     * @throws IOException
+     */
+    public static Set<String> loadMulVALFacts(String mulvalInputFilePath) throws IOException {
+        Set<String> result = new HashSet<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(mulvalInputFilePath));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String fact = getFact(line);
+                if (fact != null)
+                    result.add(AttackGraphDelta.normalizeFact(fact));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * Apply a delta on a MulVAL input file and write the result in another file: the lines of the removed facts are
+     * deleted and the added facts are appended at the end of the file. The MulVAL input file is not modified, so
+     * that it still matches the published attack graph if the update fails.
+     *
+     * @param mulvalInputFilePath the path of the MulVAL input file
+     * @param outputFilePath      the path of the updated MulVAL input file
+     * @param delta               the change of the facts
+     * @throws IOException
+     */
+    public static void applyDeltaToMulVALInputFile(String mulvalInputFilePath, String outputFilePath, AttackGraphDelta delta) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        Set<String> existingFacts = new HashSet<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(mulvalInputFilePath));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String fact = getFact(line);
+                if (fact != null) {
+                    String normalized = AttackGraphDelta.normalizeFact(fact);
+                    if (delta.removedFacts.contains(normalized))
+                        continue;
+                    existingFacts.add(normalized);
+                }
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        PrintWriter writer = new PrintWriter(outputFilePath);
+        try {
+            for (String line : lines) {
+                writer.println(line);
+            }
+            for (String fact : delta.addedFacts) {
+                if (!existingFacts.contains(fact))
+                    writer.println(fact + ".");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Create an empty file for the updated version of a MulVAL input file, in the folder of this file
+     * (so that it can replace it atomically)
+     *
+     * @param mulvalInputFilePath the path of the MulVAL input file
+     * @return the path of the created file
+     * @throws IOException
+     */
+    public static String createUpdatedMulVALInputFile(String mulvalInputFilePath) throws IOException {
+        File mulvalInputFile = new File(mulvalInputFilePath).getAbsoluteFile();
+        return File.createTempFile(mulvalInputFile.getName() + ".", ".update", mulvalInputFile.getParentFile()).getAbsolutePath();
+    }
+
+    /**
+     * Replace a MulVAL input file by its updated version, once the update has been published
+     *
+     * @param updatedFilePath     the path of the updated MulVAL input file, which is moved
+     * @param mulvalInputFilePath the path of the MulVAL input file
+     * @throws IOException
+     */
+    public static void replaceMulVALInputFile(String updatedFilePath, String mulvalInputFilePath) throws IOException {
+        Files.move(Paths.get(updatedFilePath), Paths.get(mulvalInputFilePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param line a line of a MulVAL input file
+     * @return the fact of the line (without its final dot), null if the line is not a fact
+     */
+    private static String getFact(String line) {
+        String result = line.trim();
+        if (!result.endsWith(".") || result.startsWith("%") || result.startsWith("/*") || result.contains(":-"))
+            return null;
+        result = result.substring(0, result.length() - 1).trim();
+        if (!DataLogCommand.isADataLogFact(result))
+            return null;
+        return result;
+    }
+
+    /**
+     * Compute the attack graph and the attack paths of a monitoring object after a change of the MulVAL facts.
+     * The monitoring object is not modified (it may be read by other requests): the result is set in another
+     * monitoring object. If the delta adds facts that are not in the attack graph, the MulVAL input file must
+     * already contain them, as MulVAL is run again on this file.
+     *
+     * @param monitoring          the monitoring object to update
+     * @param updatedMonitoring   the monitoring object in which the updated attack graph and attack paths are set
+     * @param delta               the change of the facts
+     * @param informationSystem   the information system after the change (for the impact metrics of the vertices)
+     * @param mulvalInputFilePath the path of the MulVAL input file containing the facts after the change
+     * @return a summary of the update
+     * @throws Exception
+     */
+    public static JSONObject update(Monitoring monitoring, Monitoring updatedMonitoring, AttackGraphDelta delta, InformationSystem informationSystem,
+                                    String mulvalInputFilePath) throws Exception {
+        MulvalAttackGraph previousAttackGraph = monitoring.getAttackGraph();
+        MulvalAttackGraph attackGraph;
+        Set<Integer> affectedVertices;
+        HashMap<Integer, Integer> newIdOfVertex = new HashMap<Integer, Integer>();
+        boolean regenerated = !delta.canBeAppliedWithoutMulVAL(previousAttackGraph);
+
+        if (!regenerated) {
+            Logger.getLogger(AttackGraphUpdate.class.getName()).log(Level.INFO, "Apply " + delta.removedFacts.size() + " removed facts on the attack graph");
+            attackGraph = previousAttackGraph.clone();
+            affectedVertices = new HashSet<Integer>(delta.applyTo(attackGraph));
+            affectedVertices.addAll(attackGraph.getDescendants(reloadMetrics(attackGraph, informationSystem)));
+            for (Integer id : attackGraph.vertices.keySet()) {
+                newIdOfVertex.put(id, id);
+            }
+        } else {
+            Logger.getLogger(AttackGraphUpdate.class.getName()).log(Level.INFO, delta.addedFacts.size() + " facts added, regenerate the attack graph with MulVAL");
+            AttackGraph generatedAttackGraph = MulVALConnection.generateAttackGraphWithMulVal(mulvalInputFilePath, null);
+            if (generatedAttackGraph == null)
+                throw new Exception("the attack graph is empty");
+            attackGraph = (MulvalAttackGraph) generatedAttackGraph;
+            attackGraph.loadMetricsFromTopology(informationSystem);
+
+            HashMap<Integer, Integer> previousIdOfVertex = new HashMap<Integer, Integer>();
+            affectedVertices = new HashSet<Integer>(AttackGraphDelta.getChangedVertices(previousAttackGraph, attackGraph, previousIdOfVertex));
+            for (Integer id : previousIdOfVertex.keySet()) {
+                newIdOfVertex.put(previousIdOfVertex.get(id), id);
+            }
+        }
+
+        //In top-K mode, when the attack path list is full, the attack paths that were not kept may now be among
+        //the best ones: all the attack paths are scored again
+        int attackPathLimit = monitoring.getAttackPathLimit();
+        boolean rescoreAll = attackPathLimit > 0 && monitoring.getAttackPathList().size() >= attackPathLimit;
+
+        //The attack paths whose goal is not affected are kept, on the vertices of the updated attack graph
+        List<AttackPath> attackPaths = new ArrayList<AttackPath>();
+        for (AttackPath attackPath : rescoreAll ? new ArrayList<AttackPath>() : monitoring.getAttackPathList()) {
+            Integer goal = getGoalId(attackPath);
+            Integer newGoal = goal == null ? null : newIdOfVertex.get(goal);
+            if (newGoal == null || affectedVertices.contains(newGoal))
+                continue;
+            AttackPath movedAttackPath = moveAttackPath(attackPath, attackGraph, newIdOfVertex);
+            if (movedAttackPath != null)
+                attackPaths.add(movedAttackPath);
+            else
+                affectedVertices.add(newGoal);
+        }
+
+        List<Integer> targets = null;
+        if (rescoreAll) {
+            Logger.getLogger(AttackGraphUpdate.class.getName()).log(Level.INFO, "Score the " + attackPathLimit + " best attack paths of the attack graph");
+        } else {
+            targets = new ArrayList<Integer>();
+            for (Integer id : affectedVertices) {
+                if (attackGraph.vertices.containsKey(id))
+                    targets.add(id);
+            }
+            Logger.getLogger(AttackGraphUpdate.class.getName()).log(Level.INFO, "Score the attack paths of " + targets.size() + " changed vertices");
+        }
+        List<AttackPath> scoredAttackPaths = attackGraph.scoreAttackGraphAndGetAttackPaths(attackGraph.getNumberOfVertices(), targets,
+                attackPathLimit, AttackPathManagement.MINIMUM_RELEVANT_VERTICES);
+        attackPaths.addAll(scoredAttackPaths);
+        AttackPath.sortAttackPaths(attackPaths);
+        if (attackPathLimit > 0 && attackPaths.size() > attackPathLimit) {
+            attackPaths = new ArrayList<AttackPath>(attackPaths.subList(0, attackPathLimit));
+        }
+
+        updatedMonitoring.setAttackGraph(attackGraph);
+        updatedMonitoring.setAttackPathList(attackPaths);
+        updatedMonitoring.setAttackPathLimit(attackPathLimit);
+        updatedMonitoring.setInformationSystem(informationSystem);
+
+        return new JSONObject()
+                .put("removed_facts", delta.removedFacts.size())
+                .put("added_facts", delta.addedFacts.size())
+                .put("regenerated", regenerated)
+                .put("changed_vertices", affectedVertices.size())
+                .put("rescored_attack_paths", scoredAttackPaths.size())
+                .put("attack_paths", attackPaths.size());
+    }
+
+    /**
+     * Load again the impact metrics of the vertices from the information system
+     *
+     * @param attackGraph       the attack graph
+     * @param informationSystem the information system
+     * @return the ids of the vertices whose impact changed
+     * @throws Exception
+     */
+    private static List<Integer> reloadMetrics(AttackGraph attackGraph, InformationSystem informationSystem) throws Exception {
+        HashMap<Integer, Double> previousImpacts = new HashMap<Integer, Double>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            previousImpacts.put(vertex.id, getImpact(vertex));
+            vertex.impactMetrics = new ArrayList<ImpactMetric>();
+        }
+        attackGraph.loadMetricsFromTopology(informationSystem);
+        List<Integer> result = new ArrayList<Integer>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            if (getImpact(vertex) != previousImpacts.get(vertex.id))
+                result.add(vertex.id);
+        }
+        return result;
+    }
+
+    private static double getImpact(Vertex vertex) {
+        double result = 0;
+        for (ImpactMetric impactMetric : vertex.impactMetrics) {
+            result += impactMetric.getValue() * impactMetric.getWeight();
+        }
+        return result;
+    }
+
+    /**
+     * @param attackPath an attack path
+     * @return the id of the goal of the attack path (the vertex without outgoing arc), null if it has no arc
+     */
+    private static Integer getGoalId(AttackPath attackPath) {
+        Set<Integer> sources = new HashSet<Integer>();
+        for (Arc arc : attackPath.arcs) {
+            sources.add(arc.source.id);
+        }
+        for (Arc arc : attackPath.arcs) {
+            if (!sources.contains(arc.destination.id))
+                return arc.destination.id;
+        }
+        return null;
+    }
+
+    /**
+     * Create the same attack path on the vertices of another attack graph
+     *
+     * @param attackPath     the attack path
+     * @param attackGraph    the other attack graph
+     * @param newIdOfVertex  the id in the other attack graph of each vertex of the attack path
+     * @return the attack path in the other attack graph, null if one of its vertices is not in the other attack graph
+     */
+    private static AttackPath moveAttackPath(AttackPath attackPath, AttackGraph attackGraph, HashMap<Integer, Integer> newIdOfVertex) {
+        AttackPath result = new AttackPath();
+        result.scoring = attackPath.scoring;
+        for (Arc arc : attackPath.arcs) {
+            Integer source = newIdOfVertex.get(arc.source.id);
+            Integer destination = newIdOfVertex.get(arc.destination.id);
+            if (source == null || destination == null)
+                return null;
+            result.addArc(new Arc(result.getVertexFromAttackGraph(source, attackGraph), result.getVertexFromAttackGraph(destination, attackGraph)));
+        }
+        return result;
+    }
+}
@@ -1,7 +1,12 @@
 package server.api;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import server.attackgraph.AttackGraph;
+import server.attackgraph.AttackGraphSnapshot;
 import server.attackgraph.AttackPath;
 import server.monitoring.Monitoring;
 import server.properties.ProjectProperties;
@@ -10,18 +15,28 @@ import org.json.JSONObject;
 
 
 public class AttackPathManagement {
-    
+
+    /**
+     * The minimum number of vertices of a relevant attack path (with 3 vertices or less, the attacker pwns its own host)
+     */
+    public static final int MINIMUM_RELEVANT_VERTICES = 4;
+
      /**
-     * Extract
+     * Extract the scored attack paths of an attack graph. The attack graph and the attack paths are
+     * also saved in the tmp-output folder when the scoring-debug-output property is true.
      *
      * @param attackGraph the attack graph
+     * @param previousMaxScore the previous max score (used for normalization)
      * @return the scores extracted from the attack graph 
      */
     public static List<AttackPath> scoreAttackPaths(AttackGraph attackGraph, double previousMaxScore) {
         try {
-            String outputFolderPath = ProjectProperties.getInstance().getProperty("tmp-output");
-            attackGraph.saveToXmlFile(outputFolderPath + "/attack-graph-to-score.xml");
-            return attackGraph.scoreAttackGraphAndGetAttackPaths(outputFolderPath + "/scored-attack-paths.xml", previousMaxScore);
+            if (Boolean.parseBoolean(ProjectProperties.getInstance().getProperty("scoring-debug-output"))) {
+                String outputFolderPath = ProjectProperties.getInstance().getProperty("tmp-output");
+                attackGraph.saveToXmlFile(outputFolderPath + "/attack-graph-to-score.xml");
+                return attackGraph.scoreAttackGraphAndGetAttackPaths(outputFolderPath + "/scored-attack-paths.xml", previousMaxScore);
+            }
+            return attackGraph.scoreAttackGraphAndGetAttackPaths(previousMaxScore);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -29,7 +44,77 @@ public class AttackPathManagement {
 
         return null;
     }
-    
+
+    /**
+     * Extract the relevant scored attack paths of an attack graph (see {@link #keepRelevantAttackPaths(List)}),
+     * dropping the other attack paths while they are generated. In top-K mode, only the topK attack paths with the
+     * highest scores are kept. The attack graph and the kept attack paths are also saved in the tmp-output folder
+     * when the scoring-debug-output property is true.
+     *
+     * @param attackGraph the attack graph
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param topK the maximum number of attack paths kept (0 to keep all the relevant attack paths)
+     * @return the relevant attack paths, sorted by descending scoring
+     */
+    public static List<AttackPath> scoreRelevantAttackPaths(AttackGraph attackGraph, double previousMaxScore, int topK) {
+        try {
+            if (Boolean.parseBoolean(ProjectProperties.getInstance().getProperty("scoring-debug-output"))) {
+                String outputFolderPath = ProjectProperties.getInstance().getProperty("tmp-output");
+                attackGraph.saveToXmlFile(outputFolderPath + "/attack-graph-to-score.xml");
+                return attackGraph.scoreAttackGraphAndGetAttackPaths(outputFolderPath + "/scored-attack-paths.xml", previousMaxScore,
+                        topK, MINIMUM_RELEVANT_VERTICES);
+            }
+            return attackGraph.scoreAttackGraphAndGetAttackPaths(previousMaxScore, null, topK, MINIMUM_RELEVANT_VERTICES);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the number of attack paths kept by default in top-K mode
+     *
+     * @return the attack-path-top-k property, 0 (all the attack paths are kept) if it is not set
+     */
+    public static int getDefaultTopK() {
+        return ProjectProperties.getInstance().getIntegerProperty("attack-path-top-k", 0);
+    }
+
+    /**
+     * Delete the attack paths that have 3 vertices or less (attacker that pown its own host)
+     *
+     * @param attackPaths the scored attack paths
+     * @return the attack paths to keep, in the same order
+     */
+    public static List<AttackPath> keepRelevantAttackPaths(List<AttackPath> attackPaths) {
+        List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
+        for (AttackPath attackPath : attackPaths) {
+            if (attackPath.vertices.size() >= MINIMUM_RELEVANT_VERTICES) {
+                attackPathToKeep.add(attackPath);
+            }
+        }
+        return attackPathToKeep;
+    }
+
+    /**
+     * Save the attack graph and the attack paths of a monitoring object in the snapshot file, if configured
+     *
+     * @param monitoring the monitoring object
+     */
+    public static void saveSnapshot(Monitoring monitoring) {
+        String snapshotFilePath = ProjectProperties.getInstance().getProperty("snapshot-file");
+        if (snapshotFilePath == null || snapshotFilePath.isEmpty()) {
+            return;
+        }
+        try {
+            new AttackGraphSnapshot(monitoring.getAttackGraph(), monitoring.getAttackPathList()).saveToFile(snapshotFilePath);
+        } catch (IOException e) {
+            Logger.getLogger(AttackPathManagement.class.getName()).log(Level.WARNING, "The snapshot can not be saved in " + snapshotFilePath, e);
+        }
+    }
+
     /**
      * @param monitoring a monitoring object
      * @return the XML contained all the attack paths 
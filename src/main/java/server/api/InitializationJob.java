@@ -0,0 +1,499 @@
+package server.api;
+
+import server.attackgraph.AttackGraph;
+import server.attackgraph.AttackPath;
+import server.attackgraph.MulvalAttackGraph;
+import server.database.Database;
+import server.hostInformation.InformationSystem;
+import server.monitoring.Monitoring;
+import server.monitoring.MonitoringRegistry;
+import server.properties.ProjectProperties;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A generation of the attack graph and of the scored attack paths (python input generation, MulVAL and scoring
+ * function), whose result is published as a new version of the monitoring object in the
+ * {@link MonitoringRegistry} when it succeeds.
+ * <p>
+ * The job can be run directly or submitted to the {@link JobManager}. Its status and the progress of each stage
+ * can be read while it runs, and it can be cancelled: the running python or MulVAL process is killed, with the
+ * processes of its process group, and the thread of the job is interrupted, which stops the exploration of the attack paths between two targets
+ * (see {@link server.scoring.AttackPaths}).
+ */
+public class InitializationJob implements Runnable {
+
+    /**
+     * The stages of the generation, in their order of execution
+     */
+    public enum Stage {
+        INPUT_GENERATION, TOPOLOGY_LOADING, ATTACK_GRAPH_GENERATION, SCORING
+    }
+
+    /**
+     * The status of a job or of a stage
+     */
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * The identifier of the job
+     */
+    private final String id = UUID.randomUUID().toString();
+
+    /**
+     * True to generate the attack graph from the test inputs
+     */
+    private final boolean isTest;
+
+    /**
+     * The vulnerability database
+     */
+    private final Database database;
+
+    /**
+     * The maximum number of attack paths kept, with the highest scores (0 to keep all the attack paths)
+     */
+    private final int topK;
+
+    /**
+     * The version of the monitoring object published by the job, 0 if it has not been published
+     */
+    private volatile long publishedVersion = 0;
+
+    /**
+     * The status of the job
+     */
+    private volatile Status status = Status.QUEUED;
+
+    /**
+     * The status of each stage
+     */
+    private final Status[] stageStatus = new Status[Stage.values().length];
+
+    /**
+     * The start and end times of each stage (0 if not started or not finished)
+     */
+    private final long[] stageStartTimes = new long[Stage.values().length];
+    private final long[] stageEndTimes = new long[Stage.values().length];
+
+    /**
+     * The submission, start and end times of the job
+     */
+    private final long submissionTime = System.currentTimeMillis();
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+
+    /**
+     * The error message, if the job failed
+     */
+    private volatile String error = null;
+
+    /**
+     * The number of attack paths of the result, if the job succeeded
+     */
+    private volatile int attackPathNumber = 0;
+
+    /**
+     * True if the job has been cancelled
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * The external process currently running for the job
+     */
+    private Process runningProcess = null;
+
+    /**
+     * The id of the process group of the running process, 0 if the process has no process group of its own
+     */
+    private int runningProcessGroup = 0;
+
+    /**
+     * The future of the job, when it has been submitted to an executor
+     */
+    private Future<?> future = null;
+
+    /**
+     * The thread running the job, null when it is not running
+     */
+    private Thread runner = null;
+
+    /**
+     * Create a job
+     *
+     * @param isTest   true to generate the attack graph from the test inputs
+     * @param database the vulnerability database
+     */
+    public InitializationJob(boolean isTest, Database database) {
+        this(isTest, database, AttackPathManagement.getDefaultTopK());
+    }
+
+    /**
+     * Create a job keeping only the best attack paths
+     *
+     * @param isTest   true to generate the attack graph from the test inputs
+     * @param database the vulnerability database
+     * @param topK     the maximum number of attack paths kept, with the highest scores (0 to keep all the attack paths)
+     */
+    public InitializationJob(boolean isTest, Database database, int topK) {
+        this.isTest = isTest;
+        this.database = database;
+        this.topK = topK;
+        for (Stage stage : Stage.values()) {
+            stageStatus[stage.ordinal()] = Status.QUEUED;
+        }
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            status = Status.RUNNING;
+            startTime = System.currentTimeMillis();
+            runner = Thread.currentThread();
+        }
+        Stage stage = null;
+        try {
+            String topologyFilePath = ProjectProperties.getInstance().getProperty("output-topology");
+
+            stage = startStage(Stage.INPUT_GENERATION);
+            //the MulVAL input file and the output folder are shared with the other jobs and the updates
+            //(interruptible, so that a cancelled job waiting for the lock stops)
+            MulVALConnection.getMulVALLock().lockInterruptibly();
+            InformationSystem informationSystem;
+            AttackGraph attackGraph;
+            try {
+                Logger.getLogger(InitializationJob.class.getName()).log(Level.INFO, "Generating topology and mulval inputs " + topologyFilePath);
+                if (!MulVALConnection.prepareMulVALInputs(isTest, this)) {
+                    throw new Exception("the MulVAL inputs can not be generated");
+                }
+
+                stage = startStage(Stage.TOPOLOGY_LOADING);
+                Logger.getLogger(InitializationJob.class.getName()).log(Level.INFO, "Loading topology " + topologyFilePath);
+                informationSystem = MulVALConnection.loadTopologyXMLFile(topologyFilePath, database);
+                if (informationSystem == null) {
+                    throw new Exception("the topology can not be loaded");
+                }
+
+                stage = startStage(Stage.ATTACK_GRAPH_GENERATION);
+                attackGraph = MulVALConnection.generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile(this);
+                if (attackGraph == null) {
+                    throw new Exception("the attack graph is empty");
+                }
+            } finally {
+                MulVALConnection.getMulVALLock().unlock();
+            }
+
+            stage = startStage(Stage.SCORING);
+            Logger.getLogger(InitializationJob.class.getName()).log(Level.INFO, "Launch scoring function");
+            attackGraph.loadMetricsFromTopology(informationSystem);
+            //The attack paths that have less than 3 hosts (attacker that pown its own host) are dropped while they are scored
+            List<AttackPath> attackPaths = AttackPathManagement.scoreRelevantAttackPaths(attackGraph, attackGraph.getNumberOfVertices(), topK);
+            if (attackPaths == null) {
+                throw new Exception("the attack paths can not be scored");
+            }
+            Logger.getLogger(InitializationJob.class.getName()).log(Level.INFO, attackPaths.size() + " attack paths scored");
+
+            Monitoring monitoring = new Monitoring();
+            monitoring.setAttackPathList(attackPaths);
+            monitoring.setInformationSystem(informationSystem);
+            monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
+            monitoring.setAttackPathLimit(topK);
+
+            //the result is not published once the job is cancelled
+            Monitoring published;
+            synchronized (this) {
+                checkCancelled();
+                published = MonitoringRegistry.getInstance().publish(monitoring);
+                if (published == null) {
+                    throw new Exception("a more recent attack graph has been published during the job");
+                }
+                publishedVersion = published.getVersion();
+                attackPathNumber = attackPaths.size();
+                finish(stage, Status.SUCCEEDED, null);
+            }
+            AttackPathManagement.saveSnapshot(published);
+        } catch (Exception e) {
+            if (cancelled) {
+                finish(stage, Status.CANCELLED, null);
+            } else {
+                Logger.getLogger(InitializationJob.class.getName()).log(Level.SEVERE, "The job " + id + " failed", e);
+                finish(stage, Status.FAILED, e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+        }
+    }
+
+    /**
+     * End the previous stage and start a stage
+     *
+     * @param stage the stage to start
+     * @return the started stage
+     */
+    private synchronized Stage startStage(Stage stage) {
+        checkCancelled();
+        long now = System.currentTimeMillis();
+        if (stage.ordinal() > 0) {
+            stageStatus[stage.ordinal() - 1] = Status.SUCCEEDED;
+            stageEndTimes[stage.ordinal() - 1] = now;
+        }
+        stageStatus[stage.ordinal()] = Status.RUNNING;
+        stageStartTimes[stage.ordinal()] = now;
+        return stage;
+    }
+
+    private synchronized void finish(Stage lastStage, Status finalStatus, String errorMessage) {
+        long now = System.currentTimeMillis();
+        if (lastStage != null) {
+            stageStatus[lastStage.ordinal()] = finalStatus;
+            stageEndTimes[lastStage.ordinal()] = now;
+        }
+        for (Stage stage : Stage.values()) {
+            if (stageStatus[stage.ordinal()] == Status.QUEUED && finalStatus == Status.CANCELLED) {
+                stageStatus[stage.ordinal()] = Status.CANCELLED;
+            }
+        }
+        error = errorMessage;
+        endTime = now;
+        status = finalStatus;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("The job " + id + " has been cancelled");
+        }
+    }
+
+    /**
+     * Cancel the job: a queued job will not run, a running job is stopped by killing its running process and by
+     * interrupting its thread
+     *
+     * @return true if the job was queued or running
+     */
+    public synchronized boolean cancel() {
+        if (status != Status.QUEUED && status != Status.RUNNING) {
+            return false;
+        }
+        cancelled = true;
+        killRunningProcess();
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (runner != null) {
+            runner.interrupt();
+        }
+        if (status == Status.QUEUED) {
+            finish(null, Status.CANCELLED, null);
+        }
+        return true;
+    }
+
+    /**
+     * Set the external process currently running for the job, killed if the job is cancelled
+     *
+     * @param process the running process (null when it is finished)
+     */
+    synchronized void setRunningProcess(Process process) {
+        setRunningProcess(process, 0);
+    }
+
+    /**
+     * Set the external process currently running for the job, killed with all the processes of its process group
+     * if the job is cancelled
+     *
+     * @param process      the running process (null when it is finished)
+     * @param processGroup the id of the process group of the process, 0 if it has no process group of its own
+     */
+    synchronized void setRunningProcess(Process process, int processGroup) {
+        runningProcess = process;
+        runningProcessGroup = process == null ? 0 : processGroup;
+        if (cancelled) {
+            killRunningProcess();
+        }
+    }
+
+    /**
+     * Kill the running process and the processes of its process group, and close its streams so that a thread
+     * reading its output returns immediately
+     */
+    private void killRunningProcess() {
+        if (runningProcess == null) {
+            return;
+        }
+        if (runningProcessGroup > 0) {
+            try {
+                new ProcessBuilder("kill", "-KILL", "--", "-" + runningProcessGroup).start().waitFor();
+            } catch (IOException e) {
+                Logger.getLogger(InitializationJob.class.getName()).log(Level.WARNING, "The process group " + runningProcessGroup + " can not be killed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        runningProcess.destroyForcibly();
+        try {
+            runningProcess.getOutputStream().close();
+            runningProcess.getInputStream().close();
+            runningProcess.getErrorStream().close();
+        } catch (IOException e) {
+            Logger.getLogger(InitializationJob.class.getName()).log(Level.FINE, null, e);
+        }
+    }
+
+    /**
+     * Set the future of the job
+     *
+     * @param future the future returned by the executor
+     */
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Wait for the end of the job, once it has been submitted to the {@link JobManager}
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return true if the job is finished
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean awaitCompletion(long timeout) throws InterruptedException {
+        Future<?> submitted;
+        synchronized (this) {
+            submitted = future;
+        }
+        if (submitted != null) {
+            try {
+                submitted.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (CancellationException e) {
+                //the job has been cancelled, it is finished once its thread has stopped
+            } catch (ExecutionException e) {
+                Logger.getLogger(InitializationJob.class.getName()).log(Level.SEVERE, "The job " + id + " failed", e);
+            }
+        }
+        return isFinished();
+    }
+
+    /**
+     * @return the job and the progress of its stages in JSON
+     */
+    public synchronized JSONObject toJsonObject() {
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("type", isTest ? "initializeTest" : "initialize");
+        if (topK > 0) {
+            result.put("top_k", topK);
+        }
+        result.put("status", status.toString());
+        result.put("submitted", submissionTime);
+        if (startTime > 0) {
+            result.put("started", startTime);
+        }
+        if (endTime > 0) {
+            result.put("finished", endTime);
+        }
+
+        JSONArray stages = new JSONArray();
+        int finishedStages = 0;
+        for (Stage stage : Stage.values()) {
+            JSONObject stageObject = new JSONObject();
+            stageObject.put("stage", stage.toString());
+            stageObject.put("status", stageStatus[stage.ordinal()].toString());
+            if (stageStartTimes[stage.ordinal()] > 0) {
+                long end = stageEndTimes[stage.ordinal()] > 0 ? stageEndTimes[stage.ordinal()] : System.currentTimeMillis();
+                stageObject.put("duration", end - stageStartTimes[stage.ordinal()]);
+            }
+            if (stageStatus[stage.ordinal()] == Status.SUCCEEDED) {
+                finishedStages++;
+            }
+            stages.put(stageObject);
+        }
+        result.put("stages", stages);
+        result.put("progress", finishedStages * 100 / Stage.values().length);
+        if (error != null) {
+            result.put("error", error);
+        }
+        if (status == Status.SUCCEEDED) {
+            result.put("attack_paths", attackPathNumber);
+            result.put("version", publishedVersion);
+        }
+        return result;
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the identifier of the job
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets status.
+     *
+     * @return the status of the job
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets error.
+     *
+     * @return the error message if the job failed, else null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets published version.
+     *
+     * @return the version of the monitoring object published by the job, 0 if it has not been published
+     */
+    public long getPublishedVersion() {
+        return publishedVersion;
+    }
+
+    /**
+     * @return true if the job has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the job is finished (succeeded, failed or cancelled)
+     */
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    /**
+     * Gets end time.
+     *
+     * @return the end time of the job in milliseconds, 0 if it is not finished
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+}
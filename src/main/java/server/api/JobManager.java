@@ -0,0 +1,154 @@
+package server.api;
+
+import server.properties.ProjectProperties;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the initialization jobs outside of the HTTP request threads, on a bounded number of worker threads
+ * (job-threads property) with a bounded queue of waiting jobs (job-queue-size property).
+ * The finished jobs are kept so that their status can be read, up to job-history-size jobs.
+ */
+public class JobManager {
+
+    private static JobManager instance;
+
+    /**
+     * The executor running the jobs
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The jobs, by id, in their order of submission
+     */
+    private final LinkedHashMap<String, InitializationJob> jobs = new LinkedHashMap<String, InitializationJob>();
+
+    /**
+     * The maximum number of finished jobs kept
+     */
+    private final int historySize;
+
+    /**
+     * The maximum time to wait for the cancelled jobs to stop when the application is stopped, in seconds
+     */
+    private static final int SHUTDOWN_TIMEOUT = 10;
+
+    private JobManager() {
+        int threads = ProjectProperties.getInstance().getIntegerProperty("job-threads", 1);
+        int queueSize = ProjectProperties.getInstance().getIntegerProperty("job-queue-size", 4);
+        historySize = ProjectProperties.getInstance().getIntegerProperty("job-history-size", 20);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "initialization-job-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static synchronized JobManager getInstance() {
+        if (instance == null) {
+            instance = new JobManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Submit a job
+     *
+     * @param job the job to run
+     * @throws RejectedExecutionException if the queue of waiting jobs is full
+     */
+    public synchronized void submit(InitializationJob job) {
+        removeOldJobs();
+        job.setFuture(executor.submit(job));
+        jobs.put(job.getId(), job);
+        Logger.getLogger(JobManager.class.getName()).log(Level.INFO, "Job " + job.getId() + " submitted");
+    }
+
+    /**
+     * Get a job
+     *
+     * @param id the id of the job
+     * @return the job, null if it does not exist
+     */
+    public synchronized InitializationJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Gets jobs.
+     *
+     * @return the jobs, in their order of submission
+     */
+    public synchronized List<InitializationJob> getJobs() {
+        return new ArrayList<InitializationJob>(jobs.values());
+    }
+
+    /**
+     * Cancel a job
+     *
+     * @param id the id of the job
+     * @return true if the job was queued or running
+     */
+    public synchronized boolean cancel(String id) {
+        InitializationJob job = jobs.get(id);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        //free the place of the job in the queue
+        executor.purge();
+        return true;
+    }
+
+    /**
+     * Stop the jobs, when the application is stopped: the queued jobs will not run, the running jobs are cancelled
+     * and no job can be submitted anymore
+     */
+    public synchronized void shutdown() {
+        for (InitializationJob job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                Logger.getLogger(JobManager.class.getName()).log(Level.WARNING, "The jobs are still running after " + SHUTDOWN_TIMEOUT + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Remove the oldest finished jobs when more than historySize are kept
+     */
+    private void removeOldJobs() {
+        int finishedJobs = 0;
+        for (InitializationJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finishedJobs++;
+            }
+        }
+        Iterator<InitializationJob> iterator = jobs.values().iterator();
+        while (finishedJobs > historySize && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                finishedJobs--;
+            }
+        }
+    }
+}
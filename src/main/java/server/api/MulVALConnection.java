@@ -9,11 +9,27 @@ import server.properties.ProjectProperties;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class MulVALConnection {
 
+    /**
+     * Serializes the generations of the MulVAL input file and the runs of MulVAL: the initialization jobs and the
+     * updates of the attack graph write the same MulVAL input file and the same output folder
+     */
+    private static final ReentrantLock MULVAL_LOCK = new ReentrantLock();
+
+    /**
+     * Gets the MulVAL lock.
+     *
+     * @return the lock held while the MulVAL input file is generated or changed and while MulVAL runs
+     */
+    public static ReentrantLock getMulVALLock() {
+        return MULVAL_LOCK;
+    }
+
     /**
      * Load the information system from an XML File
      *
@@ -37,13 +53,35 @@ public class MulVALConnection {
      * @return the associated attack graph object
      */
     public static AttackGraph generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile() {
+        return generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile(null);
+    }
+
+    /**
+     * call MulVAL attack Graph Generation file
+     *
+     * @param job the job running the generation, which can cancel the MulVAL process (may be null)
+     * @return the associated attack graph object
+     */
+    public static AttackGraph generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile(InitializationJob job) {
+        return generateAttackGraphWithMulVal(ProjectProperties.getInstance().getProperty("MulVAL-input"), job);
+    }
+
+    /**
+     * call MulVAL attack Graph Generation file on a MulVAL input file, with the {@link #getMulVALLock() MulVAL lock}
+     * held by the caller
+     *
+     * @param mulvalInputFilePath the path of the MulVAL input file
+     * @param job                 the job running the generation, which can cancel the MulVAL process (may be null)
+     * @return the associated attack graph object
+     */
+    public static AttackGraph generateAttackGraphWithMulVal(String mulvalInputFilePath, InitializationJob job) {
         try {
             //Load all input informations
             String mulvalPath = ProjectProperties.getInstance().getProperty("MulVAL");
             String xsbPath = ProjectProperties.getInstance().getProperty("xsb");
             String outputFolderPath = ProjectProperties.getInstance().getProperty("tmp-output");
 
-            File mulvalInputFile = new File(ProjectProperties.getInstance().getProperty("MulVAL-input"));
+            File mulvalInputFile = new File(mulvalInputFilePath);
 
             File mulvalOutputFile = new File(outputFolderPath + "/AttackGraph.xml");
             if (mulvalOutputFile.exists()) {
@@ -51,7 +89,10 @@ public class MulVALConnection {
             }
 
             Logger.getLogger(MulVALConnection.class.getName()).log(Level.INFO, "Call MulVAL attack Generation");
-            ProcessBuilder processBuilder = new ProcessBuilder(mulvalPath + "utils/graph_gen.sh", mulvalInputFile.getAbsolutePath(), "-l");
+            //graph_gen.sh is run in its own process group, whose id is written first, so that a cancelled job can kill
+            //the XSB processes started by the script
+            ProcessBuilder processBuilder = new ProcessBuilder("setsid", "sh", "-c", "echo $$; exec \"$0\" \"$@\"",
+                    mulvalPath + "utils/graph_gen.sh", mulvalInputFile.getAbsolutePath(), "-l");
 
             if (ProjectProperties.getInstance().getProperty("MulVAL-rules") != null) {
                 processBuilder.command().add("-r");
@@ -68,10 +109,14 @@ public class MulVALConnection {
             Logger.getAnonymousLogger().log(Level.INFO, processBuilder.command().toString());
             try {
                 Process process = processBuilder.start();
-                StringBuilder output = new StringBuilder();
                 BufferedReader reader = new BufferedReader(
                         new InputStreamReader(process.getInputStream()));
-                String line;
+                String line = reader.readLine();
+                int processGroup = line != null && line.matches("\\d+") ? Integer.parseInt(line) : 0;
+                if (job != null) {
+                    job.setRunningProcess(process, processGroup);
+                }
+                StringBuilder output = new StringBuilder();
                 while ((line = reader.readLine()) != null) {
                     output.append(line + "\n");
                 }
@@ -83,7 +128,18 @@ public class MulVALConnection {
                 }
 
             } catch (IOException e) {
-                e.printStackTrace();
+                //the streams of the process are closed when the job is cancelled
+                if (job == null || !job.isCancelled()) {
+                    e.printStackTrace();
+                }
+            } finally {
+                if (job != null) {
+                    job.setRunningProcess(null);
+                }
+            }
+
+            if (job != null && job.isCancelled()) {
+                return null;
             }
 
             if (!mulvalOutputFile.exists()) {
@@ -96,7 +152,9 @@ public class MulVALConnection {
             return ag;
 
         } catch (Exception e) {
-            e.printStackTrace();
+            if (job == null || !job.isCancelled()) {
+                e.printStackTrace();
+            }
         }
 
         return null;
@@ -108,6 +166,18 @@ public class MulVALConnection {
      * @return boolean true if the execution was right
      */
     public static boolean prepareMulVALInputs(boolean isTest) {
+        return prepareMulVALInputs(isTest, null);
+    }
+
+    /**
+     * call python program that help generate MulVAL input file, with the {@link #getMulVALLock() MulVAL lock}
+     * held by the caller
+     *
+     * @param isTest true to use the test inputs
+     * @param job the job running the generation, which can cancel the python process (may be null)
+     * @return boolean true if the execution was right
+     */
+    public static boolean prepareMulVALInputs(boolean isTest, InitializationJob job) {
         try {
             //Load python path
             String pythonPath = ProjectProperties.getInstance().getProperty("python");
@@ -164,8 +234,20 @@ public class MulVALConnection {
             processBuilder.redirectOutput(new File(ProjectProperties.getInstance().getProperty("tmp-output") + "/input-generation.log"));
             processBuilder.redirectError(new File(ProjectProperties.getInstance().getProperty("tmp-output") + "/input-generation-err.log"));
             Process process = processBuilder.start();
-            process.waitFor();
+            if (job != null) {
+                job.setRunningProcess(process);
+            }
+            try {
+                process.waitFor();
+            } finally {
+                if (job != null) {
+                    job.setRunningProcess(null);
+                }
+            }
 
+            if (job != null && job.isCancelled()) {
+                return false;
+            }
             if (!mulvalInputFile.exists()) {
                 Logger.getAnonymousLogger().log(Level.WARNING, "have some problem for generate MulVAL input file , check log file");
                 return false;
@@ -173,7 +255,9 @@ public class MulVALConnection {
             return true;
 
         } catch (Exception e) {
-            e.printStackTrace();
+            if (job == null || !job.isCancelled()) {
+                e.printStackTrace();
+            }
         }
         return false;
     }
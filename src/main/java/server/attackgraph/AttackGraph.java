@@ -13,11 +13,16 @@ import org.jdom2.output.XMLOutputter;
 
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import server.scoring.ScoringAttackPath;
+import server.scoring.ScoringResult;
 
 
 public class AttackGraph implements Cloneable {
@@ -27,9 +32,25 @@ public class AttackGraph implements Cloneable {
     public HashMap<Integer, Vertex> vertices = new HashMap<Integer, Vertex>();
 
     /**
-     * A list of arcs between the vertices
+     * The arcs between the vertices, in their order of addition
      */
-    public ArrayList<Arc> arcs = new ArrayList<Arc>();
+    private ArrayList<Arc> arcList = new ArrayList<Arc>();
+
+    /**
+     * A list of arcs between the vertices (read only: they are changed with {@link #addArc(Arc)},
+     * {@link #deleteArc(Vertex, Vertex)} and {@link #deleteVertices(Collection)}, which keep the adjacency up to date)
+     */
+    public List<Arc> arcs = Collections.unmodifiableList(arcList);
+
+    /**
+     * The parents of each vertex (the sources of the arcs whose destination is the vertex), by vertex id
+     */
+    private HashMap<Integer, List<Vertex>> parentsOfVertex = new HashMap<Integer, List<Vertex>>();
+
+    /**
+     * The children of each vertex (the destinations of the arcs whose source is the vertex), by vertex id
+     */
+    private HashMap<Integer, List<Vertex>> childrenOfVertex = new HashMap<Integer, List<Vertex>>();
 
     /**
      * The global score of the attack graph
@@ -63,19 +84,108 @@ public class AttackGraph implements Cloneable {
         return vertex;
     }
     
-        /**
+    /**
      * @param outputPath the path in which the XML attack paths are saved
+     * @param previousMaxScore the previous max score (used for normalization)
      * @return The list of attack path extracted from this attack graph
      * @throws Exception
      */
     public List<AttackPath> scoreAttackGraphAndGetAttackPaths(String outputPath, double previousMaxScore) throws Exception {
-        double[] vertexIDTable = new double[this.getNumberOfVertices()];
+        return scoreAttackGraphAndGetAttackPaths(outputPath, previousMaxScore, 0, 0);
+    }
+
+    /**
+     * @param outputPath the path in which the XML attack paths are saved
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param topK the maximum number of attack paths kept, with the highest scores (0 to keep all the attack paths)
+     * @param minimumVertices the minimum number of vertices of a kept attack path
+     * @return The list of the kept attack paths extracted from this attack graph
+     * @throws Exception
+     */
+    public List<AttackPath> scoreAttackGraphAndGetAttackPaths(String outputPath, double previousMaxScore, int topK, int minimumVertices) throws Exception {
+        ScoringResult scoringResult = scoreAttackGraph(previousMaxScore, null, topK, minimumVertices);
+        ScoringAttackPath.saveToXmlFile(outputPath, scoringResult);
+        return AttackPath.loadAttackPathsFromScoringResult(scoringResult, this);
+    }
+
+    /**
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @return The list of attack path extracted from this attack graph, without going through a XML file
+     * @throws Exception
+     */
+    public List<AttackPath> scoreAttackGraphAndGetAttackPaths(double previousMaxScore) throws Exception {
+        return AttackPath.loadAttackPathsFromScoringResult(scoreAttackGraph(previousMaxScore), this);
+    }
+
+    /**
+     * Score the attack graph and compute only the attack paths ending at some vertices
+     *
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targets          the ids of the vertices whose attack paths are computed (the other targets are skipped)
+     * @return The list of attack path extracted from this attack graph for these targets
+     * @throws Exception
+     */
+    public List<AttackPath> scoreAttackGraphAndGetAttackPaths(double previousMaxScore, Collection<Integer> targets) throws Exception {
+        return AttackPath.loadAttackPathsFromScoringResult(scoreAttackGraph(previousMaxScore, targets), this);
+    }
+
+    /**
+     * Score the attack graph and keep only the best attack paths, while they are generated: the attack paths with
+     * less than minimumVertices vertices are dropped, and in top-K mode, only the topK attack paths with the
+     * highest scores are kept
+     *
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targets          the ids of the vertices whose attack paths are computed, null for all the targets
+     * @param topK             the maximum number of attack paths kept (0 to keep all the attack paths)
+     * @param minimumVertices  the minimum number of vertices of a kept attack path
+     * @return The list of the kept attack paths extracted from this attack graph, sorted by descending scoring
+     * @throws Exception
+     */
+    public List<AttackPath> scoreAttackGraphAndGetAttackPaths(double previousMaxScore, Collection<Integer> targets, int topK, int minimumVertices) throws Exception {
+        return AttackPath.loadAttackPathsFromScoringResult(scoreAttackGraph(previousMaxScore, targets, topK, minimumVertices), this);
+    }
+
+    /**
+     * Score the attack graph and compute its attack paths, the global score of the attack graph is updated
+     *
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @return the scored attack paths
+     * @throws Exception
+     */
+    protected ScoringResult scoreAttackGraph(double previousMaxScore) throws Exception {
+        return scoreAttackGraph(previousMaxScore, null);
+    }
+
+    /**
+     * Score the attack graph and compute the attack paths of some targets, the global score of the attack graph is updated
+     *
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targets          the ids of the vertices whose attack paths are computed, null for all the targets
+     * @return the scored attack paths
+     * @throws Exception
+     */
+    protected ScoringResult scoreAttackGraph(double previousMaxScore, Collection<Integer> targets) throws Exception {
+        return scoreAttackGraph(previousMaxScore, targets, 0, 0);
+    }
+
+    /**
+     * Score the attack graph and compute the best attack paths of some targets, the global score of the attack graph is updated
+     *
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targets          the ids of the vertices whose attack paths are computed, null for all the targets
+     * @param topK             the maximum number of attack paths kept (0 to keep all the attack paths)
+     * @param minimumVertices  the minimum number of vertices of a kept attack path
+     * @return the kept scored attack paths
+     * @throws Exception
+     */
+    protected ScoringResult scoreAttackGraph(double previousMaxScore, Collection<Integer> targets, int topK, int minimumVertices) throws Exception {
+        int[] vertexIDTable = new int[this.getNumberOfVertices()];
         String[] vertexFactTable = new String[this.getNumberOfVertices()];
         double[] vertexMulvalMetricTable = new double[this.getNumberOfVertices()];
         String[] vertexTypeTable = new String[this.getNumberOfVertices()];
 
-        double[] arcSrcTable = new double[this.arcs.size()];
-        double[] arcDstTable = new double[this.arcs.size()];
+        int[] arcSrcTable = new int[this.arcs.size()];
+        int[] arcDstTable = new int[this.arcs.size()];
         ImpactMetric[][] impactMetrics = new ImpactMetric[this.getNumberOfVertices()][];
 
         int i = 0;
@@ -101,10 +211,19 @@ public class AttackGraph implements Cloneable {
             arcSrcTable[j] = arc.destination.id;
         }
         System.out.println("Compute global score and compute attack paths");
-        this.globalScore = ScoringAttackPath.ScoreCalculator(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
-                arcSrcTable, arcDstTable, impactMetrics, outputPath, previousMaxScore);
+        int[] targetIDTable = null;
+        if (targets != null) {
+            targetIDTable = new int[targets.size()];
+            int t = 0;
+            for (Integer target : targets) {
+                targetIDTable[t++] = target;
+            }
+        }
+        ScoringResult scoringResult = ScoringAttackPath.scoreAttackGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
+                arcSrcTable, arcDstTable, impactMetrics, previousMaxScore, targetIDTable, topK, minimumVertices);
+        this.globalScore = scoringResult.getGlobalScore();
 
-        return AttackPath.loadAttackPathsFromFile(outputPath, this);
+        return scoringResult;
     }
     
      /**
@@ -118,19 +237,138 @@ public class AttackGraph implements Cloneable {
         output.output(toDomElement(), new FileOutputStream(filePath));
     }
 
+    /**
+     * Add an arc to the attack graph and update the adjacency of its vertices
+     *
+     * @param arc the arc to add
+     */
+    public synchronized void addArc(Arc arc) {
+        this.arcList.add(arc);
+        indexArc(arc);
+    }
+
     /**
      * Delete all arcs from a vertex to another
      *
      * @param fromVertex the source vertex
      * @param toVertex   the destination vertex
      */
-    public void deleteArc(Vertex fromVertex, Vertex toVertex) {
-        for (int i = 0; i < this.arcs.size(); i++) {
-            Arc arc = this.arcs.get(i);
+    public synchronized void deleteArc(Vertex fromVertex, Vertex toVertex) {
+        int i = 0;
+        while (i < this.arcList.size()) {
+            Arc arc = this.arcList.get(i);
             if (arc.source.id == fromVertex.id && arc.destination.id == toVertex.id) {
-                this.arcs.remove(i);
+                this.arcList.remove(i);
+            } else {
+                i++;
+            }
+        }
+        removeFromAdjacency(parentsOfVertex.get(toVertex.id), fromVertex.id);
+        if (fromVertex.id != toVertex.id) {
+            removeFromAdjacency(childrenOfVertex.get(fromVertex.id), toVertex.id);
+        }
+    }
+
+    /**
+     * Delete vertices and all the arcs from or to them
+     *
+     * @param vertexIds the ids of the vertices to delete
+     */
+    public synchronized void deleteVertices(Collection<Integer> vertexIds) {
+        Set<Integer> deleted = new HashSet<Integer>(vertexIds);
+        ArrayList<Arc> remainingArcs = new ArrayList<Arc>(this.arcList.size());
+        for (Arc arc : this.arcList) {
+            if (!deleted.contains(arc.source.id) && !deleted.contains(arc.destination.id)) {
+                remainingArcs.add(arc);
             }
         }
+        for (Integer id : deleted) {
+            this.vertices.remove(id);
+        }
+        this.arcList = remainingArcs;
+        this.arcs = Collections.unmodifiableList(remainingArcs);
+        parentsOfVertex = new HashMap<Integer, List<Vertex>>();
+        childrenOfVertex = new HashMap<Integer, List<Vertex>>();
+        for (Arc arc : this.arcList) {
+            indexArc(arc);
+        }
+    }
+
+    /**
+     * @param vertexIds the ids of vertices of the attack graph
+     * @return the ids of these vertices and of all the vertices reachable from them following the arcs
+     */
+    public synchronized Set<Integer> getDescendants(Collection<Integer> vertexIds) {
+        Set<Integer> result = new HashSet<Integer>(vertexIds);
+        List<Integer> toVisit = new ArrayList<Integer>(result);
+        while (!toVisit.isEmpty()) {
+            List<Vertex> children = childrenOfVertex.get(toVisit.remove(toVisit.size() - 1));
+            if (children == null) {
+                continue;
+            }
+            for (Vertex child : children) {
+                if (result.add(child.id)) {
+                    toVisit.add(child.id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the parents of the vertex, in the order of the arcs (read only)
+     */
+    public synchronized List<Vertex> getParents(Vertex vertex) {
+        return readOnlyAdjacency(parentsOfVertex.get(vertex.id));
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the children of the vertex, in the order of the arcs (read only)
+     */
+    public synchronized List<Vertex> getChildren(Vertex vertex) {
+        return readOnlyAdjacency(childrenOfVertex.get(vertex.id));
+    }
+
+    /**
+     * Add an arc to the adjacency. As in {@link Vertex#computeParentsAndChildren(AttackGraph)}, a loop is
+     * only a parent of its vertex.
+     *
+     * @param arc the arc
+     */
+    private void indexArc(Arc arc) {
+        getOrCreateAdjacency(parentsOfVertex, arc.destination.id).add(arc.source);
+        if (arc.source != arc.destination) {
+            getOrCreateAdjacency(childrenOfVertex, arc.source.id).add(arc.destination);
+        }
+    }
+
+    private static List<Vertex> getOrCreateAdjacency(HashMap<Integer, List<Vertex>> adjacency, int vertexId) {
+        List<Vertex> result = adjacency.get(vertexId);
+        if (result == null) {
+            result = new ArrayList<Vertex>(2);
+            adjacency.put(vertexId, result);
+        }
+        return result;
+    }
+
+    private static void removeFromAdjacency(List<Vertex> adjacentVertices, int vertexId) {
+        if (adjacentVertices == null) {
+            return;
+        }
+        for (int i = adjacentVertices.size() - 1; i >= 0; i--) {
+            if (adjacentVertices.get(i).id == vertexId) {
+                adjacentVertices.remove(i);
+            }
+        }
+    }
+
+    private static List<Vertex> readOnlyAdjacency(List<Vertex> adjacentVertices) {
+        if (adjacentVertices == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(adjacentVertices);
     }
 
     /**
@@ -248,14 +486,17 @@ public class AttackGraph implements Cloneable {
             copie.vertices.put(i, this.vertices.get(i).clone());
         }
 
-        copie.arcs = new ArrayList<Arc>();
+        copie.arcList = new ArrayList<Arc>(this.arcList.size());
+        copie.arcs = Collections.unmodifiableList(copie.arcList);
+        copie.parentsOfVertex = new HashMap<Integer, List<Vertex>>();
+        copie.childrenOfVertex = new HashMap<Integer, List<Vertex>>();
 
         //Change all the vertices references in the arcs
         for (int i = 0; i < this.arcs.size(); i++) {
             Vertex destination = copie.vertices.get(this.arcs.get(i).destination.id);
             Vertex source = copie.vertices.get(this.arcs.get(i).source.id);
             Arc arc = new Arc(source, destination);
-            copie.arcs.add(arc);
+            copie.addArc(arc);
         }
 
 
@@ -347,21 +588,18 @@ public class AttackGraph implements Cloneable {
                             InformationSystemGraphArc arc = new InformationSystemGraphArc();
                             arc.setSource(from);
                             arc.setDestination(to);
-                            vertex.computeParentsAndChildren(this);
                             //Try to find (if applicable) the related vulnerability
-                            Vertex directAccessChild = vertex.childOfType(true, "direct network access");
+                            //(the adjacency is read from the graph: the vertices may be shared with other threads)
+                            Vertex directAccessChild = vertex.childOfType(this, true, "direct network access");
                             if (directAccessChild == null) {
-                                directAccessChild = vertex.childOfType(true, "multi-hop access");
+                                directAccessChild = vertex.childOfType(this, true, "multi-hop access");
                             }
                             if (directAccessChild != null) {
-                                directAccessChild.computeParentsAndChildren(this);
-                                Vertex netAccessChild = directAccessChild.childOfType(false, "netAccess");
+                                Vertex netAccessChild = directAccessChild.childOfType(this, false, "netAccess");
                                 if (netAccessChild != null) {
-                                    netAccessChild.computeParentsAndChildren(this);
-                                    Vertex remoteExploitChild = netAccessChild.childOfType(true, "remote exploit of a server program");
+                                    Vertex remoteExploitChild = netAccessChild.childOfType(this, true, "remote exploit of a server program");
                                     if (remoteExploitChild != null) {
-                                        remoteExploitChild.computeParentsAndChildren(this);
-                                        Vertex vulnExistParent = remoteExploitChild.parentOfType(false, "vulExists");
+                                        Vertex vulnExistParent = remoteExploitChild.parentOfType(this, false, "vulExists");
                                         if (vulnExistParent != null && vulnExistParent.fact.datalogCommand.params.length > 2) {
                                             relatedVulneravility = vulnExistParent.fact.datalogCommand.params[1];
                                         }
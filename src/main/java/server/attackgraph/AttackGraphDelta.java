@@ -0,0 +1,324 @@
+package server.attackgraph;
+
+import server.attackgraph.fact.DataLogCommand;
+import server.attackgraph.fact.FactType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A change of the primitive facts given to MulVAL (vulExists, haclprimit, isInVlan, vlanToVlan,...), for
+ * example a vulnerability added to or removed from a service, a modified flow matrix line or a host moved
+ * to another VLAN.
+ * <p>
+ * A removed fact only removes the derivations that depend on it: the delta is applied on the attack graph
+ * without running MulVAL, by recomputing which of the descendants of the removed leaves can still be derived.
+ * An added fact which is not already a leaf of the attack graph may create new derivations, that only MulVAL
+ * can compute. In this case, the attack graph has to be regenerated, and only the vertices whose ancestors
+ * changed ({@link #getChangedVertices(AttackGraph, AttackGraph, HashMap)}) have to be scored again.
+ * <p>
+ * The facts are compared once normalized ({@link #normalizeFact(String)}), as the quotes of the MulVAL input
+ * file and of the attack graph generated by MulVAL may differ.
+ */
+public class AttackGraphDelta {
+
+    /**
+     * The normalized removed facts
+     */
+    public Set<String> removedFacts = new HashSet<String>();
+
+    /**
+     * The normalized added facts
+     */
+    public Set<String> addedFacts = new HashSet<String>();
+
+    /**
+     * Create an empty delta
+     */
+    public AttackGraphDelta() {
+
+    }
+
+    /**
+     * Compute the delta between two sets of facts
+     *
+     * @param previousFacts the facts before the change
+     * @param newFacts      the facts after the change
+     * @return the delta changing the previous facts into the new facts
+     */
+    public static AttackGraphDelta between(Collection<String> previousFacts, Collection<String> newFacts) {
+        Set<String> previous = new HashSet<String>();
+        for (String fact : previousFacts) {
+            previous.add(normalizeFact(fact));
+        }
+        Set<String> next = new HashSet<String>();
+        for (String fact : newFacts) {
+            next.add(normalizeFact(fact));
+        }
+
+        AttackGraphDelta result = new AttackGraphDelta();
+        for (String fact : previous) {
+            if (!next.contains(fact))
+                result.removedFacts.add(fact);
+        }
+        for (String fact : next) {
+            if (!previous.contains(fact))
+                result.addedFacts.add(fact);
+        }
+        return result;
+    }
+
+    /**
+     * Normalize a fact: no white spaces around the parameters, no quotes around the parameters and no final dot
+     *
+     * @param fact the fact string
+     * @return the normalized fact string
+     */
+    public static String normalizeFact(String fact) {
+        String result = fact.trim();
+        if (result.endsWith("."))
+            result = result.substring(0, result.length() - 1).trim();
+        if (!DataLogCommand.isADataLogFact(result))
+            return result;
+        DataLogCommand command = new DataLogCommand(result, null);
+        StringBuilder normalized = new StringBuilder(command.command).append('(');
+        for (int i = 0; i < command.params.length; i++) {
+            String param = command.params[i].trim();
+            if (param.length() >= 2 && ((param.startsWith("'") && param.endsWith("'")) || (param.startsWith("\"") && param.endsWith("\""))))
+                param = param.substring(1, param.length() - 1);
+            if (i > 0)
+                normalized.append(',');
+            normalized.append(param);
+        }
+        return normalized.append(')').toString();
+    }
+
+    /**
+     * Add a removed fact
+     *
+     * @param fact the fact string
+     */
+    public void removeFact(String fact) {
+        String normalized = normalizeFact(fact);
+        if (!addedFacts.remove(normalized))
+            removedFacts.add(normalized);
+    }
+
+    /**
+     * Add an added fact
+     *
+     * @param fact the fact string
+     */
+    public void addFact(String fact) {
+        String normalized = normalizeFact(fact);
+        if (!removedFacts.remove(normalized))
+            addedFacts.add(normalized);
+    }
+
+    /**
+     * @return true if the delta does not change any fact
+     */
+    public boolean isEmpty() {
+        return removedFacts.isEmpty() && addedFacts.isEmpty();
+    }
+
+    /**
+     * Check if the delta can be applied on an attack graph without running MulVAL
+     *
+     * @param attackGraph the attack graph
+     * @return true if all the added facts are already leaves of the attack graph
+     */
+    public boolean canBeAppliedWithoutMulVAL(AttackGraph attackGraph) {
+        if (addedFacts.isEmpty())
+            return true;
+        Set<String> leaves = new HashSet<String>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            if (vertex.type == VertexType.LEAF && vertex.fact != null)
+                leaves.add(normalizeFact(vertex.fact.factString));
+        }
+        return leaves.containsAll(addedFacts);
+    }
+
+    /**
+     * Apply the removed facts on an attack graph: the leaves of the removed facts are deleted, with all the
+     * vertices that can not be derived anymore. An AND vertex needs all its parents, an OR vertex one of its
+     * parents; a vertex that was only derived through a cycle of the attack graph is deleted too.
+     * The added facts are ignored (see {@link #canBeAppliedWithoutMulVAL(AttackGraph)}).
+     *
+     * @param attackGraph the attack graph
+     * @return the ids of the vertices which were depending on the removed facts (deleted or not)
+     */
+    public Set<Integer> applyTo(AttackGraph attackGraph) {
+        synchronized (attackGraph) {
+            Set<Integer> removedLeaves = new HashSet<Integer>();
+            for (Vertex vertex : attackGraph.vertices.values()) {
+                if (vertex.type == VertexType.LEAF && vertex.fact != null && removedFacts.contains(normalizeFact(vertex.fact.factString)))
+                    removedLeaves.add(vertex.id);
+            }
+            if (removedLeaves.isEmpty())
+                return Collections.emptySet();
+
+            Set<Integer> affected = attackGraph.getDescendants(removedLeaves);
+
+            //The vertices outside of the affected ones do not depend on the removed leaves: they are still derived.
+            //Starting from them, the affected vertices are derived again as long as their rule is satisfied.
+            HashMap<Integer, Integer> missingParents = new HashMap<Integer, Integer>();
+            List<Integer> derived = new ArrayList<Integer>();
+            for (Integer id : affected) {
+                Vertex vertex = attackGraph.vertices.get(id);
+                if (vertex == null || removedLeaves.contains(id))
+                    continue;
+                int parentsOutside = 0;
+                List<Vertex> parents = attackGraph.getParents(vertex);
+                for (Vertex parent : parents) {
+                    if (!affected.contains(parent.id))
+                        parentsOutside++;
+                }
+                if (vertex.type == VertexType.AND) {
+                    int missing = parents.size() - parentsOutside;
+                    missingParents.put(id, missing);
+                    if (missing == 0)
+                        derived.add(id);
+                } else {
+                    missingParents.put(id, parentsOutside > 0 ? 0 : 1);
+                    if (parentsOutside > 0)
+                        derived.add(id);
+                }
+            }
+            Set<Integer> stillDerived = new HashSet<Integer>();
+            while (!derived.isEmpty()) {
+                Integer id = derived.remove(derived.size() - 1);
+                if (!stillDerived.add(id))
+                    continue;
+                for (Vertex child : attackGraph.getChildren(attackGraph.vertices.get(id))) {
+                    Integer missing = missingParents.get(child.id);
+                    if (missing == null || missing == 0 || stillDerived.contains(child.id))
+                        continue;
+                    if (child.type == VertexType.AND) {
+                        missingParents.put(child.id, missing - 1);
+                        if (missing == 1)
+                            derived.add(child.id);
+                    } else {
+                        missingParents.put(child.id, 0);
+                        derived.add(child.id);
+                    }
+                }
+            }
+
+            List<Integer> deleted = new ArrayList<Integer>();
+            for (Integer id : affected) {
+                if (!stillDerived.contains(id))
+                    deleted.add(id);
+            }
+            attackGraph.deleteVertices(deleted);
+            return affected;
+        }
+    }
+
+    /**
+     * Compare an attack graph with the attack graph it replaces. A vertex is changed if it has no equivalent
+     * in the previous attack graph (same type and fact, and for an AND vertex, same rule between the same facts),
+     * if its parents or its metrics are not the same, or if one of its ancestors is changed. An unchanged vertex
+     * has the same ancestors as its equivalent, and therefore the same attack path.
+     *
+     * @param previousAttackGraph the previous attack graph
+     * @param attackGraph         the new attack graph
+     * @param previousIdOfVertex  filled with the id of the equivalent previous vertex of each vertex which has one
+     * @return the ids of the changed vertices of the new attack graph
+     */
+    public static Set<Integer> getChangedVertices(AttackGraph previousAttackGraph, AttackGraph attackGraph, HashMap<Integer, Integer> previousIdOfVertex) {
+        HashMap<Integer, String> previousKeys = getVertexKeys(previousAttackGraph);
+        HashMap<String, Integer> previousIdOfKey = new HashMap<String, Integer>();
+        Set<String> duplicatedKeys = new HashSet<String>();
+        for (Integer id : previousKeys.keySet()) {
+            if (previousIdOfKey.put(previousKeys.get(id), id) != null)
+                duplicatedKeys.add(previousKeys.get(id));
+        }
+        HashMap<Integer, String> keys = getVertexKeys(attackGraph);
+        HashMap<String, Integer> idOfKey = new HashMap<String, Integer>();
+        for (Integer id : keys.keySet()) {
+            if (idOfKey.put(keys.get(id), id) != null)
+                duplicatedKeys.add(keys.get(id));
+        }
+
+        List<Integer> changed = new ArrayList<Integer>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            String key = keys.get(vertex.id);
+            Integer previousId = previousIdOfKey.get(key);
+            if (previousId == null || duplicatedKeys.contains(key)) {
+                changed.add(vertex.id);
+                continue;
+            }
+            previousIdOfVertex.put(vertex.id, previousId);
+            Vertex previousVertex = previousAttackGraph.vertices.get(previousId);
+            if (vertex.mulvalMetric != previousVertex.mulvalMetric
+                    || getImpact(vertex) != getImpact(previousVertex)
+                    || !getParentKeys(attackGraph, vertex, keys).equals(getParentKeys(previousAttackGraph, previousVertex, previousKeys)))
+                changed.add(vertex.id);
+        }
+        return attackGraph.getDescendants(changed);
+    }
+
+    /**
+     * @return the key identifying each vertex of an attack graph independently of its id
+     */
+    private static HashMap<Integer, String> getVertexKeys(AttackGraph attackGraph) {
+        HashMap<Integer, String> result = new HashMap<Integer, String>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            if (vertex.type != VertexType.AND)
+                result.put(vertex.id, getFactKey(vertex));
+        }
+        //In MulVAL attack graphs, the rules are between facts: a rule is identified by its text and its facts
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            if (vertex.type == VertexType.AND) {
+                StringBuilder key = new StringBuilder(getFactKey(vertex));
+                for (Vertex child : attackGraph.getChildren(vertex)) {
+                    key.append("->").append(result.get(child.id));
+                }
+                List<String> parentKeys = new ArrayList<String>();
+                for (Vertex parent : attackGraph.getParents(vertex)) {
+                    parentKeys.add(String.valueOf(result.get(parent.id)));
+                }
+                Collections.sort(parentKeys);
+                for (String parentKey : parentKeys) {
+                    key.append("<-").append(parentKey);
+                }
+                result.put(vertex.id, key.toString());
+            }
+        }
+        return result;
+    }
+
+    private static String getFactKey(Vertex vertex) {
+        String fact = vertex.fact == null ? "" : vertex.fact.factString;
+        if (vertex.fact != null && vertex.fact.type == FactType.DATALOG_FACT)
+            fact = normalizeFact(fact);
+        return vertex.type + ":" + fact;
+    }
+
+    private static Set<String> getParentKeys(AttackGraph attackGraph, Vertex vertex, HashMap<Integer, String> keys) {
+        Set<String> result = new HashSet<String>();
+        for (Vertex parent : attackGraph.getParents(vertex)) {
+            result.add(keys.get(parent.id));
+        }
+        return result;
+    }
+
+    private static double getImpact(Vertex vertex) {
+        double result = 0;
+        for (ImpactMetric impactMetric : vertex.impactMetrics) {
+            result += impactMetric.getValue() * impactMetric.getWeight();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AttackGraphDelta [removedFacts=" + removedFacts + ", addedFacts=" + addedFacts + "]";
+    }
+}
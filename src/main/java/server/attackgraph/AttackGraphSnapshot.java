@@ -0,0 +1,321 @@
+package server.attackgraph;
+
+import server.attackgraph.fact.Fact;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Binary snapshot of a MulVAL attack graph and of its scored attack paths, used to reload the last
+ * computed state without running MulVAL and the scoring function again.
+ * <p>
+ * Layout (big endian): magic, version, global score, XML file path, the table of the distinct fact
+ * strings, the vertices (id, fact index, type, metric, impact metrics), the arcs (source id, destination id)
+ * and the attack paths (scoring and arcs). The snapshot is written through a {@link FileChannel} and
+ * read back from a memory-mapped buffer.
+ */
+public class AttackGraphSnapshot {
+
+    /**
+     * The magic number at the beginning of a snapshot file ("AWGS")
+     */
+    private static final int MAGIC = 0x41574753;
+
+    /**
+     * The version of the snapshot format
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The attack graph of the snapshot
+     */
+    public MulvalAttackGraph attackGraph;
+
+    /**
+     * The scored attack paths of the snapshot
+     */
+    public List<AttackPath> attackPaths;
+
+    /**
+     * Create a snapshot
+     *
+     * @param attackGraph the attack graph
+     * @param attackPaths the scored attack paths of this attack graph
+     */
+    public AttackGraphSnapshot(MulvalAttackGraph attackGraph, List<AttackPath> attackPaths) {
+        this.attackGraph = attackGraph;
+        this.attackPaths = attackPaths;
+    }
+
+    /**
+     * Save the snapshot into a file. The file is replaced only once the snapshot is completely written.
+     *
+     * @param filePath the path of the snapshot file
+     * @throws IOException
+     */
+    public void saveToFile(String filePath) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temporary = Paths.get(filePath + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ChannelWriter writer = new ChannelWriter(channel);
+            write(writer);
+            writer.flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a snapshot from a file
+     *
+     * @param filePath the path of the snapshot file
+     * @return the loaded snapshot
+     * @throws IOException if the file can not be read, is not a snapshot of the current version or is corrupt
+     */
+    public static AttackGraphSnapshot loadFromFile(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The snapshot " + filePath + " is too large to be mapped");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, filePath);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The snapshot " + filePath + " is corrupt: it is truncated", e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("The snapshot " + filePath + " is corrupt", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The snapshot " + filePath + " is corrupt", e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write(ChannelWriter writer) throws IOException {
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putDouble(attackGraph.globalScore);
+        writer.putString(attackGraph.xmlFilePath);
+
+        //the table of the distinct fact strings
+        HashMap<String, Integer> factIndexes = new HashMap<String, Integer>();
+        List<String> facts = new ArrayList<String>();
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            if (vertex.fact != null && !factIndexes.containsKey(vertex.fact.factString)) {
+                factIndexes.put(vertex.fact.factString, facts.size());
+                facts.add(vertex.fact.factString);
+            }
+        }
+        writer.putInt(facts.size());
+        for (String fact : facts) {
+            writer.putString(fact);
+        }
+
+        writer.putInt(attackGraph.vertices.size());
+        for (Vertex vertex : attackGraph.vertices.values()) {
+            writer.putInt(vertex.id);
+            writer.putInt(vertex.fact == null ? -1 : factIndexes.get(vertex.fact.factString));
+            writer.putInt(vertex.type == null ? -1 : vertex.type.ordinal());
+            writer.putFloat(vertex.mulvalMetric);
+            writer.putInt(vertex.impactMetrics.size());
+            for (ImpactMetric impactMetric : vertex.impactMetrics) {
+                writer.putDouble(impactMetric.getValue());
+                writer.putDouble(impactMetric.getWeight());
+            }
+        }
+
+        writeArcs(writer, attackGraph.arcs);
+
+        writer.putInt(attackPaths == null ? 0 : attackPaths.size());
+        if (attackPaths != null) {
+            for (AttackPath attackPath : attackPaths) {
+                writer.putDouble(attackPath.scoring);
+                writeArcs(writer, attackPath.arcs);
+            }
+        }
+    }
+
+    private static void writeArcs(ChannelWriter writer, List<Arc> arcs) throws IOException {
+        writer.putInt(arcs.size());
+        for (Arc arc : arcs) {
+            writer.putInt(arc.source.id);
+            writer.putInt(arc.destination.id);
+        }
+    }
+
+    private static AttackGraphSnapshot read(ByteBuffer buffer, String filePath) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("The file " + filePath + " is not an attack graph snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("The snapshot " + filePath + " has the version " + version + ", expected " + VERSION);
+        }
+
+        MulvalAttackGraph attackGraph = new MulvalAttackGraph();
+        attackGraph.globalScore = buffer.getDouble();
+        attackGraph.xmlFilePath = getString(buffer, filePath);
+
+        String[] facts = new String[getCount(buffer, 4, filePath)];
+        for (int i = 0; i < facts.length; i++) {
+            facts[i] = getString(buffer, filePath);
+        }
+
+        VertexType[] types = VertexType.values();
+        int vertexNumber = getCount(buffer, 20, filePath);
+        for (int i = 0; i < vertexNumber; i++) {
+            Vertex vertex = attackGraph.getExistingOrCreateVertex(buffer.getInt());
+            int factIndex = buffer.getInt();
+            if (factIndex >= facts.length) {
+                throw new IOException("The snapshot " + filePath + " is corrupt: unknown fact " + factIndex);
+            }
+            if (factIndex >= 0) {
+                vertex.fact = new Fact(facts[factIndex], vertex);
+            }
+            int type = buffer.getInt();
+            if (type >= types.length) {
+                throw new IOException("The snapshot " + filePath + " is corrupt: unknown vertex type " + type);
+            }
+            if (type >= 0) {
+                vertex.type = types[type];
+            }
+            vertex.mulvalMetric = buffer.getFloat();
+            int impactMetricNumber = getCount(buffer, 16, filePath);
+            for (int j = 0; j < impactMetricNumber; j++) {
+                vertex.impactMetrics.add(new ImpactMetric(buffer.getDouble(), buffer.getDouble()));
+            }
+        }
+
+        int arcNumber = getCount(buffer, 8, filePath);
+        for (int i = 0; i < arcNumber; i++) {
+            Vertex source = attackGraph.getExistingOrCreateVertex(buffer.getInt());
+            Vertex destination = attackGraph.getExistingOrCreateVertex(buffer.getInt());
+            attackGraph.addArc(new Arc(source, destination));
+        }
+
+        int attackPathNumber = getCount(buffer, 12, filePath);
+        List<AttackPath> attackPaths = new ArrayList<AttackPath>(attackPathNumber);
+        for (int i = 0; i < attackPathNumber; i++) {
+            AttackPath attackPath = new AttackPath();
+            attackPath.scoring = buffer.getDouble();
+            int pathArcNumber = getCount(buffer, 8, filePath);
+            for (int j = 0; j < pathArcNumber; j++) {
+                int sourceId = buffer.getInt();
+                int destinationId = buffer.getInt();
+                Vertex destination = attackPath.getVertexFromAttackGraph(destinationId, attackGraph);
+                Vertex source = attackPath.getVertexFromAttackGraph(sourceId, attackGraph);
+                attackPath.addArc(new Arc(source, destination));
+            }
+            attackPaths.add(attackPath);
+        }
+
+        return new AttackGraphSnapshot(attackGraph, attackPaths);
+    }
+
+    /**
+     * Read the number of elements of a table, checking that the remaining bytes can hold them
+     *
+     * @param buffer      the buffer of the snapshot
+     * @param elementSize the minimum size of an element in bytes
+     * @param filePath    the path of the snapshot file
+     * @return the number of elements
+     * @throws IOException if the number is negative or if the snapshot is too short
+     */
+    private static int getCount(ByteBuffer buffer, int elementSize, String filePath) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * elementSize > buffer.remaining()) {
+            throw new IOException("The snapshot " + filePath + " is corrupt: " + count + " elements declared, "
+                    + buffer.remaining() + " bytes remaining");
+        }
+        return count;
+    }
+
+    private static String getString(ByteBuffer buffer, String filePath) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IOException("The snapshot " + filePath + " is corrupt: a string of " + length + " bytes is truncated");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered writer of primitive values to a file channel
+     */
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(4);
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensureRemaining(4);
+            buffer.putFloat(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureRemaining(8);
+            buffer.putDouble(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            } else {
+                ensureRemaining(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package server.attackgraph;
 
 import server.hostInformation.InformationSystem;
 import server.hostInformation.graph.InformationSystemGraph;
+import server.scoring.Graph;
+import server.scoring.ScoringResult;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.input.SAXBuilder;
@@ -46,6 +48,31 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
 
     }
 
+    /**
+     * Create the attack paths directly from the result of the scoring function
+     *
+     * @param scoringResult      the scored attack paths
+     * @param relatedAttackGraph the attack graph that has been scored
+     * @return the attack paths, sorted by descending scoring
+     */
+    public static List<AttackPath> loadAttackPathsFromScoringResult(ScoringResult scoringResult, AttackGraph relatedAttackGraph) {
+        List<AttackPath> result = new ArrayList<AttackPath>();
+
+        Graph[] scoredPaths = scoringResult.getAttackPaths();
+        if (scoredPaths != null) {
+            for (int i = 0; i < scoredPaths.length; i++) {
+                if (scoredPaths[i] != null) {
+                    AttackPath attackPath = new AttackPath();
+                    attackPath.loadFromScoringGraphAndAttackGraph(scoredPaths[i], scoringResult, i, relatedAttackGraph);
+                    result.add(attackPath);
+                }
+            }
+        }
+        sortAttackPaths(result);
+
+        return result;
+    }
+
     /**
      * Sort attack paths with their scoring in descending order
      */
@@ -56,12 +83,12 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
     /**
      * @return the goal of the attack graph
      */
-    public Vertex getGoal() {
+    public synchronized Vertex getGoal() {
         if (goal == null) {
+            //the adjacency is read from the attack path: the vertices are shared with the attack graph and other threads
             for (int i : this.vertices.keySet()) {
                 Vertex vertex = this.vertices.get(i);
-                vertex.computeParentsAndChildren(this);
-                if (vertex.children.size() == 0)
+                if (getChildren(vertex).isEmpty())
                     goal = vertex;
             }
         }
@@ -88,15 +115,36 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                 Element src_element = arc_element.getChild("dst"); //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
                 Element dst_element = arc_element.getChild("src"); //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
                 if (src_element != null && dst_element != null) {
-                    Vertex destination = getVertexFromAttackGraph((int) Double.parseDouble(dst_element.getText()), attackGraph);
-                    Vertex source = getVertexFromAttackGraph((int) Double.parseDouble(src_element.getText()), attackGraph);
+                    Vertex destination = getVertexFromAttackGraph(Integer.parseInt(dst_element.getText().trim()), attackGraph);
+                    Vertex source = getVertexFromAttackGraph(Integer.parseInt(src_element.getText().trim()), attackGraph);
                     Arc arc = new Arc(source, destination);
-                    this.arcs.add(arc);
+                    this.addArc(arc);
                 }
             }
         }
     }
 
+    /**
+     * Load the attack path from a graph computed by the scoring function (the vertices are in the attack graph)
+     *
+     * @param scoredPath    the scored attack path
+     * @param scoringResult the scoring result containing the scored attack path
+     * @param index         the index of the attack path in the scoring result
+     * @param attackGraph   the corresponding attack graph
+     */
+    public void loadFromScoringGraphAndAttackGraph(Graph scoredPath, ScoringResult scoringResult, int index, AttackGraph attackGraph) {
+        this.scoring = scoringResult.getScores()[index];
+
+        /* Add all the arcs */
+        for (server.scoring.Arc scoredArc : scoredPath.getArcs()) {
+            //The scoring arcs inverse the source and the destination of the attack graph arcs
+            Vertex destination = getVertexFromAttackGraph(scoringResult.getMulvalID(scoredArc.getSource()), attackGraph);
+            Vertex source = getVertexFromAttackGraph(scoringResult.getMulvalID(scoredArc.getDestination()), attackGraph);
+            Arc arc = new Arc(source, destination);
+            this.addArc(arc);
+        }
+    }
+
     /**
      * @param vertexID    the vertex number
      * @param attackGraph an attack graph
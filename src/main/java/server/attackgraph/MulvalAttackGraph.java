@@ -1,11 +1,15 @@
 package server.attackgraph;
 
 import server.attackgraph.fact.Fact;
-import org.jdom2.Document;
 import org.jdom2.Element;
-import org.jdom2.input.SAXBuilder;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.List;
 
 public class MulvalAttackGraph extends AttackGraph implements Cloneable {
@@ -30,21 +34,144 @@ public class MulvalAttackGraph extends AttackGraph implements Cloneable {
     }
 
     /**
-     * Load the attack graph from the XML file generated by MulVAL
+     * Load the attack graph from the XML file generated by MulVAL.
+     * The file is streamed: the vertices and arcs are created as their elements are read,
+     * without building the DOM of the whole file.
      *
      * @param xmlPath the path of the XML file
      * @throws Exception
      */
     public void loadFromFile(String xmlPath) throws Exception {
         this.xmlFilePath = xmlPath;
-        FileInputStream file = new FileInputStream(xmlPath);
+        InputStream file = new BufferedInputStream(new FileInputStream(xmlPath));
+        try {
+            loadFromStream(file);
+        } finally {
+            file.close();
+        }
+    }
 
-        SAXBuilder sxb = new SAXBuilder();
-        Document document = sxb.build(file);
-        Element root = document.getRootElement();
+    /**
+     * Load the attack graph from a stream of the XML generated by MulVAL
+     *
+     * @param input the XML stream
+     * @throws XMLStreamException if the XML is malformed
+     */
+    public void loadFromStream(InputStream input) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(input);
+        try {
+            int depth = 0;
+            String section = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (depth == 2) {
+                        section = name;
+                    } else if (depth == 3 && "vertices".equals(section) && "vertex".equals(name)) {
+                        readVertexElement(reader);
+                        depth--;
+                    } else if (depth == 3 && "arcs".equals(section) && "arc".equals(name)) {
+                        readArcElement(reader);
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
 
-        addArcsAndVerticesFromDomElement(root);
+    /**
+     * Read a vertex element, the reader is on its start tag and is left on its end tag
+     *
+     * @param reader the XML stream reader
+     * @throws XMLStreamException if the XML is malformed
+     */
+    private void readVertexElement(XMLStreamReader reader) throws XMLStreamException {
+        String id = null, fact = null, metric = null, type = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            String text = readElementText(reader);
+            if (name.equals("id") && id == null) {
+                id = text;
+            } else if (name.equals("fact") && fact == null) {
+                fact = text;
+            } else if (name.equals("metric") && metric == null) {
+                metric = text;
+            } else if (name.equals("type") && type == null) {
+                type = text;
+            }
+        }
+        if (id != null && Integer.parseInt(id.trim()) > 0) {
+            Vertex vertex = getExistingOrCreateVertex(Integer.parseInt(id.trim()));
+            if (fact != null) {
+                vertex.fact = new Fact(fact, vertex);
+            }
+            if (metric != null) {
+                vertex.mulvalMetric = Float.parseFloat(metric.trim());
+            }
+            if (type != null) {
+                vertex.setType(type);
+            }
+        }
+    }
+
+    /**
+     * Read an arc element, the reader is on its start tag and is left on its end tag
+     *
+     * @param reader the XML stream reader
+     * @throws XMLStreamException if the XML is malformed
+     */
+    private void readArcElement(XMLStreamReader reader) throws XMLStreamException {
+        String src = null, dst = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            String text = readElementText(reader);
+            //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
+            if (name.equals("dst") && src == null) {
+                src = text;
+            } else if (name.equals("src") && dst == null) {
+                dst = text;
+            }
+        }
+        if (src != null && dst != null) {
+            Vertex destination = getExistingOrCreateVertex(Integer.parseInt(dst.trim()));
+            Vertex source = getExistingOrCreateVertex(Integer.parseInt(src.trim()));
+            Arc arc = new Arc(source, destination);
+            this.addArc(arc);
+        }
+    }
 
+    /**
+     * Read the text of an element and skip its children elements, if any.
+     * The reader is on the start tag and is left on the end tag of the element.
+     *
+     * @param reader the XML stream reader
+     * @return the text of the element
+     * @throws XMLStreamException if the XML is malformed
+     */
+    private static String readElementText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE)) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
     }
 
     /**
@@ -95,7 +222,7 @@ public class MulvalAttackGraph extends AttackGraph implements Cloneable {
                     Vertex destination = getExistingOrCreateVertex(Integer.parseInt(dst_element.getText()));
                     Vertex source = getExistingOrCreateVertex(Integer.parseInt(src_element.getText()));
                     Arc arc = new Arc(source, destination);
-                    this.arcs.add(arc);
+                    this.addArc(arc);
                 }
             }
         }
@@ -83,21 +83,12 @@ public class Vertex implements Cloneable {
     }
 
     /**
-     * Compute the parents of the vertex
+     * Compute the parents of the vertex, from the adjacency maintained by the graph
      * @param graph the complete attack graph
      */
     public void computeParentsAndChildren(AttackGraph graph) {
-        this.parents = new ArrayList<Vertex>();//initialize the list of parents
-        this.children = new ArrayList<Vertex>();//initialize the list of children
-        for (int i = 0; i < graph.arcs.size();i++) {
-            Arc arc = graph.arcs.get(i);
-            if(arc.destination == this) {
-                this.parents.add(arc.source);
-            }
-            else if(arc.source == this) {
-                this.children.add(arc.destination);
-            }
-        }
+        this.parents = new ArrayList<Vertex>(graph.getParents(this));
+        this.children = new ArrayList<Vertex>(graph.getChildren(this));
     }
 
     /**
@@ -180,6 +171,7 @@ public class Vertex implements Cloneable {
         copie.relatedVulnerabilibty = this.relatedVulnerabilibty;
         copie.concernedMachine = this.concernedMachine;
         copie.concernedService = this.concernedService;
+        copie.impactMetrics = new ArrayList<ImpactMetric>(this.impactMetrics);
         copie.children = new ArrayList<Vertex>();
         copie.parents = new ArrayList<Vertex>();
         return copie;
@@ -198,19 +190,20 @@ public class Vertex implements Cloneable {
      * @return the child if it exists, else null
      */
     public Vertex childOfType(boolean isRule, String ruleOrFactType) {
-        for (Vertex child : this.children) {
-            if (child != null && child.fact != null) {
-                if (isRule && child.fact.type == FactType.RULE) { //A RULE
-                    if (child.fact.factRule != null && child.fact.factRule.ruleText != null && child.fact.factRule.ruleText.contains(ruleOrFactType))
-                        return child;
-                } else if (!isRule && child.fact.type == FactType.DATALOG_FACT) { // A datalog fact
-                    if (child.fact.datalogCommand != null && child.fact.datalogCommand.command != null && child.fact.datalogCommand.command.contains(ruleOrFactType))
-                        return child;
-                }
-            }
-        }
+        return vertexOfType(this.children, isRule, ruleOrFactType);
+    }
 
-        return null;
+    /**
+     * Same as {@link #childOfType(boolean, String)}, with the children read from the adjacency of the graph:
+     * the vertex is not modified, so that it can be shared by several threads
+     *
+     * @param graph          the graph of the vertex
+     * @param isRule         true if the looked for child is a rule, false if it is a datalog command
+     * @param ruleOrFactType the content of the command or of the rule
+     * @return the child if it exists, else null
+     */
+    public Vertex childOfType(AttackGraph graph, boolean isRule, String ruleOrFactType) {
+        return vertexOfType(graph.getChildren(this), isRule, ruleOrFactType);
     }
 
     /**
@@ -219,14 +212,37 @@ public class Vertex implements Cloneable {
      * @return the parent if it exists, else null
      */
     public Vertex parentOfType(boolean isRule, String ruleOrFactType) {
-        for (Vertex parent : this.parents) {
-            if (parent != null && parent.fact != null) {
-                if (isRule && parent.fact.type == FactType.RULE) { //A RULE
-                    if (parent.fact.factRule != null && parent.fact.factRule.ruleText != null && parent.fact.factRule.ruleText.contains(ruleOrFactType))
-                        return parent;
-                } else if (!isRule && parent.fact.type == FactType.DATALOG_FACT) { // A datalog fact
-                    if (parent.fact.datalogCommand != null && parent.fact.datalogCommand.command != null && parent.fact.datalogCommand.command.contains(ruleOrFactType))
-                        return parent;
+        return vertexOfType(this.parents, isRule, ruleOrFactType);
+    }
+
+    /**
+     * Same as {@link #parentOfType(boolean, String)}, with the parents read from the adjacency of the graph:
+     * the vertex is not modified, so that it can be shared by several threads
+     *
+     * @param graph          the graph of the vertex
+     * @param isRule         true if the looked for parent is a rule, false if it is a datalog command
+     * @param ruleOrFactType the content of the command or of the rule
+     * @return the parent if it exists, else null
+     */
+    public Vertex parentOfType(AttackGraph graph, boolean isRule, String ruleOrFactType) {
+        return vertexOfType(graph.getParents(this), isRule, ruleOrFactType);
+    }
+
+    /**
+     * @param vertices       the vertices to search
+     * @param isRule         true if the looked for vertex is a rule, false if it is a datalog command
+     * @param ruleOrFactType the content of the command or of the rule
+     * @return the first vertex of this type, null if there is none
+     */
+    private static Vertex vertexOfType(List<Vertex> vertices, boolean isRule, String ruleOrFactType) {
+        for (Vertex vertex : vertices) {
+            if (vertex != null && vertex.fact != null) {
+                if (isRule && vertex.fact.type == FactType.RULE) { //A RULE
+                    if (vertex.fact.factRule != null && vertex.fact.factRule.ruleText != null && vertex.fact.factRule.ruleText.contains(ruleOrFactType))
+                        return vertex;
+                } else if (!isRule && vertex.fact.type == FactType.DATALOG_FACT) { // A datalog fact
+                    if (vertex.fact.datalogCommand != null && vertex.fact.datalogCommand.command != null && vertex.fact.datalogCommand.command.contains(ruleOrFactType))
+                        return vertex;
                 }
             }
         }
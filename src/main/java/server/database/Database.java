@@ -1,25 +1,81 @@
 package server.database;
 
+import server.properties.ProjectProperties;
+import server.vulnerability.VulnerabilityCache;
+
+import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
  * Class to manage the Database.
- *
+ * <p>
+ * The database is a small pool of connections: {@link #getConnection()} lends a connection, given back to the pool
+ * when it is closed, so that several requests can read the database at the same time. The connections are in WAL
+ * mode (the readers do not wait for the writer) and cache their prepared statements.
+ * {@link #getConn()} returns a connection shared by the callers that do not use the pool.
  */
 
-public class Database {
+public class Database implements Closeable {
     /**
      * Time out to load the database
      */
     private final int timeout = 30;
+    /**
+     * The jdbc url of the database
+     */
+    private String url;
+    /**
+     * The maximum number of connections lent at the same time, database-pool-size property
+     */
+    private final int poolSize = ProjectProperties.getInstance().getIntegerProperty("database-pool-size", 4);
+    /**
+     * The maximum number of cached prepared statements of a connection, database-statement-cache-size property
+     */
+    private final int statementCacheSize = ProjectProperties.getInstance().getIntegerProperty("database-statement-cache-size", 32);
+    /**
+     * The shared connection
+     */
+    private PooledConnection sharedConnection;
     /**
      * The jdbc connection
      */
     private Connection conn;
+    /**
+     * The connections of the pool that are not lent
+     */
+    private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+    /**
+     * The number of open connections of the pool
+     */
+    private int openConnections = 0;
+    /**
+     * True when the database has been closed
+     */
+    private boolean closed = false;
+    /**
+     * The cache of the vulnerabilities, created at the first use
+     */
+    private VulnerabilityCache vulnerabilityCache = null;
+    /**
+     * The minimum time between two checks of the changes of the database by the other connections, in milliseconds
+     */
+    private static final long VULNERABILITY_CACHE_CHECK_INTERVAL = 1000;
+    /**
+     * The data version of the shared connection at the last check of the vulnerability cache, -1 before the first check
+     */
+    private long vulnerabilityCacheDataVersion = -1;
+    /**
+     * The time of the last check of the vulnerability cache
+     */
+    private long vulnerabilityCacheCheckTime = 0;
 
     /**
      * Constructor of Database class
@@ -49,42 +105,141 @@ public class Database {
         String sDbUrl = sJdbc + ":" + path;
 
         // create a database connection
-        this.conn = DriverManager.getConnection(sDbUrl);
+        this.url = sDbUrl;
+        this.sharedConnection = new PooledConnection(this, openConnection(), statementCacheSize);
+        this.conn = sharedConnection.lend(true);
 
+        // upgrade the schema of the database: the indexes of the lookups are created in the existing databases
+        try {
+            createDB();
+        } catch (SQLException e) {
+            Logger.getLogger(Database.class.getName()).log(Level.WARNING, "The schema of the database can not be upgraded to the version "
+                    + SchemaMigrations.getLatestVersion(), e);
+        }
     }
 
     /**
-     * Close the connection to the database
+     * Lend a connection of the pool, waiting for one to be given back if poolSize connections are already lent
+     *
+     * @return the connection, to be closed to give it back to the pool
+     * @throws SQLException if no connection is available after the time out, or if the database is closed
      */
-    public void finalize() {
+    public Connection getConnection() throws SQLException {
+        PooledConnection pooledConnection;
+        synchronized (this) {
+            long end = System.currentTimeMillis() + timeout * 1000L;
+            while (!closed && idleConnections.isEmpty() && openConnections >= poolSize) {
+                long wait = end - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new SQLException("No database connection available after " + timeout + " s");
+                }
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+            }
+            if (closed) {
+                throw new SQLException("The database is closed");
+            }
+            pooledConnection = idleConnections.poll();
+            if (pooledConnection == null) {
+                openConnections++;
+            }
+        }
+        if (pooledConnection == null) {
+            try {
+                pooledConnection = new PooledConnection(this, openConnection(), statementCacheSize);
+            } catch (SQLException e) {
+                synchronized (this) {
+                    openConnections--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+        return pooledConnection.lend(false);
+    }
+
+    /**
+     * Give a lent connection back to the pool
+     *
+     * @param pooledConnection the connection
+     */
+    void release(PooledConnection pooledConnection) {
+        boolean reusable = true;
         try {
-            getConn().close();
+            pooledConnection.reset();
         } catch (SQLException e) {
-            e.printStackTrace();
+            Logger.getLogger(Database.class.getName()).log(Level.WARNING, "The database connection can not be reused", e);
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idleConnections.push(pooledConnection);
+                notifyAll();
+                return;
+            }
+            openConnections--;
+            notifyAll();
         }
+        pooledConnection.close();
     }
 
     /**
-     * SQL instructions to create the tables of the database
+     * Close the shared connection and the connections of the pool. The lent connections are closed when they
+     * are given back.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openConnections -= idleConnections.size();
+            notifyAll();
+        }
+        for (PooledConnection pooledConnection : idleConnections) {
+            pooledConnection.close();
+        }
+        idleConnections.clear();
+        sharedConnection.close();
+    }
+
+    /**
+     * Open a connection in WAL mode, waiting up to the time out when the database is locked
+     *
+     * @return the physical connection
+     * @throws SQLException
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("PRAGMA busy_timeout = " + timeout * 1000);
+            ResultSet res = stmt.executeQuery("PRAGMA journal_mode = WAL");
+            if (res.next() && !"wal".equalsIgnoreCase(res.getString(1))) {
+                Logger.getLogger(Database.class.getName()).log(Level.WARNING, "The database is in " + res.getString(1) + " journal mode");
+            }
+            res.close();
+        } catch (SQLException e) {
+            Logger.getLogger(Database.class.getName()).log(Level.WARNING, "The WAL mode can not be enabled", e);
+        } finally {
+            stmt.close();
+        }
+        return connection;
+    }
+
+    /**
+     * SQL instructions to create the tables of the database, and to upgrade them to the latest version of the schema
      *
      * @throws Exception
+     * @see SchemaMigrations
      */
     public void createDB() throws Exception {
-        executeQuery("CREATE TABLE IF NOT EXISTS vulnerability (id INTEGER PRIMARY KEY AUTOINCREMENT, cve TEXT UNIQUE, description TEXT, cvss_id INTEGER)");
-        executeQuery("CREATE TABLE IF NOT EXISTS rules (id INTEGER PRIMARY KEY AUTOINCREMENT, rule TEXT,description TEXT, sid INTEGER, gid INTEGER);");
-        executeQuery("CREATE TABLE IF NOT EXISTS rules_vulnerability (id_rule INTEGER, id_vulnerability INTEGER);");
-        executeQuery("CREATE UNIQUE INDEX IF NOT EXISTS index_rules_vulnerability ON rules_vulnerability (id_rule ASC, id_vulnerability ASC);");
-        executeQuery("CREATE TABLE IF NOT EXISTS patchs (id INTEGER PRIMARY KEY AUTOINCREMENT, link TEXT, description TEXT);");
-        executeQuery("CREATE TABLE IF NOT EXISTS patchs_vulnerability (id_patch INTEGER, id_vulnerability INTEGER);");
-        executeQuery("CREATE UNIQUE INDEX IF NOT EXISTS index_patchs_vulnerability ON patchs_vulnerability (id_patch ASC, id_vulnerability ASC);");
-        executeQuery("CREATE TABLE IF NOT EXISTS cre (id INTEGER PRIMARY KEY AUTOINCREMENT, cre_id TEXT, id_vulnerability INTEGER, id_remediation_type INTEGER , id_remediation INTEGER);");
-        executeQuery("CREATE UNIQUE INDEX IF NOT EXISTS index_cre ON cre (id_remediation ASC, id_vulnerability ASC, id_remediation_type ASC);");
-        executeQuery("CREATE TABLE IF NOT EXISTS cvss (id INTEGER PRIMARY KEY AUTOINCREMENT, score REAL, access_vector TEXT, access_complexity TEXT , authentication TEXT, confidentiality_impact TEXT, integrity_impact TEXT, availability_impact TEXT);");
-        executeQuery("CREATE UNIQUE INDEX IF NOT EXISTS index_cvss ON cvss (id ASC);");
-        executeQuery("CREATE TABLE IF NOT EXISTS cpe (id INTEGER PRIMARY KEY AUTOINCREMENT, cpe_id TEXT);");
-        executeQuery("CREATE TABLE IF NOT EXISTS cpe_vulnerability (id_cpe INTEGER, id_vulnerability INTEGER);");
-        executeQuery("CREATE UNIQUE INDEX IF NOT EXISTS index_cpe_vulnerability ON cpe_vulnerability (id_cpe ASC, id_vulnerability ASC);");
-
+        SchemaMigrations.migrate(getConn());
     }
 
     /**
@@ -101,7 +256,64 @@ public class Database {
     }
 
     /**
-     * @return the connection element
+     * Get the cache of the vulnerabilities. The cache is cleared when the database has been changed by another
+     * connection, for example by an import of the NVD feeds in another process: the PRAGMA data_version of the
+     * shared connection is checked at most once per second.
+     *
+     * @return the cache of the vulnerabilities of this database, its size is the vulnerability-cache-size property
+     */
+    public synchronized VulnerabilityCache getVulnerabilityCache() {
+        if (vulnerabilityCache == null) {
+            vulnerabilityCache = new VulnerabilityCache(ProjectProperties.getInstance().getIntegerProperty("vulnerability-cache-size", 20000));
+        }
+        long now = System.currentTimeMillis();
+        if (now - vulnerabilityCacheCheckTime >= VULNERABILITY_CACHE_CHECK_INTERVAL) {
+            vulnerabilityCacheCheckTime = now;
+            try {
+                long dataVersion = getDataVersion();
+                if (vulnerabilityCacheDataVersion >= 0 && dataVersion != vulnerabilityCacheDataVersion) {
+                    Logger.getLogger(Database.class.getName()).log(Level.INFO, "The database has been changed, the vulnerability cache is cleared");
+                    vulnerabilityCache.clear();
+                }
+                vulnerabilityCacheDataVersion = dataVersion;
+            } catch (SQLException e) {
+                Logger.getLogger(Database.class.getName()).log(Level.WARNING, "The changes of the database can not be checked, the vulnerability cache is cleared", e);
+                vulnerabilityCache.clear();
+                vulnerabilityCacheDataVersion = -1;
+            }
+        }
+        return vulnerabilityCache;
+    }
+
+    /**
+     * Clear the cache of the vulnerabilities, after the vulnerabilities have been changed with a connection of this
+     * database (these changes do not change the data version of the shared connection)
+     */
+    public synchronized void clearVulnerabilityCache() {
+        if (vulnerabilityCache != null) {
+            vulnerabilityCache.clear();
+        }
+    }
+
+    /**
+     * @return the PRAGMA data_version of the shared connection, which changes when another connection commits
+     * changes to the database
+     */
+    private long getDataVersion() throws SQLException {
+        Statement stmt = getConn().createStatement();
+        try {
+            ResultSet res = stmt.executeQuery("PRAGMA data_version");
+            long result = res.next() ? res.getLong(1) : 0;
+            res.close();
+            return result;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * @return the connection shared by the callers that do not use the pool (closing it has no effect, use
+     * {@link #getConnection()} for a connection of the pool)
      */
     public Connection getConn() {
         return conn;
@@ -0,0 +1,225 @@
+package server.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A physical connection of the pool of a {@link Database}, with its cache of prepared statements.
+ * <p>
+ * The connection is lent as a {@link Connection} proxy: closing the proxy gives the connection back to the pool.
+ * The statements prepared with {@link Connection#prepareStatement(String)} are also proxies: closing them keeps
+ * the prepared statement in the cache of the connection, to be used again for the same SQL.
+ */
+class PooledConnection {
+
+    /**
+     * The database owning the connection
+     */
+    private final Database database;
+
+    /**
+     * The physical connection
+     */
+    private final Connection connection;
+
+    /**
+     * The prepared statements that are not used, by SQL, the least recently used first
+     */
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * Create a pooled connection
+     *
+     * @param database           the database owning the connection
+     * @param connection         the physical connection
+     * @param statementCacheSize the maximum number of cached prepared statements
+     */
+    PooledConnection(Database database, Connection connection, final int statementCacheSize) {
+        this.database = database;
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Lend the connection
+     *
+     * @param shared true for a connection used by several threads, that is never given back to the pool
+     * @return a proxy of the connection, giving the connection back to the pool when it is closed
+     */
+    Connection lend(final boolean shared) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+            /**
+             * True when the proxy has been closed
+             */
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    if (!closed && !shared) {
+                        closed = true;
+                        database.release(PooledConnection.this);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return closed || connection.isClosed();
+                }
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (name.equals("toString")) {
+                    return "Pooled " + connection;
+                }
+                if (closed) {
+                    throw new SQLException("The connection has been given back to the pool");
+                }
+                if (name.equals("prepareStatement") && args.length == 1) {
+                    return prepareStatement((Connection) proxy, (String) args[0]);
+                }
+                return invokeOn(connection, method, args);
+            }
+        });
+    }
+
+    /**
+     * Gets connection.
+     *
+     * @return the physical connection
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Prepare the connection to be lent again: the transaction in progress is rolled back
+     *
+     * @throws SQLException
+     */
+    void reset() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Close the physical connection and its cached statements
+     */
+    synchronized void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Logger.getLogger(PooledConnection.class.getName()).log(Level.WARNING, "The database connection can not be closed", e);
+        }
+    }
+
+    /**
+     * @param proxy the proxy of the connection
+     * @param sql   the SQL of the statement
+     * @return a proxy of a cached prepared statement, or of a new one if none is available for the SQL
+     */
+    private synchronized PreparedStatement prepareStatement(final Connection proxy, final String sql) throws SQLException {
+        PreparedStatement cached = statements.remove(sql);
+        final PreparedStatement statement = cached != null ? cached : connection.prepareStatement(sql);
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+            /**
+             * True when the proxy has been closed
+             */
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object statementProxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    if (!closed) {
+                        closed = true;
+                        release(sql, statement);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return closed || statement.isClosed();
+                }
+                if (name.equals("getConnection")) {
+                    return proxy;
+                }
+                if (name.equals("equals")) {
+                    return statementProxy == args[0];
+                }
+                if (name.equals("hashCode")) {
+                    return System.identityHashCode(statementProxy);
+                }
+                if (closed) {
+                    throw new SQLException("The statement is closed");
+                }
+                return invokeOn(statement, method, args);
+            }
+        });
+    }
+
+    /**
+     * Put a prepared statement that is not used anymore back in the cache
+     */
+    private synchronized void release(String sql, PreparedStatement statement) {
+        try {
+            ResultSet resultSet = statement.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        if (statements.containsKey(sql)) {
+            closeQuietly(statement);
+        } else {
+            statements.put(sql, statement);
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Logger.getLogger(PooledConnection.class.getName()).log(Level.FINE, "The statement can not be closed", e);
+        }
+    }
+}
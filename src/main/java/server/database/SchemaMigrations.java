@@ -0,0 +1,144 @@
+package server.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The versions of the schema of the vulnerability database.
+ * <p>
+ * The version of the schema of a database is its user_version. The migration i upgrades the schema from the
+ * version i to the version i + 1: the migrations that are missing in a database are applied in order, each in
+ * a transaction, then the statistics of the query planner are updated with ANALYZE.
+ */
+public class SchemaMigrations {
+
+    /**
+     * The SQL instructions of each migration
+     */
+    private static final String[][] MIGRATIONS = {
+            //1: the tables of the database
+            {
+                    "CREATE TABLE IF NOT EXISTS vulnerability (id INTEGER PRIMARY KEY AUTOINCREMENT, cve TEXT UNIQUE, description TEXT, cvss_id INTEGER)",
+                    "CREATE TABLE IF NOT EXISTS rules (id INTEGER PRIMARY KEY AUTOINCREMENT, rule TEXT,description TEXT, sid INTEGER, gid INTEGER);",
+                    "CREATE TABLE IF NOT EXISTS rules_vulnerability (id_rule INTEGER, id_vulnerability INTEGER);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS index_rules_vulnerability ON rules_vulnerability (id_rule ASC, id_vulnerability ASC);",
+                    "CREATE TABLE IF NOT EXISTS patchs (id INTEGER PRIMARY KEY AUTOINCREMENT, link TEXT, description TEXT);",
+                    "CREATE TABLE IF NOT EXISTS patchs_vulnerability (id_patch INTEGER, id_vulnerability INTEGER);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS index_patchs_vulnerability ON patchs_vulnerability (id_patch ASC, id_vulnerability ASC);",
+                    "CREATE TABLE IF NOT EXISTS cre (id INTEGER PRIMARY KEY AUTOINCREMENT, cre_id TEXT, id_vulnerability INTEGER, id_remediation_type INTEGER , id_remediation INTEGER);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS index_cre ON cre (id_remediation ASC, id_vulnerability ASC, id_remediation_type ASC);",
+                    "CREATE TABLE IF NOT EXISTS cvss (id INTEGER PRIMARY KEY AUTOINCREMENT, score REAL, access_vector TEXT, access_complexity TEXT , authentication TEXT, confidentiality_impact TEXT, integrity_impact TEXT, availability_impact TEXT);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS index_cvss ON cvss (id ASC);",
+                    "CREATE TABLE IF NOT EXISTS cpe (id INTEGER PRIMARY KEY AUTOINCREMENT, cpe_id TEXT);",
+                    "CREATE TABLE IF NOT EXISTS cpe_vulnerability (id_cpe INTEGER, id_vulnerability INTEGER);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS index_cpe_vulnerability ON cpe_vulnerability (id_cpe ASC, id_vulnerability ASC);"
+            },
+            //2: the indexes of the lookups. The CVEs and the CPEs are compared without case (= ? COLLATE NOCASE),
+            //so their indexes have the NOCASE collation. The ids are the rowids, so they are in all the indexes.
+            {
+                    "CREATE INDEX IF NOT EXISTS index_vulnerability_cve ON vulnerability (cve COLLATE NOCASE ASC, cvss_id ASC);",
+                    "CREATE INDEX IF NOT EXISTS index_cpe_cpe_id ON cpe (cpe_id COLLATE NOCASE ASC);",
+                    "CREATE INDEX IF NOT EXISTS index_cpe_vulnerability_vulnerability ON cpe_vulnerability (id_vulnerability ASC, id_cpe ASC);",
+                    "CREATE INDEX IF NOT EXISTS index_rules_vulnerability_vulnerability ON rules_vulnerability (id_vulnerability ASC, id_rule ASC);",
+                    "CREATE INDEX IF NOT EXISTS index_patchs_vulnerability_vulnerability ON patchs_vulnerability (id_vulnerability ASC, id_patch ASC);",
+                    "CREATE INDEX IF NOT EXISTS index_cre_vulnerability ON cre (id_vulnerability ASC, id_remediation_type ASC, id_remediation ASC);",
+                    //the id of the cvss is its rowid
+                    "DROP INDEX IF EXISTS index_cvss;"
+            }
+    };
+
+    private SchemaMigrations() {
+
+    }
+
+    /**
+     * Gets latest version.
+     *
+     * @return the version of the schema after all the migrations
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Gets version.
+     *
+     * @param conn the database connection
+     * @return the version of the schema of the database (0 for a database that has never been migrated)
+     * @throws SQLException
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSet res = stmt.executeQuery("PRAGMA user_version");
+            int result = res.next() ? res.getInt(1) : 0;
+            res.close();
+            return result;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Apply the migrations that are missing in a database
+     *
+     * @param conn the database connection
+     * @return the number of applied migrations
+     * @throws SQLException if a migration fails (it is rolled back, the previous migrations are kept)
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int version = getVersion(conn);
+        if (version > getLatestVersion()) {
+            Logger.getLogger(SchemaMigrations.class.getName()).log(Level.WARNING, "The schema of the database (version " + version
+                    + ") is newer than the schema of the application (version " + getLatestVersion() + ")");
+            return 0;
+        }
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        Statement stmt = conn.createStatement();
+        try {
+            conn.setAutoCommit(false);
+            for (; version < getLatestVersion(); version++) {
+                try {
+                    for (String sql : MIGRATIONS[version]) {
+                        stmt.executeUpdate(sql);
+                    }
+                    stmt.executeUpdate("PRAGMA user_version = " + (version + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                applied++;
+                Logger.getLogger(SchemaMigrations.class.getName()).log(Level.INFO, "Schema of the database migrated to the version " + (version + 1));
+            }
+            conn.setAutoCommit(true);
+            if (applied > 0) {
+                analyze(conn);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+            stmt.close();
+        }
+        return applied;
+    }
+
+    /**
+     * Update the statistics used by the query planner to choose the indexes, after changes of the content
+     *
+     * @param conn the database connection
+     * @throws SQLException
+     */
+    public static void analyze(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.executeUpdate("ANALYZE");
+        } finally {
+            stmt.close();
+        }
+    }
+}
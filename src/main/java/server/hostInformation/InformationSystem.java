@@ -4,6 +4,7 @@ import server.database.Database;
 import server.topology.Topology;
 import server.topology.component.Host;
 import server.topology.component.IPAddress;
+import server.vulnerability.Vulnerability;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.input.SAXBuilder;
@@ -13,8 +14,11 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import server.networkfirewall.FlowMatrix;
 
 /**
@@ -68,13 +72,13 @@ public class InformationSystem implements Cloneable {
      */
     public InformationSystemHost getHostByNameOrIPAddress(String str) throws Exception {
         if (IPAddress.isAnIPAddress(str)) {
-            return getMachineByIPAddress(new IPAddress(str));
+            return getMachineByIPAddress(IPAddress.valueOf(str));
         } else {
             InformationSystemHost existingMachine = existingMachineByName(str);
             if (existingMachine != null)
                 return existingMachine;
             InformationSystemHost newMachine = new InformationSystemHost(str, this.topology);
-            this.topology.getHosts().add(newMachine);
+            this.topology.addHost(newMachine);
             return newMachine;
         }
     }
@@ -86,10 +90,9 @@ public class InformationSystem implements Cloneable {
      * @return the machine if it exists else null
      */
     public InformationSystemHost existingMachineByName(String name) {
-        for (int i = 0; i < this.topology.getHosts().size(); i++) {
-            if (this.topology.getHosts().get(i).getName().equals(name))
-                return (InformationSystemHost) this.topology.getHosts().get(i);
-        }
+        InformationSystemHost existingMachine = (InformationSystemHost) this.topology.existingHostByName(name);
+        if (existingMachine != null)
+            return existingMachine;
         if (name.equals("internet"))
             return new InformationSystemHost("internet", topology);
 
@@ -105,7 +108,7 @@ public class InformationSystem implements Cloneable {
      */
     public InformationSystemHost existingMachineByNameOrIPAddress(String str) throws Exception {
         if (IPAddress.isAnIPAddress(str))
-            return (InformationSystemHost) topology.existingHostByIPAddress(new IPAddress(str));
+            return (InformationSystemHost) topology.existingHostByIPAddress(IPAddress.valueOf(str));
         else
             return existingMachineByName(str);
     }
@@ -123,7 +126,7 @@ public class InformationSystem implements Cloneable {
             return existingMachine;
         InformationSystemHost newMachine = new InformationSystemHost(ipAddress.getAddress(), topology);
         newMachine.addInterface("int1", ipAddress.getAddress());
-        this.topology.getHosts().add(newMachine);
+        this.topology.addHost(newMachine);
         return newMachine;
     }
 
@@ -165,15 +168,49 @@ public class InformationSystem implements Cloneable {
         if (domElement == null)
             return;
         List<Element> hostsElement = domElement.getChildren("machine");
+        if (db != null) {
+            Connection conn = db.getConnection();
+            try {
+                db.getVulnerabilityCache().prefetch(getCVEs(hostsElement), conn);
+            } finally {
+                conn.close();
+            }
+        }
         for (Element hostElement : hostsElement) {
             InformationSystemHost host = new InformationSystemHost(this.topology);
             host.loadFromDomElement(hostElement, this.topology, db);
-            this.topology.getHosts().add(host);
+            this.topology.addHost(host);
         }
         this.flowMatrix = new FlowMatrix(domElement.getChild("flow-matrix"), this.topology);
     }
 
 
+    /**
+     * Get the CVEs of the vulnerabilities of the services of machines
+     *
+     * @param hostsElement the dom elements of the machines
+     * @return the CVEs
+     */
+    private static Set<String> getCVEs(List<Element> hostsElement) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (Element hostElement : hostsElement) {
+            Element servicesElement = hostElement.getChild("services");
+            if (servicesElement == null)
+                continue;
+            for (Element serviceElement : servicesElement.getChildren("service")) {
+                Element vulnerabilitiesElement = serviceElement.getChild("vulnerabilities");
+                if (vulnerabilitiesElement == null)
+                    continue;
+                for (Element vulnElement : vulnerabilitiesElement.getChildren("vulnerability")) {
+                    Element cveElement = vulnElement.getChild("cve");
+                    if (cveElement != null && Vulnerability.PATTERN.matcher(cveElement.getText()).matches())
+                        result.add(cveElement.getText());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Load the topology from an xml file
      *
@@ -215,5 +252,14 @@ public class InformationSystem implements Cloneable {
     public Topology getTopology() {
         return topology;
     }
+
+    /**
+     * Get the flow matrix
+     *
+     * @return the flow matrix, null if the information system has not been loaded from a file
+     */
+    public FlowMatrix getFlowMatrix() {
+        return flowMatrix;
+    }
     
 }
@@ -145,11 +145,13 @@ public class InformationSystemHost extends Host {
                     }
 
                     this.getInterfaces().put(interfaceName, inface);
+                    if (topology != null)
+                        topology.interfaceAdded(inface);
 
                     Element networkElement = interfaceElement.getChild("network");
                     Element maskElement = interfaceElement.getChild("mask");
                     if (networkElement != null && maskElement != null) {
-                        inface.setNetwork(new Network(new IPAddress(networkElement.getText()), new IPAddress(maskElement.getText())));
+                        inface.setNetwork(new Network(IPAddress.valueOf(networkElement.getText()), IPAddress.valueOf(maskElement.getText())));
                     }
 
                     Element directlyConnectedElement = interfaceElement.getChild("directly-connected");
@@ -183,7 +185,7 @@ public class InformationSystemHost extends Host {
 
                     Element serviceIPElement = serviceElement.getChild("ipaddress");
                     if (serviceIPElement != null && !serviceIPElement.getText().isEmpty() && service.getIpAddress() == null) {
-                        service.setIpAddress(new IPAddress(serviceIPElement.getText()));
+                        service.setIpAddress(IPAddress.valueOf(serviceIPElement.getText()));
                     }
 
                     Element servicePortElement = serviceElement.getChild("port");
@@ -205,7 +207,7 @@ public class InformationSystemHost extends Host {
                             Vulnerability vuln = new Vulnerability(cveElement.getText());
                             vuln.exploitGoal = goalElement.getText();
                             vuln.exploitType = typeElement.getText();
-                            vuln.loadParametersFromDatabase(db.getConn());
+                            db.getVulnerabilityCache().loadParameters(vuln, db);
 
                             service.getVulnerabilities().put(vuln.cve, vuln);
 
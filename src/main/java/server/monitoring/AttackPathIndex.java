@@ -0,0 +1,319 @@
+package server.monitoring;
+
+import server.attackgraph.Arc;
+import server.attackgraph.AttackPath;
+import server.attackgraph.Vertex;
+import server.attackgraph.fact.DataLogCommand;
+import server.attackgraph.fact.FactType;
+import server.hostInformation.InformationSystem;
+import server.hostInformation.InformationSystemHost;
+import server.topology.component.Interface;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Secondary indexes of the attack paths of a published monitoring object, to list a page of the attack paths
+ * matching filters (minimum score, target host, source host, vulnerability) without going through all of them.
+ * <p>
+ * The attack paths are ranked by descending score (rank 0 is the attack path with the highest score). For each
+ * host and each vulnerability, the index keeps the sorted ranks of the attack paths related to it: the filters
+ * are intersections of these lists, and the minimum score is a cut of the ranks found by binary search.
+ */
+public class AttackPathIndex {
+
+    /**
+     * The ids of the attack paths (their index in the attack path list), by rank
+     */
+    private final int[] idOfRank;
+
+    /**
+     * The scores of the attack paths, by rank (in descending order)
+     */
+    private final double[] scoreOfRank;
+
+    /**
+     * The sorted ranks of the attack paths whose goal is on the host, by host name or IP address
+     */
+    private final HashMap<String, int[]> ranksOfTargetHost = new HashMap<String, int[]>();
+
+    /**
+     * The sorted ranks of the attack paths starting from the host (attackerLocated), by host name or IP address
+     */
+    private final HashMap<String, int[]> ranksOfSourceHost = new HashMap<String, int[]>();
+
+    /**
+     * The sorted ranks of the attack paths exploiting the vulnerability (vulExists), by upper case CVE
+     */
+    private final HashMap<String, int[]> ranksOfVulnerability = new HashMap<String, int[]>();
+
+    /**
+     * Build the indexes of a list of attack paths
+     *
+     * @param attackPaths       the attack paths
+     * @param informationSystem the information system, to index the hosts by name and by IP address (may be null)
+     */
+    public AttackPathIndex(final List<AttackPath> attackPaths, InformationSystem informationSystem) {
+        Integer[] ids = new Integer[attackPaths.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        //stable sort: the attack paths with the same score stay in the order of the list
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer id1, Integer id2) {
+                return Double.compare(attackPaths.get(id2).scoring, attackPaths.get(id1).scoring);
+            }
+        });
+        idOfRank = new int[ids.length];
+        scoreOfRank = new double[ids.length];
+
+        HashMap<String, List<Integer>> targetHosts = new HashMap<String, List<Integer>>();
+        HashMap<String, List<Integer>> sourceHosts = new HashMap<String, List<Integer>>();
+        HashMap<String, List<Integer>> vulnerabilities = new HashMap<String, List<Integer>>();
+        for (int rank = 0; rank < ids.length; rank++) {
+            AttackPath attackPath = attackPaths.get(ids[rank]);
+            idOfRank[rank] = ids[rank];
+            scoreOfRank[rank] = attackPath.scoring;
+
+            Set<String> targets = new HashSet<String>();
+            Set<String> sources = new HashSet<String>();
+            Set<String> cves = new HashSet<String>();
+            Vertex goal = getGoal(attackPath);
+            if (goal != null) {
+                addHostKeys(targets, getCommand(goal), informationSystem);
+            }
+            for (Vertex vertex : attackPath.vertices.values()) {
+                DataLogCommand command = getCommand(vertex);
+                if (command == null) {
+                    continue;
+                }
+                if (command.command.equals("attackerLocated")) {
+                    addHostKeys(sources, command, informationSystem);
+                } else if (command.command.equals("vulExists") && command.params.length > 1) {
+                    cves.add(command.params[1].trim().toUpperCase());
+                }
+            }
+            addRank(targetHosts, targets, rank);
+            addRank(sourceHosts, sources, rank);
+            addRank(vulnerabilities, cves, rank);
+        }
+        toArrays(targetHosts, ranksOfTargetHost);
+        toArrays(sourceHosts, ranksOfSourceHost);
+        toArrays(vulnerabilities, ranksOfVulnerability);
+    }
+
+    /**
+     * Select the attack paths matching filters
+     *
+     * @param minScore      the minimum score of the attack paths (null for no minimum)
+     * @param targetHost    the name or IP address of the host of the goal of the attack paths (null for any host)
+     * @param sourceHost    the name or IP address of the host of the attacker (null for any host)
+     * @param vulnerability the CVE of a vulnerability exploited by the attack paths (null for any vulnerability)
+     * @return the ranks of the matching attack paths, in ascending order (descending score)
+     */
+    public Selection select(Double minScore, String targetHost, String sourceHost, String vulnerability) {
+        int[] result = null;
+        if (targetHost != null) {
+            result = intersect(result, ranksOfTargetHost.get(targetHost.trim()));
+        }
+        if (sourceHost != null) {
+            result = intersect(result, ranksOfSourceHost.get(sourceHost.trim()));
+        }
+        if (vulnerability != null) {
+            result = intersect(result, ranksOfVulnerability.get(vulnerability.trim().toUpperCase()));
+        }
+        int end = minScore == null ? idOfRank.length : getNumberOfAttackPathsWithScore(minScore);
+        if (result == null) {
+            return new Selection(null, end);
+        }
+        //the ranks of the attack paths with a score lower than minScore are at the end
+        int length = Arrays.binarySearch(result, end);
+        return new Selection(result, length >= 0 ? length : -length - 1);
+    }
+
+    /**
+     * The ranks of the attack paths matching filters, in ascending order. Without filter on the hosts and the
+     * vulnerabilities, the ranks are all the ranks from 0 to the size of the selection, which are not stored.
+     */
+    public static class Selection {
+
+        /**
+         * The matching ranks, in their first size elements (null for the ranks from 0 to size)
+         */
+        private final int[] ranks;
+
+        /**
+         * The number of matching ranks
+         */
+        private final int size;
+
+        private Selection(int[] ranks, int size) {
+            this.ranks = ranks;
+            this.size = size;
+        }
+
+        /**
+         * @return the number of matching attack paths
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets rank.
+         *
+         * @param i the position of a matching attack path, from 0 to size - 1
+         * @return the rank of the matching attack path
+         */
+        public int getRank(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Position " + i + " of a selection of " + size + " attack paths");
+            }
+            return ranks == null ? i : ranks[i];
+        }
+    }
+
+    /**
+     * Gets id.
+     *
+     * @param rank the rank of an attack path
+     * @return the id of the attack path (its index in the attack path list)
+     */
+    public int getId(int rank) {
+        return idOfRank[rank];
+    }
+
+    /**
+     * @param minScore a score
+     * @return the number of attack paths with a score greater than or equal to minScore
+     */
+    private int getNumberOfAttackPathsWithScore(double minScore) {
+        int low = 0;
+        int high = scoreOfRank.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scoreOfRank[middle] >= minScore) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param ranks1 sorted ranks, null for all the ranks
+     * @param ranks2 sorted ranks, null for no rank
+     * @return the sorted ranks in both arrays
+     */
+    private static int[] intersect(int[] ranks1, int[] ranks2) {
+        if (ranks2 == null) {
+            return new int[0];
+        }
+        if (ranks1 == null) {
+            return ranks2;
+        }
+        int[] result = new int[Math.min(ranks1.length, ranks2.length)];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ranks1.length && j < ranks2.length) {
+            if (ranks1[i] < ranks2[j]) {
+                i++;
+            } else if (ranks1[i] > ranks2[j]) {
+                j++;
+            } else {
+                result[length++] = ranks1[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * @param attackPath an attack path
+     * @return the goal of the attack path (the vertex which is not the source of an arc)
+     */
+    private static Vertex getGoal(AttackPath attackPath) {
+        if (attackPath.arcs.isEmpty()) {
+            return attackPath.vertices.size() == 1 ? attackPath.vertices.values().iterator().next() : null;
+        }
+        Set<Integer> sources = new HashSet<Integer>();
+        for (Arc arc : attackPath.arcs) {
+            sources.add(arc.source.id);
+        }
+        for (Arc arc : attackPath.arcs) {
+            if (!sources.contains(arc.destination.id)) {
+                return arc.destination;
+            }
+        }
+        return null;
+    }
+
+    private static DataLogCommand getCommand(Vertex vertex) {
+        if (vertex.fact == null || vertex.fact.type != FactType.DATALOG_FACT || vertex.fact.datalogCommand == null) {
+            return null;
+        }
+        DataLogCommand command = vertex.fact.datalogCommand;
+        return command.params == null || command.params.length == 0 ? null : command;
+    }
+
+    /**
+     * Add the keys of the host of a fact (the first parameter): the parameter itself, and the name and the IP
+     * addresses of the host if it is in the information system
+     */
+    private static void addHostKeys(Set<String> keys, DataLogCommand command, InformationSystem informationSystem) {
+        if (command == null) {
+            return;
+        }
+        String host = command.params[0].trim();
+        keys.add(host);
+        if (informationSystem == null) {
+            return;
+        }
+        try {
+            InformationSystemHost machine = informationSystem.existingMachineByNameOrIPAddress(host);
+            if (machine != null) {
+                keys.add(machine.getName());
+                for (Interface networkInterface : machine.getInterfaces().values()) {
+                    if (networkInterface.getAddress() != null) {
+                        keys.add(networkInterface.getAddress().getAddress());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Logger.getLogger(AttackPathIndex.class.getName()).log(Level.FINE, "The host " + host + " can not be found", e);
+        }
+    }
+
+    private static void addRank(HashMap<String, List<Integer>> ranksOfKey, Set<String> keys, int rank) {
+        for (String key : keys) {
+            List<Integer> ranks = ranksOfKey.get(key);
+            if (ranks == null) {
+                ranks = new ArrayList<Integer>();
+                ranksOfKey.put(key, ranks);
+            }
+            ranks.add(rank);
+        }
+    }
+
+    private static void toArrays(HashMap<String, List<Integer>> ranksOfKey, HashMap<String, int[]> result) {
+        for (String key : ranksOfKey.keySet()) {
+            List<Integer> ranks = ranksOfKey.get(key);
+            int[] array = new int[ranks.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ranks.get(i);
+            }
+            result.put(key, array);
+        }
+    }
+}
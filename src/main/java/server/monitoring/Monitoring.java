@@ -4,11 +4,15 @@ import server.attackgraph.AttackPath;
 import server.attackgraph.MulvalAttackGraph;
 import server.hostInformation.InformationSystem;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents the monitoring (an information system, an attack graph and attack paths).
- *
+ * <p>
+ * A monitoring object is filled while it is computed, then published in the {@link MonitoringRegistry}, which
+ * shares it between all the HTTP sessions. A published monitoring object has a version and can not be modified
+ * anymore: an update creates and publishes a new monitoring object.
  */
 public class Monitoring {
 
@@ -27,12 +31,77 @@ public class Monitoring {
      */
     private List<AttackPath> attackPathList = new ArrayList<AttackPath>();
 
+    /**
+     * The maximum number of attack paths kept when they were scored (0 if all the attack paths were kept)
+     */
+    private int attackPathLimit = 0;
+
+    /**
+     * The version of the monitoring object, 0 if it is not published
+     */
+    private final long version;
+
+    /**
+     * The indexes of the attack paths, built when the monitoring object is published
+     */
+    private final AttackPathIndex attackPathIndex;
 
     /**
      * Create a monitoring object with the folder where the cost parameters may be stored
      */
     public Monitoring(){
-        
+        this.version = 0;
+        this.attackPathIndex = null;
+    }
+
+    /**
+     * Create the published version of a monitoring object
+     *
+     * @param version    the version of the published monitoring object
+     * @param monitoring the monitoring object to publish
+     */
+    Monitoring(long version, Monitoring monitoring) {
+        this.version = version;
+        this.informationSystem = monitoring.informationSystem;
+        this.attackGraph = monitoring.attackGraph;
+        this.attackPathLimit = monitoring.attackPathLimit;
+        this.attackPathList = Collections.unmodifiableList(new ArrayList<AttackPath>(monitoring.attackPathList));
+        //the goals are computed before the attack paths are shared by the sessions
+        for (AttackPath attackPath : this.attackPathList) {
+            attackPath.getGoal();
+        }
+        this.attackPathIndex = new AttackPathIndex(this.attackPathList, this.informationSystem);
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version of the monitoring object, 0 if it is not published
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets attack path index.
+     *
+     * @return the indexes of the attack paths, null if the monitoring object is not published
+     */
+    public AttackPathIndex getAttackPathIndex() {
+        return attackPathIndex;
+    }
+
+    /**
+     * @return true if the monitoring object is published, and can not be modified anymore
+     */
+    public boolean isPublished() {
+        return version > 0;
+    }
+
+    private void checkNotPublished() {
+        if (isPublished()) {
+            throw new IllegalStateException("The version " + version + " of the monitoring object is published and can not be modified");
+        }
     }
 
     /**
@@ -50,6 +119,7 @@ public class Monitoring {
      * @param informationSystem new information system
      */
     public void setInformationSystem(InformationSystem informationSystem) {
+        checkNotPublished();
         this.informationSystem = informationSystem;
     }
 
@@ -68,6 +138,7 @@ public class Monitoring {
      * @param attackGraph the attack graph
      */
     public void setAttackGraph(MulvalAttackGraph attackGraph) {
+        checkNotPublished();
         this.attackGraph = attackGraph;
     }
 
@@ -86,7 +157,27 @@ public class Monitoring {
      * @param attackPathList the attack path list
      */
     public void setAttackPathList(List<AttackPath> attackPathList) {
+        checkNotPublished();
         this.attackPathList = attackPathList;
     }
 
+    /**
+     * Gets attack path limit.
+     *
+     * @return the maximum number of attack paths kept when they were scored (0 if all the attack paths were kept)
+     */
+    public int getAttackPathLimit() {
+        return attackPathLimit;
+    }
+
+    /**
+     * Sets attack path limit.
+     *
+     * @param attackPathLimit the maximum number of attack paths kept when they were scored (0 if all were kept)
+     */
+    public void setAttackPathLimit(int attackPathLimit) {
+        checkNotPublished();
+        this.attackPathLimit = attackPathLimit;
+    }
+
 }
\ No newline at end of file
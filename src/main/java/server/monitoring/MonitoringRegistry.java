@@ -0,0 +1,131 @@
+package server.monitoring;
+
+import server.database.Database;
+import server.properties.ProjectProperties;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The state shared by all the HTTP sessions of the application: the current version of the monitoring object
+ * and the vulnerability database.
+ * <p>
+ * The monitoring objects are published atomically: a reader gets the current version without lock and keeps
+ * using it while a new version is computed and published. The HTTP sessions only keep the number of the version
+ * they read, so the memory used does not depend on the number of sessions.
+ */
+public class MonitoringRegistry {
+
+    private static final MonitoringRegistry instance = new MonitoringRegistry();
+
+    /**
+     * The current published monitoring object (null before the first initialization)
+     */
+    private final AtomicReference<Monitoring> current = new AtomicReference<Monitoring>();
+
+    /**
+     * The last version number given to a monitoring object
+     */
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    /**
+     * The vulnerability database
+     */
+    private Database database = null;
+
+    private MonitoringRegistry() {
+
+    }
+
+    public static MonitoringRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets current.
+     *
+     * @return the current published monitoring object, null if no monitoring object has been published
+     */
+    public Monitoring getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version of the current monitoring object, 0 if no monitoring object has been published
+     */
+    public long getVersion() {
+        Monitoring monitoring = current.get();
+        return monitoring == null ? 0 : monitoring.getVersion();
+    }
+
+    /**
+     * Publish a new version of the monitoring object, replacing the current version unless a more recent version
+     * has been published by a concurrent call (the versions are numbered when they are published, so the current
+     * version never goes back)
+     *
+     * @param monitoring the computed monitoring object
+     * @return the published monitoring object, null if a more recent version has been published in the meantime
+     */
+    public Monitoring publish(Monitoring monitoring) {
+        Monitoring published = new Monitoring(lastVersion.incrementAndGet(), monitoring);
+        Monitoring previous;
+        do {
+            previous = current.get();
+            if (previous != null && previous.getVersion() > published.getVersion()) {
+                Logger.getLogger(MonitoringRegistry.class.getName()).log(Level.INFO, "Version " + published.getVersion()
+                        + " of the monitoring object not published, the version " + previous.getVersion() + " is more recent");
+                return null;
+            }
+        } while (!current.compareAndSet(previous, published));
+        Logger.getLogger(MonitoringRegistry.class.getName()).log(Level.INFO, "Version " + published.getVersion() + " of the monitoring object published");
+        return published;
+    }
+
+    /**
+     * Publish a new version of the monitoring object, computed from the version expectedVersion, only if
+     * expectedVersion is still the current version
+     *
+     * @param monitoring      the computed monitoring object
+     * @param expectedVersion the version from which the monitoring object has been computed
+     * @return the published monitoring object, null if another version has been published in the meantime
+     */
+    public Monitoring publish(Monitoring monitoring, long expectedVersion) {
+        Monitoring expected = current.get();
+        if (expected == null || expected.getVersion() != expectedVersion) {
+            return null;
+        }
+        Monitoring published = new Monitoring(lastVersion.incrementAndGet(), monitoring);
+        if (!current.compareAndSet(expected, published)) {
+            return null;
+        }
+        Logger.getLogger(MonitoringRegistry.class.getName()).log(Level.INFO, "Version " + published.getVersion() + " of the monitoring object published");
+        return published;
+    }
+
+    /**
+     * Gets database.
+     *
+     * @return the vulnerability database, opened at the first call
+     * @throws Exception if the database can not be opened
+     */
+    public synchronized Database getDatabase() throws Exception {
+        if (database == null) {
+            database = new Database(ProjectProperties.getInstance().getProperty("vulnerability-database"));
+        }
+        return database;
+    }
+
+    /**
+     * Close the vulnerability database, when the application is stopped
+     */
+    public synchronized void close() {
+        if (database != null) {
+            database.close();
+            database = null;
+        }
+    }
+}
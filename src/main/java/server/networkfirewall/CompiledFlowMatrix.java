@@ -0,0 +1,299 @@
+package server.networkfirewall;
+
+import server.topology.Topology;
+import server.topology.component.IPAddress;
+import server.topology.component.Interface;
+import server.topology.component.PortRange;
+import server.topology.component.Protocol;
+import server.topology.component.VLAN;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Flow matrix compiled into lookup tables, to test if a flow is authorized without going through all the lines.
+ * <p>
+ * The lines are grouped by the prefix lengths of their source and destination (32 for an IP, the network mask
+ * for a VLAN, -1 for the Internet). In each group, the lines are indexed by their (source network, destination
+ * network) and hold, for each protocol, the sorted and merged intervals of their destination ports. Testing a
+ * flow costs one hash lookup and one binary search per group. The source ports of the lines are not taken into
+ * account: a flow can use any source port.
+ * <p>
+ * A line whose source or destination is an IP address which is not in the topology, or a VLAN without network
+ * address, does not authorize any flow (as {@link FlowMatrixElement#contains(Interface)}).
+ */
+public class CompiledFlowMatrix {
+
+    /**
+     * The prefix length of the Internet
+     */
+    private static final int INTERNET = -1;
+
+    /**
+     * The groups of lines
+     */
+    private final List<LineGroup> groups = new ArrayList<LineGroup>();
+
+    /**
+     * Compile flow matrix lines
+     *
+     * @param lines the flow matrix lines
+     */
+    public CompiledFlowMatrix(List<FlowMatrixLine> lines) {
+        HashMap<Long, HashMap<Long, List<PortRange>[]>> rangesByGroup = new HashMap<Long, HashMap<Long, List<PortRange>[]>>();
+        for (FlowMatrixLine line : lines) {
+            long source = compileElement(line.getSource());
+            long destination = compileElement(line.getDestination());
+            if (source == Long.MIN_VALUE || destination == Long.MIN_VALUE)
+                continue;
+            long groupKey = (source >> 32 << 32) | ((destination >> 32) & 0xFFFFFFFFL);
+            HashMap<Long, List<PortRange>[]> group = rangesByGroup.get(groupKey);
+            if (group == null) {
+                group = new HashMap<Long, List<PortRange>[]>();
+                rangesByGroup.put(groupKey, group);
+            }
+            long networksKey = networksKey((int) source, (int) destination);
+            List<PortRange>[] ranges = group.get(networksKey);
+            if (ranges == null) {
+                ranges = newRangeLists();
+                group.put(networksKey, ranges);
+            }
+            Protocol protocol = line.getProtocol() == null ? Protocol.ANY : line.getProtocol();
+            ranges[protocol.ordinal()].add(line.getDestination_port());
+        }
+
+        for (Long groupKey : rangesByGroup.keySet()) {
+            LineGroup group = new LineGroup((int) (groupKey >> 32), (int) (long) groupKey);
+            HashMap<Long, List<PortRange>[]> ranges = rangesByGroup.get(groupKey);
+            for (Long networksKey : ranges.keySet()) {
+                PortIntervals[] intervals = new PortIntervals[Protocol.values().length];
+                for (int p = 0; p < intervals.length; p++) {
+                    if (!ranges.get(networksKey)[p].isEmpty())
+                        intervals[p] = new PortIntervals(ranges.get(networksKey)[p]);
+                }
+                group.portIntervals.put(networksKey, intervals);
+                group.sourceNetworks.add((int) (networksKey >> 32));
+            }
+            groups.add(group);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<PortRange>[] newRangeLists() {
+        List<PortRange>[] result = new List[Protocol.values().length];
+        for (int p = 0; p < result.length; p++) {
+            result[p] = new ArrayList<PortRange>(1);
+        }
+        return result;
+    }
+
+    /**
+     * Compile a flow matrix element
+     *
+     * @param element the flow matrix element
+     * @return (prefix length &lt;&lt; 32) | network, or Long.MIN_VALUE if the element does not contain any interface
+     */
+    private static long compileElement(FlowMatrixElement element) {
+        if (element.isInternet())
+            return ((long) INTERNET << 32);
+        switch (element.getType()) {
+            case IP:
+                Interface intface = (Interface) element.getResource();
+                if (intface == null || intface.getAddress() == null)
+                    return Long.MIN_VALUE;
+                return (32L << 32) | (intface.getAddress().toInt() & 0xFFFFFFFFL);
+            case VLAN:
+                VLAN vlan = (VLAN) element.getResource();
+                if (vlan == null || vlan.getNetworkAddress() == null)
+                    return Long.MIN_VALUE;
+                IPAddress mask = IPAddress.getIPv4NetMask(vlan.getNetworkMask());
+                return ((long) mask.getMaskFromIPv4Address() << 32) | ((vlan.getNetworkAddress().toInt() & mask.toInt()) & 0xFFFFFFFFL);
+            default:
+                return Long.MIN_VALUE;
+        }
+    }
+
+    private static long networksKey(int source, int destination) {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Test if a flow between two addresses is authorized
+     *
+     * @param source      the source address
+     * @param destination the destination address
+     * @param protocol    the protocol of the flow (null for any protocol)
+     * @param port        the destination port
+     * @return true if a line of the flow matrix authorizes the flow
+     */
+    public boolean isAllowed(IPAddress source, IPAddress destination, Protocol protocol, int port) {
+        return isAllowed(false, source.toInt(), false, destination.toInt(), protocol, port);
+    }
+
+    /**
+     * Test if a flow from the Internet to an address is authorized
+     *
+     * @param destination the destination address
+     * @param protocol    the protocol of the flow (null for any protocol)
+     * @param port        the destination port
+     * @return true if a line of the flow matrix authorizes the flow
+     */
+    public boolean isAllowedFromInternet(IPAddress destination, Protocol protocol, int port) {
+        return isAllowed(true, 0, false, destination.toInt(), protocol, port);
+    }
+
+    /**
+     * Test if a flow from an address to the Internet is authorized
+     *
+     * @param source   the source address
+     * @param protocol the protocol of the flow (null for any protocol)
+     * @param port     the destination port
+     * @return true if a line of the flow matrix authorizes the flow
+     */
+    public boolean isAllowedToInternet(IPAddress source, Protocol protocol, int port) {
+        return isAllowed(false, source.toInt(), true, 0, protocol, port);
+    }
+
+    /**
+     * Test if a flow is authorized
+     *
+     * @param sourceIsInternet      true if the flow comes from the Internet
+     * @param source                the source address (if not the Internet)
+     * @param destinationIsInternet true if the flow goes to the Internet
+     * @param destination           the destination address (if not the Internet)
+     * @param protocol              the protocol of the flow (null for any protocol)
+     * @param port                  the destination port
+     * @return true if a line of the flow matrix authorizes the flow
+     */
+    boolean isAllowed(boolean sourceIsInternet, int source, boolean destinationIsInternet, int destination, Protocol protocol, int port) {
+        for (LineGroup group : groups) {
+            if (group.allows(sourceIsInternet, source, destinationIsInternet, destination, protocol, port))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the flows between all the hosts of a topology and all their services
+     *
+     * @param topology the network topology
+     * @return the services that each host (and the Internet) is authorized to access
+     */
+    public FlowMatrixEvaluation evaluate(Topology topology) {
+        return new FlowMatrixEvaluation(this, topology);
+    }
+
+    /**
+     * Get a key identifying the lines whose source contains an address: two addresses with the same key are
+     * authorized the same flows.
+     *
+     * @param source the source address
+     * @return the source networks of the lines containing the address, one per group (-1 if none)
+     */
+    long[] getSourceSignature(int source) {
+        long[] result = new long[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            LineGroup group = groups.get(g);
+            result[g] = -1;
+            if (group.sourcePrefixLength != INTERNET) {
+                int sourceNetwork = source & group.sourceMask;
+                if (group.sourceNetworks.contains(sourceNetwork))
+                    result[g] = sourceNetwork & 0xFFFFFFFFL;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The lines with the same source and destination prefix lengths
+     */
+    private static class LineGroup {
+        final int sourcePrefixLength;
+        final int destinationPrefixLength;
+        final int sourceMask;
+        final int destinationMask;
+
+        /**
+         * The port intervals of each protocol, by (source network, destination network)
+         */
+        final HashMap<Long, PortIntervals[]> portIntervals = new HashMap<Long, PortIntervals[]>();
+
+        /**
+         * The source networks of the group
+         */
+        final HashSet<Integer> sourceNetworks = new HashSet<Integer>();
+
+        LineGroup(int sourcePrefixLength, int destinationPrefixLength) {
+            this.sourcePrefixLength = sourcePrefixLength;
+            this.destinationPrefixLength = destinationPrefixLength;
+            this.sourceMask = sourcePrefixLength == INTERNET ? 0 : IPAddress.getIPv4NetMask(sourcePrefixLength).toInt();
+            this.destinationMask = destinationPrefixLength == INTERNET ? 0 : IPAddress.getIPv4NetMask(destinationPrefixLength).toInt();
+        }
+
+        boolean allows(boolean sourceIsInternet, int source, boolean destinationIsInternet, int destination, Protocol protocol, int port) {
+            if (sourceIsInternet != (sourcePrefixLength == INTERNET) || destinationIsInternet != (destinationPrefixLength == INTERNET))
+                return false;
+            PortIntervals[] intervals = portIntervals.get(networksKey(source & sourceMask, destination & destinationMask));
+            if (intervals == null)
+                return false;
+            //a line with the protocol ANY authorizes all the protocols
+            PortIntervals any = intervals[Protocol.ANY.ordinal()];
+            if (any != null && any.contains(port))
+                return true;
+            if (protocol == null || protocol == Protocol.ANY)
+                return false;
+            PortIntervals specific = intervals[protocol.ordinal()];
+            return specific != null && specific.contains(port);
+        }
+    }
+
+    /**
+     * Sorted disjoint port intervals
+     */
+    private static class PortIntervals {
+        final int[] starts;
+        final int[] ends;
+
+        PortIntervals(List<PortRange> ranges) {
+            int[][] sorted = new int[ranges.size()][];
+            for (int i = 0; i < ranges.size(); i++) {
+                PortRange range = ranges.get(i);
+                sorted[i] = range.isAny() ? new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE} : new int[]{range.getMin(), range.getMax()};
+            }
+            Arrays.sort(sorted, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] a, int[] b) {
+                    return Integer.compare(a[0], b[0]);
+                }
+            });
+            int[] mergedStarts = new int[sorted.length];
+            int[] mergedEnds = new int[sorted.length];
+            int size = 0;
+            for (int[] range : sorted) {
+                if (range[1] < range[0])
+                    continue;
+                if (size > 0 && range[0] <= mergedEnds[size - 1] + 1L) {
+                    mergedEnds[size - 1] = Math.max(mergedEnds[size - 1], range[1]);
+                } else {
+                    mergedStarts[size] = range[0];
+                    mergedEnds[size] = range[1];
+                    size++;
+                }
+            }
+            starts = Arrays.copyOf(mergedStarts, size);
+            ends = Arrays.copyOf(mergedEnds, size);
+        }
+
+        boolean contains(int port) {
+            //the last interval starting at or before the port
+            int i = Arrays.binarySearch(starts, port);
+            if (i < 0)
+                i = -i - 2;
+            return i >= 0 && port <= ends[i];
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package server.networkfirewall;
 import server.topology.Topology;
+import server.topology.component.Interface;
+import server.topology.component.Protocol;
 import org.jdom2.Element;
 
 import java.util.ArrayList;
@@ -15,6 +17,12 @@ public class FlowMatrix {
      */
     private List<FlowMatrixLine> flowMatrixLines = new ArrayList<>();
 
+    /**
+     * The compiled lines, and the number of lines when they have been compiled
+     */
+    private CompiledFlowMatrix compiledFlowMatrix = null;
+    private int compiledLineNumber = -1;
+
     /**
      * Create a flow matrix from a XML DOM element
      *
@@ -36,4 +44,45 @@ public class FlowMatrix {
         return flowMatrixLines;
     }
 
+    /**
+     * @return the compiled flow matrix, compiled again if lines have been added
+     */
+    public synchronized CompiledFlowMatrix getCompiledFlowMatrix() {
+        if (compiledFlowMatrix == null || compiledLineNumber != flowMatrixLines.size()) {
+            compiledFlowMatrix = new CompiledFlowMatrix(flowMatrixLines);
+            compiledLineNumber = flowMatrixLines.size();
+        }
+        return compiledFlowMatrix;
+    }
+
+    /**
+     * Test if a flow is authorized by a line of the flow matrix
+     *
+     * @param source      the source interface, null for the Internet
+     * @param destination the destination interface, null for the Internet
+     * @param protocol    the protocol of the flow (null for any protocol)
+     * @param port        the destination port
+     * @return true if the flow is authorized
+     */
+    public boolean isAllowed(Interface source, Interface destination, Protocol protocol, int port) {
+        if (source == null && destination == null)
+            return false;
+        CompiledFlowMatrix compiled = getCompiledFlowMatrix();
+        if (source == null)
+            return compiled.isAllowedFromInternet(destination.getAddress(), protocol, port);
+        if (destination == null)
+            return compiled.isAllowedToInternet(source.getAddress(), protocol, port);
+        return compiled.isAllowed(source.getAddress(), destination.getAddress(), protocol, port);
+    }
+
+    /**
+     * Evaluate the flows between all the hosts of a topology and all their services
+     *
+     * @param topology the network topology
+     * @return the services that each host (and the Internet) is authorized to access
+     */
+    public FlowMatrixEvaluation evaluate(Topology topology) {
+        return getCompiledFlowMatrix().evaluate(topology);
+    }
+
 }
@@ -43,7 +43,7 @@ public class FlowMatrixElement {
                 String ipAddress = element.getAttributeValue("resource");
                 this.type = FlowMatrixElementType.IP;
                 try {
-                    this.resource = topology.getInterfaceByIpAddress(new IPAddress(ipAddress));
+                    this.resource = topology.getInterfaceByIpAddress(IPAddress.valueOf(ipAddress));
                 } catch (Exception e) {
                     throw new IllegalStateException("The resource is not an IP adress.");
                 }
@@ -70,16 +70,14 @@ public class FlowMatrixElement {
             case INTERNET:
                 return false;
             case IP:
-                return ni.getAddress().equals(this.getResource());
+                //the resource of an IP element is the interface having this IP address
+                return this.getResource() != null && ni.getAddress().equals(((Interface) this.getResource()).getAddress());
             case VLAN:
-                try {
-                    VLAN vlan = (VLAN) this.getResource();
-                    return IPAddress.networkInOtherNetwork(new IPAddress(ni.getAddress().getAddress()), IPAddress.getIPv4NetMask(32), new IPAddress(
-                            vlan.getNetworkAddress().getAddress()), IPAddress.getIPv4NetMask(vlan.getNetworkMask()));
-                } catch (Exception e) {
-                    e.printStackTrace();
+                VLAN vlan = (VLAN) this.getResource();
+                if (vlan == null || vlan.getNetworkAddress() == null || ni.getAddress() == null)
                     return false;
-                }
+                return IPAddress.networkInOtherNetwork(ni.getAddress().toInt(), -1, vlan.getNetworkAddress().toInt(),
+                        IPAddress.getIPv4NetMask(vlan.getNetworkMask()).toInt());
             default:
                 return false;
         }
@@ -0,0 +1,189 @@
+package server.networkfirewall;
+
+import server.hostInformation.InformationSystemHost;
+import server.hostInformation.Service;
+import server.topology.Topology;
+import server.topology.component.Host;
+import server.topology.component.Interface;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The services of a topology that each host (and the Internet) is authorized to access by a flow matrix.
+ * <p>
+ * A host can access a service if the flow matrix authorizes a flow from one of the addresses of the host to the
+ * address of the service (or to one of the addresses of its host when the service has no address), with the
+ * protocol and the port of the service. The hosts whose addresses are in the source of the same lines get the
+ * same authorizations, they are evaluated once.
+ */
+public class FlowMatrixEvaluation {
+
+    /**
+     * The hosts of the topology
+     */
+    private final List<Host> hosts;
+
+    /**
+     * The services of all the hosts of the topology
+     */
+    private final List<Service> services = new ArrayList<Service>();
+
+    /**
+     * The index of each host in {@link #hosts}
+     */
+    private final IdentityHashMap<Host, Integer> indexOfHost = new IdentityHashMap<Host, Integer>();
+
+    /**
+     * The index of each service in {@link #services}
+     */
+    private final IdentityHashMap<Service, Integer> indexOfService = new IdentityHashMap<Service, Integer>();
+
+    /**
+     * The services that each host can access (bit i set if services[i] is accessible)
+     */
+    private final BitSet[] accessibleServices;
+
+    /**
+     * The services that can be accessed from the Internet
+     */
+    private final BitSet accessibleFromInternet;
+
+    /**
+     * Evaluate the flows between all the hosts of a topology and all their services
+     *
+     * @param flowMatrix the compiled flow matrix
+     * @param topology   the network topology
+     */
+    public FlowMatrixEvaluation(CompiledFlowMatrix flowMatrix, Topology topology) {
+        this.hosts = new ArrayList<Host>(topology.getHosts());
+        List<int[]> serviceAddresses = new ArrayList<int[]>();
+        for (int h = 0; h < hosts.size(); h++) {
+            Host host = hosts.get(h);
+            indexOfHost.put(host, h);
+            if (host instanceof InformationSystemHost) {
+                for (Service service : ((InformationSystemHost) host).getServices().values()) {
+                    indexOfService.put(service, services.size());
+                    services.add(service);
+                    serviceAddresses.add(service.getIpAddress() != null ? new int[]{service.getIpAddress().toInt()} : getAddresses(host));
+                }
+            }
+        }
+
+        accessibleServices = new BitSet[hosts.size()];
+        HashMap<String, BitSet> accessibleServicesOfSignature = new HashMap<String, BitSet>();
+        for (int h = 0; h < hosts.size(); h++) {
+            int[] sourceAddresses = getAddresses(hosts.get(h));
+            StringBuilder signature = new StringBuilder();
+            for (int sourceAddress : sourceAddresses) {
+                signature.append(Arrays.toString(flowMatrix.getSourceSignature(sourceAddress)));
+            }
+            BitSet accessible = accessibleServicesOfSignature.get(signature.toString());
+            if (accessible == null) {
+                accessible = new BitSet(services.size());
+                for (int s = 0; s < services.size(); s++) {
+                    if (isAllowed(flowMatrix, false, sourceAddresses, serviceAddresses.get(s), services.get(s)))
+                        accessible.set(s);
+                }
+                accessibleServicesOfSignature.put(signature.toString(), accessible);
+            }
+            accessibleServices[h] = accessible;
+        }
+
+        accessibleFromInternet = new BitSet(services.size());
+        for (int s = 0; s < services.size(); s++) {
+            if (isAllowed(flowMatrix, true, new int[]{0}, serviceAddresses.get(s), services.get(s)))
+                accessibleFromInternet.set(s);
+        }
+    }
+
+    private static int[] getAddresses(Host host) {
+        List<Integer> addresses = new ArrayList<Integer>();
+        for (Interface intface : host.getInterfaces().values()) {
+            if (intface.getAddress() != null)
+                addresses.add(intface.getAddress().toInt());
+        }
+        int[] result = new int[addresses.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = addresses.get(i);
+        }
+        return result;
+    }
+
+    private static boolean isAllowed(CompiledFlowMatrix flowMatrix, boolean sourceIsInternet, int[] sourceAddresses, int[] destinationAddresses, Service service) {
+        for (int source : sourceAddresses) {
+            for (int destination : destinationAddresses) {
+                if (flowMatrix.isAllowed(sourceIsInternet, source, false, destination, service.getProtocol(), service.getPortNumber()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test if a host can access a service
+     *
+     * @param host    the source host
+     * @param service the service
+     * @return true if the flow matrix authorizes the host to access the service
+     */
+    public boolean isAllowed(Host host, Service service) {
+        Integer hostIndex = indexOfHost.get(host);
+        Integer serviceIndex = indexOfService.get(service);
+        return hostIndex != null && serviceIndex != null && accessibleServices[hostIndex].get(serviceIndex);
+    }
+
+    /**
+     * Test if a service can be accessed from the Internet
+     *
+     * @param service the service
+     * @return true if the flow matrix authorizes the Internet to access the service
+     */
+    public boolean isAllowedFromInternet(Service service) {
+        Integer serviceIndex = indexOfService.get(service);
+        return serviceIndex != null && accessibleFromInternet.get(serviceIndex);
+    }
+
+    /**
+     * Gets accessible services.
+     *
+     * @param host the source host
+     * @return the services that the host is authorized to access
+     */
+    public List<Service> getAccessibleServices(Host host) {
+        Integer hostIndex = indexOfHost.get(host);
+        if (hostIndex == null)
+            return new ArrayList<Service>();
+        return getServices(accessibleServices[hostIndex]);
+    }
+
+    /**
+     * Gets the services accessible from the Internet.
+     *
+     * @return the services that the Internet is authorized to access
+     */
+    public List<Service> getServicesAccessibleFromInternet() {
+        return getServices(accessibleFromInternet);
+    }
+
+    private List<Service> getServices(BitSet serviceSet) {
+        List<Service> result = new ArrayList<Service>();
+        for (int i = serviceSet.nextSetBit(0); i >= 0; i = serviceSet.nextSetBit(i + 1)) {
+            result.add(services.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Gets services.
+     *
+     * @return all the services of the topology at the time of the evaluation
+     */
+    public List<Service> getServices() {
+        return services;
+    }
+}
@@ -48,4 +48,20 @@ public class ProjectProperties {
     public String getProperty(String propertyName) {
         return this.getProperties().getProperty(propertyName);
     }
+
+    /**
+     * Get an integer property from the property file
+     *
+     * @param propertyName the property name
+     * @param defaultValue the value used if the property is not set
+     * @return the corresponding property, defaultValue if it is not set
+     * @throws NumberFormatException if the property is not an integer
+     */
+    public int getIntegerProperty(String propertyName, int defaultValue) {
+        String value = getProperty(propertyName);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
 }
@@ -0,0 +1,400 @@
+package server.rest;
+
+import server.attackgraph.Arc;
+import server.attackgraph.AttackGraph;
+import server.attackgraph.AttackPath;
+import server.attackgraph.Vertex;
+import server.hostInformation.InformationSystem;
+import server.hostInformation.InformationSystemHost;
+import server.topology.component.Host;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes JSON directly in an output stream, without building the JSON document (or its XML) in memory.
+ * <p>
+ * The attack graph and the attack paths are written with the JSON that was obtained before by converting their
+ * XML ({@link AttackGraph#toDomElement()}, {@link AttackPath#toDomXMLElement()}) with org.json.XML, so that
+ * the clients of the API see no change: the numeric texts are numbers, an element without child is an empty
+ * string and the repeated elements are in an array only when there are several of them.
+ */
+public class JsonStreamWriter {
+
+    /**
+     * The buffered writer of the output stream
+     */
+    private final Writer writer;
+
+    /**
+     * For each opened object or array, true if it is still empty
+     */
+    private boolean[] empty = new boolean[16];
+
+    /**
+     * The number of opened objects and arrays
+     */
+    private int depth = 0;
+
+    /**
+     * True if a name has been written, and not its value yet
+     */
+    private boolean afterName = false;
+
+    /**
+     * Create a JSON writer
+     *
+     * @param outputStream the output stream in which the JSON is written in UTF-8
+     */
+    public JsonStreamWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Start an object
+     *
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        writer.write('{');
+        push();
+        return this;
+    }
+
+    /**
+     * End the current object
+     *
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter endObject() throws IOException {
+        depth--;
+        writer.write('}');
+        return this;
+    }
+
+    /**
+     * Start an array
+     *
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        writer.write('[');
+        push();
+        return this;
+    }
+
+    /**
+     * End the current array
+     *
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter endArray() throws IOException {
+        depth--;
+        writer.write(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next member of the current object
+     *
+     * @param name the name
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter name(String name) throws IOException {
+        beforeValue();
+        writer.write(JSONObject.quote(name));
+        writer.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        writer.write(JSONObject.quote(value));
+        return this;
+    }
+
+    /**
+     * Write an integer
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Write a boolean
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write the text of an XML element, as converted by org.json.XML: a number, a boolean, null or a string
+     *
+     * @param text the text of the XML element
+     * @return this writer
+     * @throws IOException
+     */
+    public JsonStreamWriter xmlTextValue(String text) throws IOException {
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("false")) {
+            return value(trimmed.equalsIgnoreCase("true"));
+        }
+        if (trimmed.equalsIgnoreCase("null")) {
+            beforeValue();
+            writer.write("null");
+            return this;
+        }
+        if (!trimmed.isEmpty() && (trimmed.charAt(0) == '-' || (trimmed.charAt(0) >= '0' && trimmed.charAt(0) <= '9'))) {
+            try {
+                Long longValue = Long.valueOf(trimmed);
+                if (longValue.toString().equals(trimmed)) {
+                    return value(longValue);
+                }
+            } catch (NumberFormatException e) {
+                try {
+                    Double doubleValue = Double.valueOf(trimmed);
+                    if (doubleValue.toString().equals(trimmed) && !doubleValue.isInfinite() && !doubleValue.isNaN()) {
+                        beforeValue();
+                        writer.write(doubleToString(trimmed));
+                        return this;
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return value(trimmed);
+    }
+
+    /**
+     * Flush the written JSON in the output stream
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Write {"attack_graph": {"arcs": ..., "vertices": ...}}
+     *
+     * @param attackGraph the attack graph
+     * @throws IOException
+     */
+    public void writeAttackGraph(AttackGraph attackGraph) throws IOException {
+        beginObject().name("attack_graph").beginObject();
+        writeArcs(attackGraph.arcs);
+
+        name("vertices");
+        if (attackGraph.vertices.isEmpty()) {
+            value("");
+        } else {
+            beginObject().name("vertex");
+            boolean isArray = beginRepeated(attackGraph.vertices.size());
+            for (Vertex vertex : attackGraph.vertices.values()) {
+                beginObject();
+                name("id").value(vertex.id);
+                name("fact").xmlTextValue(vertex.fact.factString);
+                name("metric").xmlTextValue(vertex.mulvalMetric + "");
+                name("type").xmlTextValue(vertex.type.toString().toUpperCase());
+                endObject();
+            }
+            endRepeated(isArray).endObject();
+        }
+        endObject().endObject();
+    }
+
+    /**
+     * Write {"attack_path": {"scoring": ..., "arcs": ...}}
+     *
+     * @param attackPath the attack path
+     * @throws IOException
+     */
+    public void writeAttackPath(AttackPath attackPath) throws IOException {
+        beginObject().name("attack_path");
+        writeAttackPathContent(attackPath);
+        endObject();
+    }
+
+    /**
+     * Write {"attack_paths": {"attack_path": ...}}
+     *
+     * @param attackPaths the attack paths
+     * @throws IOException
+     */
+    public void writeAttackPaths(List<AttackPath> attackPaths) throws IOException {
+        beginObject().name("attack_paths");
+        if (attackPaths.isEmpty()) {
+            value("");
+        } else {
+            beginObject().name("attack_path");
+            boolean isArray = beginRepeated(attackPaths.size());
+            for (AttackPath attackPath : attackPaths) {
+                writeAttackPathContent(attackPath);
+            }
+            endRepeated(isArray).endObject();
+        }
+        endObject();
+    }
+
+    /**
+     * Write {"hosts": [{"name": ...}, ...]}
+     *
+     * @param informationSystem the information system
+     * @throws IOException
+     */
+    public void writeHostsList(InformationSystem informationSystem) throws IOException {
+        beginObject().name("hosts").beginArray();
+        for (Host host : informationSystem.getTopology().getHosts()) {
+            beginObject().name("name").value(((InformationSystemHost) host).getName()).endObject();
+        }
+        endArray().endObject();
+    }
+
+    /**
+     * Write a page of the attack paths matching a listing request:
+     * {"attack_paths": [{"id": ..., "scoring": ..., "arcs": ...}, ...], "total": ..., "offset": ..., "limit": ..., "version": ...}
+     *
+     * @param attackPaths the list of all the attack paths
+     * @param ids         the ids of the attack paths of the page, in the list
+     * @param total       the number of attack paths matching the request
+     * @param offset      the position of the page in the matching attack paths
+     * @param limit       the maximum number of attack paths in a page
+     * @param version     the version of the monitoring object containing the attack paths
+     * @throws IOException
+     */
+    public void writeAttackPathsPage(List<AttackPath> attackPaths, int[] ids, int total, int offset, int limit, long version) throws IOException {
+        beginObject().name("attack_paths").beginArray();
+        for (int id : ids) {
+            writeAttackPathContent(attackPaths.get(id), id);
+        }
+        endArray();
+        name("total").value(total);
+        name("offset").value(offset);
+        name("limit").value(limit);
+        if (offset + ids.length < total) {
+            name("next_offset").value(offset + ids.length);
+        }
+        name("version").value(version);
+        endObject();
+    }
+
+    private void writeAttackPathContent(AttackPath attackPath) throws IOException {
+        writeAttackPathContent(attackPath, null);
+    }
+
+    private void writeAttackPathContent(AttackPath attackPath, Integer id) throws IOException {
+        beginObject();
+        if (id != null) {
+            name("id").value(id);
+        }
+        name("scoring").xmlTextValue(attackPath.scoring + "");
+        writeArcs(attackPath.arcs);
+        endObject();
+    }
+
+    private void writeArcs(List<Arc> arcs) throws IOException {
+        name("arcs");
+        if (arcs.isEmpty()) {
+            value("");
+            return;
+        }
+        beginObject().name("arc");
+        boolean isArray = beginRepeated(arcs.size());
+        for (Arc arc : arcs) {
+            //As in the XML, the source is the destination of the arc of the attack graph
+            beginObject().name("src").value(arc.destination.id).name("dst").value(arc.source.id).endObject();
+        }
+        endRepeated(isArray).endObject();
+    }
+
+    /**
+     * @param count the number of repeated elements
+     * @return true if the elements are written in an array (more than one element)
+     */
+    private boolean beginRepeated(int count) throws IOException {
+        if (count > 1) {
+            beginArray();
+            return true;
+        }
+        return false;
+    }
+
+    private JsonStreamWriter endRepeated(boolean isArray) throws IOException {
+        if (isArray) {
+            endArray();
+        }
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (!empty[depth - 1]) {
+                writer.write(',');
+            }
+            empty[depth - 1] = false;
+        }
+    }
+
+    private void push() {
+        if (depth == empty.length) {
+            empty = Arrays.copyOf(empty, depth * 2);
+        }
+        empty[depth++] = true;
+    }
+
+    /**
+     * @param number the string of a finite double
+     * @return the number without trailing zeros, as written by org.json
+     */
+    private static String doubleToString(String number) {
+        if (number.indexOf('.') < 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return number;
+        }
+        int end = number.length();
+        while (number.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (number.charAt(end - 1) == '.') {
+            end--;
+        }
+        return number.substring(0, end);
+    }
+}
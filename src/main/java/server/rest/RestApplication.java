@@ -7,6 +7,7 @@ import org.json.JSONObject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 @ApplicationPath("/rest")
 public class RestApplication extends ResourceConfig {
@@ -28,15 +29,41 @@ public class RestApplication extends ResourceConfig {
      * @return the relative {@link javax.ws.rs.core.Response} object
      */
     public static Response returnJsonObject(HttpServletRequest request, JSONObject jsonObject) {
+        return addAccessControlHeaders(request, Response.ok(jsonObject.toString())).build();
+    }
+
+    /**
+     * Returns the {@link javax.ws.rs.core.Response} object from a
+     * {@link org.json.JSONObject}, with the status 202 (Accepted) of a request still processed in the background
+     *
+     * @param jsonObject the jsonObject to return
+     * @return the relative {@link javax.ws.rs.core.Response} object
+     */
+    public static Response returnAcceptedJsonObject(HttpServletRequest request, JSONObject jsonObject) {
+        return addAccessControlHeaders(request, Response.accepted(jsonObject.toString())).build();
+    }
+
+    /**
+     * Returns the {@link javax.ws.rs.core.Response} object writing its content directly in
+     * the output stream of the response (for example with a {@link JsonStreamWriter})
+     *
+     * @param streamingOutput the writer of the content of the response
+     * @param mediaType the media type of the content
+     * @return the relative {@link javax.ws.rs.core.Response} object
+     */
+    public static Response returnStreamingOutput(HttpServletRequest request, StreamingOutput streamingOutput, String mediaType) {
+        return addAccessControlHeaders(request, Response.ok(streamingOutput, mediaType)).build();
+    }
+
+    private static Response.ResponseBuilder addAccessControlHeaders(HttpServletRequest request, Response.ResponseBuilder responseBuilder) {
         // client's origin
         String clientOrigin = request.getHeader("origin");
-        return Response.ok(jsonObject.toString())
+        return responseBuilder
                 .header("Access-Control-Allow-Origin", clientOrigin)
                 .header("Access-Control-Allow-Headers", "origin, content-type, accept, authorization")
                 .header("Access-Control-Allow-Credentials", "true")
                 .header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, HEAD")
-                .header("Access-Control-Max-Age", "1209600")
-                .build();
+                .header("Access-Control-Max-Age", "1209600");
     }
 
     /**
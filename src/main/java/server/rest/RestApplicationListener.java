@@ -0,0 +1,28 @@
+package server.rest;
+
+import server.api.JobManager;
+import server.monitoring.MonitoringRegistry;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Releases the resources shared by the requests (the threads of the jobs and the connections of the vulnerability
+ * database) when the application is stopped
+ */
+@WebListener
+public class RestApplicationListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        //the jobs use the database: they are stopped first
+        JobManager.getInstance().shutdown();
+        MonitoringRegistry.getInstance().close();
+    }
+}
@@ -1,29 +1,44 @@
 package server.rest;
 
+import server.api.AttackGraphUpdate;
 import server.api.AttackPathManagement;
+import server.api.InitializationJob;
+import server.api.JobManager;
 import server.api.MulVALConnection;
 import server.attackgraph.AttackGraph;
-import server.attackgraph.MulvalAttackGraph;
+import server.attackgraph.AttackGraphDelta;
+import server.attackgraph.AttackPath;
+import server.attackgraph.AttackGraphSnapshot;
 import server.database.Database;
 import server.hostInformation.InformationSystem;
+import server.monitoring.AttackPathIndex;
 import server.monitoring.Monitoring;
+import server.monitoring.MonitoringRegistry;
 import server.properties.ProjectProperties;
 import org.jdom2.Element;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
+import org.json.JSONArray;
 import org.json.JSONObject;
-import org.json.XML;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import server.attackgraph.AttackPath;
 
 @Path("/json/")
 public class RestJsonAPI {
@@ -33,109 +48,412 @@ public class RestJsonAPI {
      * calls (database, attack graph, attack paths,...)
      *
      * @param request the HTTP request
+     * @param topK    the maximum number of attack paths kept, with the highest scores (optional, 0 to keep all the
+     *                attack paths, attack-path-top-k property by default)
      * @return the HTTP response
      * @throws Exception
      */
     @GET
     @Path("initializeTest")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response initialiseTest(@Context HttpServletRequest request) throws Exception {
-        String databasePath = ProjectProperties.getInstance().getProperty("vulnerability-database");
+    public Response initialiseTest(@Context HttpServletRequest request, @QueryParam("top_k") Integer topK) throws Exception {
+        return runInitializationJob(request, true, topK);
+    }
 
+    /**
+     * Generates the attack graph and initializes the main objects for other API
+     * calls (database, attack graph, attack paths,...)
+     *
+     * @param request the HTTP request
+     * @param topK    the maximum number of attack paths kept, with the highest scores (optional, 0 to keep all the
+     *                attack paths, attack-path-top-k property by default)
+     * @return the HTTP response
+     * @throws Exception
+     */
+    @GET
+    @Path("initialize")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response initialise(@Context HttpServletRequest request, @QueryParam("top_k") Integer topK) throws Exception {
+        return runInitializationJob(request, false, topK);
+    }
+
+    /**
+     * Run an initialization job on the {@link JobManager} and wait for its end, up to initialize-wait-timeout
+     * seconds. A job still running after this time continues in the background and is returned with the status
+     * 202, its status is read with GET jobs/{id}.
+     *
+     * @param request the HTTP request
+     * @param isTest true to use the test inputs
+     * @param topK the maximum number of attack paths kept (null for the attack-path-top-k property)
+     * @return the HTTP response
+     * @throws Exception
+     */
+    private static Response runInitializationJob(HttpServletRequest request, boolean isTest, Integer topK) throws Exception {
         //Load the vulnerability and remediation database
-        Database database = new Database(databasePath);
+        Database database = MonitoringRegistry.getInstance().getDatabase();
 
-        String topologyFilePath = ProjectProperties.getInstance().getProperty("output-topology");
+        if (topK != null && topK < 0) {
+            return RestApplication.returnErrorMessage(request, "top_k must be positive");
+        }
+        InitializationJob job = new InitializationJob(isTest, database, topK == null ? AttackPathManagement.getDefaultTopK() : topK);
+        try {
+            JobManager.getInstance().submit(job);
+        } catch (RejectedExecutionException e) {
+            return RestApplication.returnErrorMessage(request, "Too many jobs are waiting, retry later");
+        }
+        int waitTimeout = ProjectProperties.getInstance().getIntegerProperty("initialize-wait-timeout", 30);
+        if (!job.awaitCompletion(waitTimeout * 1000L)) {
+            return RestApplication.returnAcceptedJsonObject(request, job.toJsonObject());
+        }
+        if (job.getStatus() != InitializationJob.Status.SUCCEEDED) {
+            return RestApplication.returnErrorMessage(request,
+                    job.getError() != null ? job.getError() : "The job " + job.getId() + " has been cancelled");
+        }
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Generating topology and mulval inputs " + topologyFilePath);
-        MulVALConnection.prepareMulVALInputs(true);
+        request.getSession(true).setAttribute("monitoring-version", job.getPublishedVersion());
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Loading topology " + topologyFilePath);
-        InformationSystem informationSystem = MulVALConnection.loadTopologyXMLFile(topologyFilePath, database);
+        return RestApplication.returnJsonObject(
+                request, new JSONObject().put("status", "AttackGraph/AttackPath Genereted Successfull"));
+    }
 
-        AttackGraph attackGraph = MulVALConnection.generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile();
-        if (attackGraph == null) {
-            return RestApplication.returnErrorMessage(request, "the attack graph is empty");
+    /**
+     * Submits a job generating the attack graph and the attack paths, published as a new version of the
+     * monitoring object when the job succeeds. The job runs in the background: its status is read with GET jobs/{id}.
+     *
+     * @param request the HTTP request
+     * @param isTest true to use the test inputs
+     * @param topK the maximum number of attack paths kept, with the highest scores (optional, 0 to keep all the
+     *             attack paths, attack-path-top-k property by default)
+     * @return the HTTP response
+     * @throws Exception
+     */
+    @POST
+    @Path("jobs/initialize")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitInitializationJob(@Context HttpServletRequest request, @QueryParam("test") boolean isTest,
+                                            @QueryParam("top_k") Integer topK) throws Exception {
+        if (topK != null && topK < 0) {
+            return RestApplication.returnErrorMessage(request, "top_k must be positive");
         }
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Launch scoring function");
-        attackGraph.loadMetricsFromTopology(informationSystem);
-        List<AttackPath> attackPaths = AttackPathManagement.scoreAttackPaths(attackGraph, attackGraph.getNumberOfVertices());
+        InitializationJob job = new InitializationJob(isTest, MonitoringRegistry.getInstance().getDatabase(),
+                topK == null ? AttackPathManagement.getDefaultTopK() : topK);
+        try {
+            JobManager.getInstance().submit(job);
+        } catch (RejectedExecutionException e) {
+            return RestApplication.returnErrorMessage(request, "Too many jobs are waiting, retry later");
+        }
+        return RestApplication.returnJsonObject(request, job.toJsonObject());
+    }
 
-        //Delete attack paths that have less than 3 hosts (attacker that pown its own host).
-        List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
-        for (AttackPath attackPath : attackPaths) {
-            if (attackPath.vertices.size() > 3) {
-                attackPathToKeep.add(attackPath);
-            }
+    /**
+     * OPTIONS call necessary for the Access-Control-Allow-Origin of the POST
+     *
+     * @return the HTTP response
+     */
+    @OPTIONS
+    @Path("/jobs/initialize")
+    public Response submitInitializationJobOptions(@Context HttpServletRequest request) {
+        return RestApplication.returnJsonObject(request, new JSONObject());
+    }
+
+    /**
+     * Get the list of the jobs
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     */
+    @GET
+    @Path("jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobs(@Context HttpServletRequest request) {
+        JSONArray jobs = new JSONArray();
+        for (InitializationJob job : JobManager.getInstance().getJobs()) {
+            jobs.put(job.toJsonObject());
         }
-        attackPaths = attackPathToKeep;
+        return RestApplication.returnJsonObject(request, new JSONObject().put("jobs", jobs));
+    }
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, attackPaths.size() + " attack paths scored");
+    /**
+     * Get the status of a job and the progress of its stages
+     *
+     * @param request the HTTP request
+     * @param id the id of the job
+     * @return the HTTP response
+     */
+    @GET
+    @Path("jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@Context HttpServletRequest request, @PathParam("id") String id) {
+        InitializationJob job = JobManager.getInstance().getJob(id);
+        if (job == null) {
+            return RestApplication.returnErrorMessage(request, "The job " + id + " does not exist");
+        }
+        return RestApplication.returnJsonObject(request, job.toJsonObject());
+    }
+
+    /**
+     * Cancel a job, killing its running processes
+     *
+     * @param request the HTTP request
+     * @param id the id of the job
+     * @return the HTTP response
+     */
+    @DELETE
+    @Path("jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelJob(@Context HttpServletRequest request, @PathParam("id") String id) {
+        InitializationJob job = JobManager.getInstance().getJob(id);
+        if (job == null) {
+            return RestApplication.returnErrorMessage(request, "The job " + id + " does not exist");
+        }
+        if (!JobManager.getInstance().cancel(id)) {
+            return RestApplication.returnErrorMessage(request, "The job " + id + " is already finished");
+        }
+        return RestApplication.returnJsonObject(request, job.toJsonObject());
+    }
+
+    /**
+     * OPTIONS call necessary for the Access-Control-Allow-Origin of the DELETE
+     *
+     * @return the HTTP response
+     */
+    @OPTIONS
+    @Path("/jobs/{id}")
+    public Response jobOptions(@Context HttpServletRequest request) {
+        return RestApplication.returnJsonObject(request, new JSONObject());
+    }
+
+    /**
+     * Initializes the main objects for other API calls from the snapshot saved by the last
+     * initialization and from the already generated topology, without running MulVAL and the scoring function
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     * @throws Exception
+     */
+    @GET
+    @Path("initializeFromSnapshot")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response initialiseFromSnapshot(@Context HttpServletRequest request) throws Exception {
+        String snapshotFilePath = ProjectProperties.getInstance().getProperty("snapshot-file");
+        if (snapshotFilePath == null || !new File(snapshotFilePath).exists()) {
+            return RestApplication.returnErrorMessage(request, "No snapshot of a previous initialization is available");
+        }
+        //Load the vulnerability and remediation database
+        Database database = MonitoringRegistry.getInstance().getDatabase();
+
+        String topologyFilePath = ProjectProperties.getInstance().getProperty("output-topology");
+        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Loading topology " + topologyFilePath);
+        InformationSystem informationSystem = MulVALConnection.loadTopologyXMLFile(topologyFilePath, database);
+
+        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Loading snapshot " + snapshotFilePath);
+        AttackGraphSnapshot snapshot = AttackGraphSnapshot.loadFromFile(snapshotFilePath);
 
         Monitoring monitoring = new Monitoring();
-        monitoring.setAttackPathList(attackPaths);
+        monitoring.setAttackPathList(snapshot.attackPaths);
         monitoring.setInformationSystem(informationSystem);
-        monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
-        request.getSession(true).setAttribute("database", database);
-        request.getSession(true).setAttribute("monitoring", monitoring);
+        monitoring.setAttackGraph(snapshot.attackGraph);
+        Monitoring published = MonitoringRegistry.getInstance().publish(monitoring);
+        if (published == null) {
+            return RestApplication.returnErrorMessage(request, "The attack graph has been modified by another request while the snapshot was loaded, retry");
+        }
+        request.getSession(true).setAttribute("monitoring-version", published.getVersion());
 
         return RestApplication.returnJsonObject(
-                request, new JSONObject().put("status", "AttackGraph/AttackPath Genereted Successfull"));
+                request, new JSONObject().put("status", "AttackGraph/AttackPath Loaded from snapshot"));
     }
 
     /**
-     * Generates the attack graph and initializes the main objects for other API
-     * calls (database, attack graph, attack paths,...)
+     * Generates the MulVAL inputs again and updates the attack graph and the attack paths initialized before,
+     * computing again only the attack paths that depend on the facts which changed since the last generation
      *
      * @param request the HTTP request
      * @return the HTTP response
      * @throws Exception
      */
     @GET
-    @Path("initialize")
+    @Path("update")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response initialise(@Context HttpServletRequest request) throws Exception {
-        String databasePath = ProjectProperties.getInstance().getProperty("vulnerability-database");
+    public Response update(@Context HttpServletRequest request) throws Exception {
+        String mulvalInputFilePath = ProjectProperties.getInstance().getProperty("MulVAL-input");
+        //the updates and the initialization jobs use the same MulVAL input file and output folder
+        MulVALConnection.getMulVALLock().lock();
+        try {
+            Monitoring monitoring = getMonitoring(request);
+            if (monitoring == null || !new File(mulvalInputFilePath).exists()) {
+                return RestApplication.returnErrorMessage(request, "The attack graph must be initialized before being updated");
+            }
+            Database database = MonitoringRegistry.getInstance().getDatabase();
+            Set<String> previousFacts = AttackGraphUpdate.loadMulVALFacts(mulvalInputFilePath);
+
+            //the python helper writes the new facts in the MulVAL input file: the previous file is kept to be restored
+            //if the update is not published
+            String previousFilePath = AttackGraphUpdate.createUpdatedMulVALInputFile(mulvalInputFilePath);
+            Files.copy(Paths.get(mulvalInputFilePath), Paths.get(previousFilePath), StandardCopyOption.REPLACE_EXISTING);
+            Monitoring published = null;
+            try {
+                String topologyFilePath = ProjectProperties.getInstance().getProperty("output-topology");
+                Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Generating topology and mulval inputs " + topologyFilePath);
+                if (!MulVALConnection.prepareMulVALInputs(false)) {
+                    return RestApplication.returnErrorMessage(request, "The MulVAL inputs can not be generated");
+                }
+                InformationSystem informationSystem = MulVALConnection.loadTopologyXMLFile(topologyFilePath, database);
+
+                AttackGraphDelta delta = AttackGraphDelta.between(previousFacts, AttackGraphUpdate.loadMulVALFacts(mulvalInputFilePath));
+                Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, delta.removedFacts.size() + " facts removed and " + delta.addedFacts.size() + " facts added");
+                Monitoring updatedMonitoring = new Monitoring();
+                JSONObject result = AttackGraphUpdate.update(monitoring, updatedMonitoring, delta, informationSystem, mulvalInputFilePath);
+                published = publishUpdate(monitoring, updatedMonitoring);
+                return getUpdateResponse(request, published, result);
+            } finally {
+                if (published == null) {
+                    AttackGraphUpdate.replaceMulVALInputFile(previousFilePath, mulvalInputFilePath);
+                } else {
+                    Files.deleteIfExists(Paths.get(previousFilePath));
+                }
+            }
+        } finally {
+            MulVALConnection.getMulVALLock().unlock();
+        }
+    }
 
-        //Load the vulnerability and remediation database
-        Database database = new Database(databasePath);
+    /**
+     * Updates the attack graph and the attack paths initialized before with a change of the MulVAL facts.
+     * The body is a JSON object {"removed": [facts], "added": [facts]}, for example
+     * {"removed": ["vulExists('web-server','CVE-2014-0160',openssl,remoteExploit,privEscalation)"]}.
+     * The MulVAL input file is updated too, once the update is published.
+     *
+     * @param request the HTTP request
+     * @param jsonString the change of the facts
+     * @return the HTTP response
+     * @throws Exception
+     */
+    @POST
+    @Path("update/facts")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response updateFacts(@Context HttpServletRequest request, String jsonString) throws Exception {
+        JSONObject json = new JSONObject(jsonString);
+        AttackGraphDelta delta = new AttackGraphDelta();
+        JSONArray removedFacts = json.optJSONArray("removed");
+        for (int i = 0; removedFacts != null && i < removedFacts.length(); i++) {
+            delta.removeFact(removedFacts.getString(i));
+        }
+        JSONArray addedFacts = json.optJSONArray("added");
+        for (int i = 0; addedFacts != null && i < addedFacts.length(); i++) {
+            delta.addFact(addedFacts.getString(i));
+        }
 
-        String topologyFilePath = ProjectProperties.getInstance().getProperty("output-topology");
+        String mulvalInputFilePath = ProjectProperties.getInstance().getProperty("MulVAL-input");
+        //the updates and the initialization jobs use the same MulVAL input file and output folder
+        MulVALConnection.getMulVALLock().lock();
+        try {
+            Monitoring monitoring = getMonitoring(request);
+            if (monitoring == null || !new File(mulvalInputFilePath).exists()) {
+                return RestApplication.returnErrorMessage(request, "The attack graph must be initialized before being updated");
+            }
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Generating topology and mulval inputs " + topologyFilePath);
-        MulVALConnection.prepareMulVALInputs(false);
+            //MulVAL is run on an updated copy of the MulVAL input file, which replaces the file once the update is published
+            String updatedFilePath = AttackGraphUpdate.createUpdatedMulVALInputFile(mulvalInputFilePath);
+            Monitoring published = null;
+            try {
+                AttackGraphUpdate.applyDeltaToMulVALInputFile(mulvalInputFilePath, updatedFilePath, delta);
+                Monitoring updatedMonitoring = new Monitoring();
+                JSONObject result = AttackGraphUpdate.update(monitoring, updatedMonitoring, delta, monitoring.getInformationSystem(), updatedFilePath);
+                published = publishUpdate(monitoring, updatedMonitoring);
+                if (published != null) {
+                    AttackGraphUpdate.replaceMulVALInputFile(updatedFilePath, mulvalInputFilePath);
+                }
+                return getUpdateResponse(request, published, result);
+            } finally {
+                if (published == null) {
+                    Files.deleteIfExists(Paths.get(updatedFilePath));
+                }
+            }
+        } finally {
+            MulVALConnection.getMulVALLock().unlock();
+        }
+    }
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Loading topology " + topologyFilePath);
-        InformationSystem informationSystem = MulVALConnection.loadTopologyXMLFile(topologyFilePath, database);
+    /**
+     * OPTIONS call necessary for the Access-Control-Allow-Origin of the POST
+     *
+     * @return the HTTP response
+     */
+    @OPTIONS
+    @Path("/update/facts")
+    public Response updateFactsOptions(@Context HttpServletRequest request) {
+        return RestApplication.returnJsonObject(request, new JSONObject());
+    }
 
-        AttackGraph attackGraph = MulVALConnection.generateAttackGraphWithMulValUsingAlreadyGeneratedMulVALInputFile();
-        if (attackGraph == null) {
-            return RestApplication.returnErrorMessage(request, "the attack graph is empty");
+    /**
+     * Publish the result of an update, if no other version of the monitoring object has been published since
+     * the version which has been updated
+     *
+     * @param monitoring the updated version of the monitoring object
+     * @param updatedMonitoring the result of the update
+     * @return the published monitoring object, null if another version has been published during the update
+     */
+    private static Monitoring publishUpdate(Monitoring monitoring, Monitoring updatedMonitoring) {
+        Monitoring published = MonitoringRegistry.getInstance().publish(updatedMonitoring, monitoring.getVersion());
+        if (published != null) {
+            AttackPathManagement.saveSnapshot(published);
         }
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, "Launch scoring function");
-        attackGraph.loadMetricsFromTopology(informationSystem);
-        List<AttackPath> attackPaths = AttackPathManagement.scoreAttackPaths(attackGraph, attackGraph.getNumberOfVertices());
+        return published;
+    }
 
-        //Delete attack paths that have less than 3 hosts (attacker that pown its own host).
-        List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
-        for (AttackPath attackPath : attackPaths) {
-            if (attackPath.vertices.size() > 3) {
-                attackPathToKeep.add(attackPath);
-            }
+    /**
+     * @param request the HTTP request
+     * @param published the published result of the update, null if it has not been published
+     * @param result the summary of the update
+     * @return the HTTP response
+     */
+    private static Response getUpdateResponse(HttpServletRequest request, Monitoring published, JSONObject result) {
+        if (published == null) {
+            return RestApplication.returnErrorMessage(request, "The attack graph has been modified by another request during the update, retry");
         }
-        attackPaths = attackPathToKeep;
+        request.getSession(true).setAttribute("monitoring-version", published.getVersion());
 
-        Logger.getLogger(RestJsonAPI.class.getName()).log(Level.INFO, attackPaths.size() + " attack paths scored");
+        return RestApplication.returnJsonObject(request, result.put("version", published.getVersion()).put("status", "AttackGraph/AttackPath Updated"));
+    }
 
-        Monitoring monitoring = new Monitoring();
-        monitoring.setAttackPathList(attackPaths);
-        monitoring.setInformationSystem(informationSystem);
-        monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
-        request.getSession(true).setAttribute("database", database);
-        request.getSession(true).setAttribute("monitoring", monitoring);
+    /**
+     * Get the current version of the monitoring object, shared by all the sessions, and the version last read
+     * by the session, to know if the attack graph and the attack paths changed since the last read
+     *
+     * @param request the HTTP Request
+     * @return the HTTP Response
+     */
+    @GET
+    @Path("monitoring/version")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMonitoringVersion(@Context HttpServletRequest request) {
+        long version = MonitoringRegistry.getInstance().getVersion();
+        Object sessionVersion = request.getSession(true).getAttribute("monitoring-version");
+        long readVersion = sessionVersion == null ? 0 : (Long) sessionVersion;
+        return RestApplication.returnJsonObject(request, new JSONObject()
+                .put("version", version)
+                .put("session_version", readVersion)
+                .put("changed", version != readVersion));
+    }
 
-        return RestApplication.returnJsonObject(
-                request, new JSONObject().put("status", "AttackGraph/AttackPath Genereted Successfull"));
+    /**
+     * Get the current version of the monitoring object, shared by all the sessions, and keep its number in the
+     * session of the request
+     *
+     * @param request the HTTP request
+     * @return the current monitoring object, null if the attack graph has not been initialized
+     */
+    private static Monitoring getMonitoring(HttpServletRequest request) {
+        Monitoring monitoring = MonitoringRegistry.getInstance().getCurrent();
+        if (monitoring != null) {
+            //the session attribute is only written when the version changes (a write may be replicated by the container)
+            HttpSession session = request.getSession(true);
+            if (!Long.valueOf(monitoring.getVersion()).equals(session.getAttribute("monitoring-version"))) {
+                session.setAttribute("monitoring-version", monitoring.getVersion());
+            }
+        }
+        return monitoring;
     }
 
     /**
@@ -210,12 +528,18 @@ public class RestJsonAPI {
     @Path("/topology")
     @Produces(MediaType.APPLICATION_XML)
     public Response getTopology(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return Response.ok("Somethings Wrong check Server logs pls").build();
         }
-        return Response.ok(new XMLOutputter(Format.getPrettyFormat()).outputString(monitoring.getInformationSystem().toDomXMLElement())).build();
+        final Element topologyXML = monitoring.getInformationSystem().toDomXMLElement();
+        return Response.ok(new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                new XMLOutputter(Format.getPrettyFormat()).output(topologyXML, outputStream);
+            }
+        }).build();
     }
 
     /**
@@ -228,34 +552,98 @@ public class RestJsonAPI {
     @Path("host/list")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getHostList(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
         }
-        return RestApplication.returnJsonObject(request, monitoring.getInformationSystem().getHostsListJson());
+        final InformationSystem informationSystem = monitoring.getInformationSystem();
+        return RestApplication.returnStreamingOutput(request, new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                JsonStreamWriter writer = new JsonStreamWriter(outputStream);
+                writer.writeHostsList(informationSystem);
+                writer.flush();
+            }
+        }, MediaType.APPLICATION_JSON);
     }
 
     /**
-     * Get the attack paths list
+     * Get the attack paths list. Without parameter, all the attack paths are returned. With one of the
+     * parameters, a page of the attack paths matching the filters is returned, sorted by score, with the
+     * total number of matching attack paths and the offset of the next page. The version of the attack paths
+     * can be given when reading the next pages, to check that they did not change since the first page.
      *
      * @param request the HTTP Request
+     * @param offset the position of the first attack path of the page in the matching attack paths (0 by default)
+     * @param limit the maximum number of attack paths of the page (attack-path-page-size by default)
+     * @param minScore the minimum score of the attack paths
+     * @param targetHost the name or IP address of the host of the goal of the attack paths
+     * @param sourceHost the name or IP address of the host of the attacker
+     * @param vulnerability the CVE of a vulnerability exploited by the attack paths
+     * @param order "desc" (by default) for the highest scores first, "asc" for the lowest scores first
+     * @param version the version of the attack paths of the previous pages
      * @return the HTTP Response
      */
     @GET
     @Path("attack_path/list")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getList(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+    public Response getList(@Context HttpServletRequest request, @QueryParam("offset") Integer offset,
+                            @QueryParam("limit") Integer limit, @QueryParam("min_score") Double minScore,
+                            @QueryParam("target") String targetHost, @QueryParam("source") String sourceHost,
+                            @QueryParam("cve") String vulnerability, @QueryParam("order") String order,
+                            @QueryParam("version") Long version) {
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
         }
 
-        Element attackPathsXML = AttackPathManagement.getAttackPathsXML(monitoring);
-        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
-        return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(attackPathsXML)));
+        final List<AttackPath> attackPaths = monitoring.getAttackPathList();
+        if (offset == null && limit == null && minScore == null && targetHost == null && sourceHost == null
+                && vulnerability == null && order == null && version == null) {
+            return RestApplication.returnStreamingOutput(request, new StreamingOutput() {
+                @Override
+                public void write(OutputStream outputStream) throws IOException {
+                    JsonStreamWriter writer = new JsonStreamWriter(outputStream);
+                    writer.writeAttackPaths(attackPaths);
+                    writer.flush();
+                }
+            }, MediaType.APPLICATION_JSON);
+        }
 
+        if (version != null && version != monitoring.getVersion()) {
+            return RestApplication.returnErrorMessage(request, "The attack paths changed since the version " + version
+                    + ", list them again from the first page");
+        }
+        final int pageOffset = offset == null ? 0 : offset;
+        int maxPageSize = ProjectProperties.getInstance().getIntegerProperty("attack-path-max-page-size", 1000);
+        final int pageLimit = limit == null ? ProjectProperties.getInstance().getIntegerProperty("attack-path-page-size", 50) : limit;
+        if (pageOffset < 0 || pageLimit <= 0 || pageLimit > maxPageSize) {
+            return RestApplication.returnErrorMessage(request, "The offset must be positive and the limit between 1 and " + maxPageSize);
+        }
+        if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            return RestApplication.returnErrorMessage(request, "The order must be asc or desc");
+        }
+        boolean ascending = order != null && order.equalsIgnoreCase("asc");
+
+        AttackPathIndex index = monitoring.getAttackPathIndex();
+        AttackPathIndex.Selection selection = index.select(minScore, targetHost, sourceHost, vulnerability);
+        final int total = selection.size();
+        int from = Math.min(pageOffset, total);
+        final int[] ids = new int[Math.min(pageLimit, total - from)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = index.getId(selection.getRank(ascending ? total - 1 - from - i : from + i));
+        }
+        final long pageVersion = monitoring.getVersion();
+        return RestApplication.returnStreamingOutput(request, new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                JsonStreamWriter writer = new JsonStreamWriter(outputStream);
+                writer.writeAttackPathsPage(attackPaths, ids, total, pageOffset, pageLimit, pageVersion);
+                writer.flush();
+            }
+        }, MediaType.APPLICATION_JSON);
     }
 
     /**
@@ -268,7 +656,7 @@ public class RestJsonAPI {
     @Path("attack_path/number")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getNumber(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
@@ -288,7 +676,7 @@ public class RestJsonAPI {
     @Path("attack_path/{id}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAttackPath(@Context HttpServletRequest request, @PathParam("id") int id) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
@@ -296,16 +684,21 @@ public class RestJsonAPI {
 
         int numberAttackPaths = monitoring.getAttackPathList().size();
 
-        if (id >= numberAttackPaths) {
+        if (id < 0 || id >= numberAttackPaths) {
             return RestApplication.returnErrorMessage(request, "The attack path " + id + " does not exist. There are only"
                     + numberAttackPaths + " attack paths (0 to "
                     + (numberAttackPaths - 1) + ")");
         }
 
-        Element attackPathXML = AttackPathManagement.getAttackPathXML(monitoring, id);
-        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
-
-        return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(attackPathXML)));
+        final AttackPath attackPath = monitoring.getAttackPathList().get(id);
+        return RestApplication.returnStreamingOutput(request, new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                JsonStreamWriter writer = new JsonStreamWriter(outputStream);
+                writer.writeAttackPath(attackPath);
+                writer.flush();
+            }
+        }, MediaType.APPLICATION_JSON);
     }
 
     /**
@@ -319,7 +712,7 @@ public class RestJsonAPI {
     @Path("attack_path/{id}/topological")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getTopologicalAttackPath(@Context HttpServletRequest request, @PathParam("id") int id) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
@@ -327,7 +720,7 @@ public class RestJsonAPI {
 
         int numberAttackPaths = monitoring.getAttackPathList().size();
 
-        if (id >= numberAttackPaths) {
+        if (id < 0 || id >= numberAttackPaths) {
             return RestApplication.returnErrorMessage(request, "The attack path " + id + " does not exist. There are only"
                     + numberAttackPaths + " attack paths (0 to "
                     + (numberAttackPaths - 1) + ")");
@@ -346,15 +739,21 @@ public class RestJsonAPI {
     @Path("attack_graph")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAttackGraph(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
         }
 
-        Element attackGraphXML = monitoring.getAttackGraph().toDomElement();
-        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
-        return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(attackGraphXML)));
+        final AttackGraph attackGraph = monitoring.getAttackGraph();
+        return RestApplication.returnStreamingOutput(request, new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                JsonStreamWriter writer = new JsonStreamWriter(outputStream);
+                writer.writeAttackGraph(attackGraph);
+                writer.flush();
+            }
+        }, MediaType.APPLICATION_JSON);
     }
 
     /**
@@ -367,7 +766,7 @@ public class RestJsonAPI {
     @Path("attack_graph/score")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAttackGraphScore(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
@@ -386,7 +785,7 @@ public class RestJsonAPI {
     @Path("attack_graph/topological")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getTopologicalAttackGraph(@Context HttpServletRequest request) {
-        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+        Monitoring monitoring = getMonitoring(request);
 
         if (monitoring == null) {
             return RestApplication.returnErrorMessage(request, "Somethings Wrong check Server logs pls");
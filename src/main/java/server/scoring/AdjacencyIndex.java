@@ -0,0 +1,206 @@
+package server.scoring;
+
+import java.util.Arrays;
+
+/**
+ * Compressed-sparse-row adjacency index of a scoring graph.
+ * The vertices are numbered 0..N-1 following their position in the vertex array of the graph.
+ * When the vertex IDs are dense (0..N-1 in the attack graph, see {@link ScoringAttackPath#ScoreCalculator}),
+ * the position of a vertex is found in an array indexed by ID. When they are sparse (the attack paths, whose
+ * vertices keep the IDs of the whole attack graph), it is found by binary search in the sorted IDs, so that the
+ * size of the index does not depend on the largest ID.
+ * For each vertex, the "in" rows hold the destinations of the arcs whose source is the vertex
+ * (the predecessors of the vertex, see {@link Graph#getPredecessors(Arc[], int)}) and the "out" rows
+ * hold the sources of the arcs whose destination is the vertex.
+ * An endpoint which is not a vertex of the graph is stored as -1.
+ */
+public class AdjacencyIndex {
+
+    /**
+     * The index of each vertex ID, -1 if no vertex has this ID (null if the IDs are sparse)
+     */
+    private final int[] IndexOfID;
+
+    /**
+     * The distinct vertex IDs in ascending order, if the IDs are sparse (null otherwise)
+     */
+    private final int[] SortedIDs;
+
+    /**
+     * The index of the vertex of each ID of SortedIDs, if the IDs are sparse (null otherwise)
+     */
+    private final int[] SortedIndices;
+
+    /**
+     * The offsets of the in rows (length N + 1)
+     */
+    private final int[] InOffsets;
+
+    /**
+     * The vertex indices of the in rows
+     */
+    private final int[] InAdjacency;
+
+    /**
+     * The offsets of the out rows (length N + 1)
+     */
+    private final int[] OutOffsets;
+
+    /**
+     * The vertex indices of the out rows
+     */
+    private final int[] OutAdjacency;
+
+    /**
+     * Build the index of a graph
+     *
+     * @param arcs     the arcs of the graph
+     * @param vertices the vertices of the graph
+     */
+    public AdjacencyIndex(Arc[] arcs, Vertex[] vertices) {
+        int vertexNumber = vertices.length;
+        int maxID = -1;
+        for (Vertex vertex : vertices) {
+            maxID = Math.max(maxID, vertex.getID());
+        }
+        if (maxID < 2 * vertexNumber) {
+            IndexOfID = new int[maxID + 1];
+            Arrays.fill(IndexOfID, -1);
+            for (int i = 0; i < vertexNumber; i++) {
+                //keep the first vertex of a given ID, as Graph.getVertexOnID does
+                int ID = vertices[i].getID();
+                if (ID >= 0 && IndexOfID[ID] < 0) {
+                    IndexOfID[ID] = i;
+                }
+            }
+            SortedIDs = null;
+            SortedIndices = null;
+        } else {
+            IndexOfID = null;
+            //sort the (ID, index) pairs: the first vertex of a given ID comes first
+            long[] pairs = new long[vertexNumber];
+            int pairNumber = 0;
+            for (int i = 0; i < vertexNumber; i++) {
+                int ID = vertices[i].getID();
+                if (ID >= 0) {
+                    pairs[pairNumber++] = ((long) ID << 32) | i;
+                }
+            }
+            Arrays.sort(pairs, 0, pairNumber);
+            int[] sortedIDs = new int[pairNumber];
+            int[] sortedIndices = new int[pairNumber];
+            int IDNumber = 0;
+            for (int k = 0; k < pairNumber; k++) {
+                int ID = (int) (pairs[k] >>> 32);
+                if (IDNumber == 0 || sortedIDs[IDNumber - 1] != ID) {
+                    sortedIDs[IDNumber] = ID;
+                    sortedIndices[IDNumber] = (int) pairs[k];
+                    IDNumber++;
+                }
+            }
+            SortedIDs = Arrays.copyOf(sortedIDs, IDNumber);
+            SortedIndices = Arrays.copyOf(sortedIndices, IDNumber);
+        }
+
+        int[] sources = new int[arcs.length];
+        int[] destinations = new int[arcs.length];
+        InOffsets = new int[vertexNumber + 1];
+        OutOffsets = new int[vertexNumber + 1];
+        for (int k = 0; k < arcs.length; k++) {
+            sources[k] = indexOf(arcs[k].getSource());
+            destinations[k] = indexOf(arcs[k].getDestination());
+            if (sources[k] >= 0) {
+                InOffsets[sources[k] + 1]++;
+            }
+            if (destinations[k] >= 0) {
+                OutOffsets[destinations[k] + 1]++;
+            }
+        }
+        for (int i = 0; i < vertexNumber; i++) {
+            InOffsets[i + 1] += InOffsets[i];
+            OutOffsets[i + 1] += OutOffsets[i];
+        }
+
+        InAdjacency = new int[InOffsets[vertexNumber]];
+        OutAdjacency = new int[OutOffsets[vertexNumber]];
+        int[] inCursor = new int[vertexNumber];
+        int[] outCursor = new int[vertexNumber];
+        //arcs are inserted in their original order so that queries keep the order of the linear scans
+        for (int k = 0; k < arcs.length; k++) {
+            if (sources[k] >= 0) {
+                InAdjacency[InOffsets[sources[k]] + inCursor[sources[k]]++] = destinations[k];
+            }
+            if (destinations[k] >= 0) {
+                OutAdjacency[OutOffsets[destinations[k]] + outCursor[destinations[k]]++] = sources[k];
+            }
+        }
+    }
+
+    /**
+     * Get the index of a vertex.
+     *
+     * @param vertexID the vertex iD
+     * @return the index of the vertex, -1 if it is not in the graph
+     */
+    public int indexOf(int vertexID) {
+        if (IndexOfID == null) {
+            int position = Arrays.binarySearch(SortedIDs, vertexID);
+            return position < 0 ? -1 : SortedIndices[position];
+        }
+        if (vertexID < 0 || vertexID >= IndexOfID.length) {
+            return -1;
+        }
+        return IndexOfID[vertexID];
+    }
+
+    /**
+     * Get the number of vertices of the index.
+     *
+     * @return the number of vertices
+     */
+    public int getVertexNumber() {
+        return InOffsets.length - 1;
+    }
+
+    /**
+     * Get ingoing arcs number.
+     *
+     * @param index the vertex index
+     * @return the number of arcs whose source is the vertex
+     */
+    public int getIngoingArcsNumber(int index) {
+        return InOffsets[index + 1] - InOffsets[index];
+    }
+
+    /**
+     * Get outgoing arcs number.
+     *
+     * @param index the vertex index
+     * @return the number of arcs whose destination is the vertex
+     */
+    public int getOutgoingArcsNumber(int index) {
+        return OutOffsets[index + 1] - OutOffsets[index];
+    }
+
+    /**
+     * Get the index of the k-th predecessor of a vertex.
+     *
+     * @param index the vertex index
+     * @param k     the rank of the predecessor, between 0 and the ingoing arcs number
+     * @return the predecessor index, -1 if it is not in the graph
+     */
+    public int getPredecessor(int index, int k) {
+        return InAdjacency[InOffsets[index] + k];
+    }
+
+    /**
+     * Get the index of the k-th successor of a vertex.
+     *
+     * @param index the vertex index
+     * @param k     the rank of the successor, between 0 and the outgoing arcs number
+     * @return the successor index, -1 if it is not in the graph
+     */
+    public int getSuccessor(int index, int k) {
+        return OutAdjacency[OutOffsets[index] + k];
+    }
+}
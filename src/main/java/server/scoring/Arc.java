@@ -6,12 +6,12 @@ public class Arc {
     /**
      * The source id
      */
-    private double Source;
+    private int Source;
 
     /**
      * the destination id
      */
-    private double Destination;
+    private int Destination;
 
     /**
      * Instantiates a new Arc.
@@ -19,7 +19,7 @@ public class Arc {
      * @param source      the source id
      * @param destination the destination id
      */
-    public Arc(double source, double destination) {
+    public Arc(int source, int destination) {
         Source = source;
         Destination = destination;
     }
@@ -29,7 +29,7 @@ public class Arc {
      *
      * @return the source id
      */
-    public double getSource() {
+    public int getSource() {
         return Source;
     }
 
@@ -38,7 +38,7 @@ public class Arc {
      *
      * @param source the source id
      */
-    public void setSource(double source) {
+    public void setSource(int source) {
         Source = source;
     }
 
@@ -47,7 +47,7 @@ public class Arc {
      *
      * @return the destination id
      */
-    public double getDestination() {
+    public int getDestination() {
         return Destination;
     }
 
@@ -56,7 +56,7 @@ public class Arc {
      *
      * @param destination the destination id
      */
-    public void setDestination(double destination) {
+    public void setDestination(int destination) {
         Destination = destination;
     }
 
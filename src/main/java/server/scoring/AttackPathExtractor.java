@@ -0,0 +1,354 @@
+package server.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Attack path extraction engine producing the same attack paths as {@link AttackPaths#exploreAttackPath}.
+ * The sub-path graph of each vertex is computed once and memoized, so that the AND/OR sub-graphs
+ * shared by several targets are explored only once for all the targets.
+ * <p>
+ * The sub-path of a vertex depends on the forbidden vertices met during its exploration. A memoized
+ * sub-path therefore keeps the list of forbidden tests it relied on (vertex and result of the test) and is
+ * reused only when the current forbidden set gives the same result for all these tests.
+ * <p>
+ * An extractor is bound to one graph and is not thread safe.
+ */
+public class AttackPathExtractor {
+
+    /**
+     * The maximum number of memoized sub-paths for one vertex (one per distinct forbidden context)
+     */
+    private static final int MAX_MEMOIZED_SUB_PATHS = 4;
+
+    private static final int TYPE_OTHER = 0;
+    private static final int TYPE_LEAF = 1;
+    private static final int TYPE_OR = 2;
+    private static final int TYPE_AND = 3;
+
+    /**
+     * The attack graph
+     */
+    private final Graph AttackGraph;
+
+    /**
+     * The adjacency index of the attack graph
+     */
+    private final AdjacencyIndex Index;
+
+    /**
+     * The copies of the vertices used in the sub-paths, in the order of the index
+     */
+    private final Vertex[] Vertices;
+
+    /**
+     * The type of each vertex
+     */
+    private final int[] Types;
+
+    /**
+     * True if the vertex is currently forbidden
+     */
+    private final boolean[] Forbidden;
+
+    /**
+     * The recursion depth at which a forbidden vertex has been added
+     */
+    private final int[] ForbiddenDepth;
+
+    /**
+     * Marks used to deduplicate the dependencies of a sub-path
+     */
+    private final int[] Marks;
+
+    /**
+     * The current mark
+     */
+    private int Mark = 0;
+
+    /**
+     * The memoized sub-paths of each vertex
+     */
+    private final List<SubPath>[] Memo;
+
+    /**
+     * Create an extractor for an attack graph
+     *
+     * @param attackGraph the attack graph
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AttackPathExtractor(Graph attackGraph) {
+        AttackGraph = attackGraph;
+        Index = attackGraph.getIndex();
+        Vertex[] graphVertices = attackGraph.getVertices();
+        Vertices = new Vertex[graphVertices.length];
+        Types = new int[graphVertices.length];
+        for (int i = 0; i < graphVertices.length; i++) {
+            //the sub-paths are built on copies of the vertices, as exploreAttackPath does
+            Vertices[i] = new Vertex(graphVertices[i]);
+            Types[i] = typeOf(graphVertices[i]);
+        }
+        Forbidden = new boolean[graphVertices.length];
+        ForbiddenDepth = new int[graphVertices.length];
+        Marks = new int[graphVertices.length];
+        Memo = new List[graphVertices.length];
+    }
+
+    /**
+     * Explore the attack paths of several targets
+     *
+     * @param Targets the targets nodes in the attack graph
+     * @return the list of attack paths (a null element when a target has no attack path)
+     */
+    public Graph[] extract(Vertex[] Targets) {
+        Graph[] GraphTable = new Graph[Targets.length];
+        for (int i = 0; i < Targets.length; i++) {
+            GraphTable[i] = extract(Targets[i]);
+        }
+        return GraphTable;
+    }
+
+    /**
+     * Explore the attack path ending at one target
+     *
+     * @param target the target node in the attack graph
+     * @return the attack path, null if there is none
+     */
+    public Graph extract(Vertex target) {
+        int v = Index.indexOf(target.getID());
+        if (v < 0) {
+            return null;
+        }
+        boolean forbidTarget = typeOf(target) == TYPE_OR && !Forbidden[v];
+        if (forbidTarget) {
+            Forbidden[v] = true;
+            ForbiddenDepth[v] = -1;
+        }
+        try {
+            //the target keeps its own vertex object (and its impact metrics) in the attack path
+            return explore(v, target, 0, false).Path;
+        } finally {
+            if (forbidTarget) {
+                Forbidden[v] = false;
+            }
+        }
+    }
+
+    /**
+     * Explore the sub-path of a vertex with the current forbidden set
+     *
+     * @param v       the vertex index
+     * @param V       the vertex object to use in the sub-path
+     * @param depth   the recursion depth
+     * @param memoize true if the sub-path can be read from and stored in the memo
+     * @return the sub-path and its dependencies on the forbidden set
+     */
+    private SubPath explore(int v, Vertex V, int depth, boolean memoize) {
+        if (memoize && Memo[v] != null) {
+            for (SubPath subPath : Memo[v]) {
+                if (matchesForbiddenSet(subPath.Dependencies)) {
+                    return subPath;
+                }
+            }
+        }
+
+        Dependencies dependencies = new Dependencies();
+        Graph result = null;
+        int predecessorNumber = Index.getIngoingArcsNumber(v);
+        if (Types[v] == TYPE_AND && predecessorNumber > 0) {
+            result = exploreAnd(v, V, depth, dependencies);
+        } else if (Types[v] == TYPE_OR && predecessorNumber > 0) {
+            result = exploreOr(v, V, depth, dependencies);
+        }
+
+        SubPath subPath = new SubPath(result, dependencies.toArray());
+        if (memoize) {
+            if (Memo[v] == null) {
+                Memo[v] = new ArrayList<SubPath>(1);
+            }
+            if (Memo[v].size() < MAX_MEMOIZED_SUB_PATHS) {
+                Memo[v].add(subPath);
+            }
+        }
+        return subPath;
+    }
+
+    /**
+     * Explore the sub-path of an AND vertex: all its predecessors must be reachable
+     */
+    private Graph exploreAnd(int v, Vertex V, int depth, Dependencies dependencies) {
+        int predecessorNumber = Index.getIngoingArcsNumber(v);
+        //One parent of the AND is not a LEAF or an OR -> no path, whatever the forbidden set
+        for (int i = 0; i < predecessorNumber; i++) {
+            int d = Index.getPredecessor(v, i);
+            if (d < 0 || (Types[d] != TYPE_LEAF && Types[d] != TYPE_OR)) {
+                return null;
+            }
+        }
+
+        //the sub-paths of the predecessors are accumulated in order, as the merge of the buffers of exploreAttackPath
+        PathBuilder Result = new PathBuilder();
+        int[] added = new int[predecessorNumber];
+        int addedNumber = 0;
+        try {
+            for (int i = 0; i < predecessorNumber; i++) {
+                int d = Index.getPredecessor(v, i);
+                Vertex D = Vertices[d];
+                if (Types[d] == TYPE_LEAF) {
+                    Result.addAtomicGraph(V, D);
+                } else if (Forbidden[d]) {
+                    if (ForbiddenDepth[d] < depth) {
+                        dependencies.add(d, true);
+                    }
+                    return null;
+                } else {
+                    dependencies.add(d, false);
+                    Forbidden[d] = true;
+                    ForbiddenDepth[d] = depth;
+                    added[addedNumber++] = d;
+
+                    SubPath parentRes = explore(d, D, depth + 1, true);
+                    dependencies.addFromChild(parentRes.Dependencies, depth);
+                    //One parent of the AND is missing -> Delete the whole branch
+                    if (parentRes.Path == null) {
+                        return null;
+                    }
+                    Result.addAtomicGraph(V, D);
+                    Result.addGraph(parentRes.Path);
+                }
+            }
+        } finally {
+            for (int k = 0; k < addedNumber; k++) {
+                Forbidden[added[k]] = false;
+            }
+        }
+        return Result.toGraph();
+    }
+
+    /**
+     * Explore the sub-path of an OR vertex: at least one of its predecessors must be reachable
+     */
+    private Graph exploreOr(int v, Vertex V, int depth, Dependencies dependencies) {
+        int predecessorNumber = Index.getIngoingArcsNumber(v);
+        PathBuilder Buffer = new PathBuilder();
+        boolean atLeastOnePath = false;
+        for (int i = 0; i < predecessorNumber; i++) {
+            int d = Index.getPredecessor(v, i);
+            if (d < 0) {
+                continue;
+            }
+            Vertex D = Vertices[d];
+            if (Types[d] == TYPE_LEAF) {
+                Buffer.addAtomicGraph(V, D);
+                atLeastOnePath = true;
+            } else if (Types[d] == TYPE_AND) {
+                SubPath TempBuffer = explore(d, D, depth + 1, true);
+                dependencies.addFromChild(TempBuffer.Dependencies, depth);
+                if (TempBuffer.Path != null) {
+                    Buffer.addAtomicGraph(V, D);
+                    Buffer.addGraph(TempBuffer.Path);
+                    atLeastOnePath = true;
+                }
+            }
+        }
+        if (!atLeastOnePath) {
+            return null;
+        }
+        return Buffer.toGraph();
+    }
+
+    /**
+     * Check that the current forbidden set gives the same result for the tests a sub-path relied on
+     *
+     * @param dependencies the encoded dependencies of the sub-path
+     * @return true if the sub-path is valid for the current forbidden set
+     */
+    private boolean matchesForbiddenSet(int[] dependencies) {
+        for (int dependency : dependencies) {
+            if (Forbidden[dependency >>> 1] != ((dependency & 1) == 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the type of a vertex
+     *
+     * @param vertex the vertex
+     * @return the type code of the vertex
+     */
+    private static int typeOf(Vertex vertex) {
+        switch (vertex.getType()) {
+            case "LEAF":
+                return TYPE_LEAF;
+            case "OR":
+                return TYPE_OR;
+            case "AND":
+                return TYPE_AND;
+            default:
+                return TYPE_OTHER;
+        }
+    }
+
+    /**
+     * A memoized sub-path with the forbidden tests it relied on.
+     * Each dependency is encoded as (vertex index &lt;&lt; 1) | (1 if the vertex was forbidden else 0).
+     */
+    private static class SubPath {
+        final Graph Path;
+        final int[] Dependencies;
+
+        SubPath(Graph path, int[] dependencies) {
+            Path = path;
+            Dependencies = dependencies;
+        }
+    }
+
+    /**
+     * The dependencies collected while exploring a sub-path
+     */
+    private class Dependencies {
+        private int[] Values = new int[4];
+        private int Size = 0;
+
+        /**
+         * Add a forbidden test made by the current vertex
+         */
+        void add(int vertex, boolean forbidden) {
+            if (Size == Values.length) {
+                Values = Arrays.copyOf(Values, Size * 2);
+            }
+            Values[Size++] = (vertex << 1) | (forbidden ? 1 : 0);
+        }
+
+        /**
+         * Add the dependencies of a predecessor sub-path explored at depth + 1.
+         * The vertices forbidden by the current vertex itself are not dependencies of the current vertex.
+         */
+        void addFromChild(int[] childDependencies, int depth) {
+            for (int dependency : childDependencies) {
+                if ((dependency & 1) == 0 || ForbiddenDepth[dependency >>> 1] < depth) {
+                    add(dependency >>> 1, (dependency & 1) == 1);
+                }
+            }
+        }
+
+        /**
+         * @return the deduplicated dependencies
+         */
+        int[] toArray() {
+            Mark++;
+            int size = 0;
+            for (int i = 0; i < Size; i++) {
+                int vertex = Values[i] >>> 1;
+                if (Marks[vertex] != Mark) {
+                    Marks[vertex] = Mark;
+                    Values[size++] = Values[i];
+                }
+            }
+            return Arrays.copyOf(Values, size);
+        }
+    }
+}
@@ -1,7 +1,21 @@
 package server.scoring;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class AttackPaths {
 
+    /**
+     * The number of target ranges created per worker thread in parallel mode
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
     /**
      * Test if an element is in the set
      *
@@ -9,9 +23,9 @@ public class AttackPaths {
      * @param Set     the set
      * @return 0 if the element is in the set, else 1
      */
-    public static int existsInSet(double Element, double[] Set) {
+    public static int existsInSet(int Element, int[] Set) {
         //0 exists, 1 does not exist
-        for (double aSet : Set) {
+        for (int aSet : Set) {
             if (Element == aSet) {
                 return 0;
             }
@@ -46,16 +60,161 @@ public class AttackPaths {
     public static Graph[] AttackPathCalculator(Vertex[] Targets, Graph AttackGraph) {
 
         if (Targets != null) {
-            Graph[] GraphTable = new Graph[Targets.length];
-            for (int i = 0; i < Targets.length; i++) {
-                GraphTable[i] = exploreAttackPath(Targets[i], null, AttackGraph);
-            }
-            return GraphTable;
+            //the sub-paths shared by several targets are explored only once
+            return new AttackPathExtractor(AttackGraph).extract(Targets);
         } else {
             return null;
         }
     }
 
+    /**
+     * Explore the attack paths of the targets in parallel on a bounded fork-join pool.
+     * The targets are split in contiguous ranges, each range being explored by its own
+     * {@link AttackPathExtractor}. The attack paths are returned in the order of the targets,
+     * as with {@link #AttackPathCalculator(Vertex[], Graph)}.
+     *
+     * @param Targets        the targets nodes in the attack graph
+     * @param AttackGraph    the attack graph
+     * @param parallelism    the number of worker threads (sequential exploration if lower than 2)
+     * @param timeoutSeconds the maximum duration of the exploration in seconds (no limit if lower than 1)
+     * @return the list of attack paths
+     * @throws TimeoutException if the exploration takes more than timeoutSeconds
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException if the exploration of a target failed
+     */
+    public static Graph[] AttackPathCalculator(Vertex[] Targets, Graph AttackGraph, int parallelism, long timeoutSeconds)
+            throws TimeoutException, InterruptedException, ExecutionException {
+        if (Targets == null) {
+            return null;
+        }
+        TopKAttackPaths Collector = new TopKAttackPaths(Targets.length, 0, 0);
+        AttackPathCalculator(Targets, AttackGraph, parallelism, timeoutSeconds, Collector);
+        return Collector.getAttackPaths();
+    }
+
+    /**
+     * Explore the attack paths of the targets, sequentially or in parallel, giving each attack path to a
+     * collector as soon as it is explored: the collector scores it and keeps it or drops it.
+     * The exploration stops between two targets when the calling thread is interrupted (for example when the
+     * initialization job is cancelled): in parallel mode, the workers stop before this method returns.
+     *
+     * @param Targets        the targets nodes in the attack graph
+     * @param AttackGraph    the attack graph
+     * @param parallelism    the number of worker threads (sequential exploration if lower than 2)
+     * @param timeoutSeconds the maximum duration of the exploration in seconds (no limit if lower than 1)
+     * @param Collector      the collector of the attack paths, created for Targets.length targets
+     * @throws TimeoutException if the exploration takes more than timeoutSeconds
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws ExecutionException if the exploration of a target failed
+     */
+    public static void AttackPathCalculator(Vertex[] Targets, Graph AttackGraph, int parallelism, long timeoutSeconds,
+                                            TopKAttackPaths Collector)
+            throws TimeoutException, InterruptedException, ExecutionException {
+        long deadline = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : Long.MAX_VALUE;
+        if (parallelism < 2 || Targets.length < 2) {
+            //the sub-paths shared by several targets are explored only once
+            AttackPathExtractor extractor = new AttackPathExtractor(AttackGraph);
+            for (int i = 0; i < Targets.length; i++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("The attack paths exploration has been interrupted");
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException("The attack paths exploration exceeded " + timeoutSeconds + " seconds");
+                }
+                Collector.offer(i, extractor.extract(Targets[i]));
+            }
+            return;
+        }
+
+        //build the shared adjacency index once, before the workers read it
+        AttackGraph.getIndex();
+        int rangeSize = Math.max(1, (Targets.length + parallelism * RANGES_PER_THREAD - 1) / (parallelism * RANGES_PER_THREAD));
+
+        //set when the calling thread stops waiting (timeout, interruption or failure), checked by the workers between targets
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Future<Void> job = pool.submit(new TargetRangeTask(Targets, AttackGraph, Collector, 0, Targets.length, rangeSize, deadline, cancelled));
+            if (timeoutSeconds > 0) {
+                job.get(timeoutSeconds, TimeUnit.SECONDS);
+            } else {
+                job.get();
+            }
+        } catch (TimeoutException e) {
+            throw new TimeoutException("The attack paths exploration exceeded " + timeoutSeconds + " seconds");
+        } finally {
+            cancelled.set(true);
+            pool.shutdownNow();
+            awaitTermination(pool);
+        }
+    }
+
+    /**
+     * Wait for the workers of a pool to finish the exploration of their current target
+     *
+     * @param pool the pool, shut down
+     */
+    private static void awaitTermination(ForkJoinPool pool) {
+        boolean interrupted = false;
+        while (!pool.isTerminated()) {
+            try {
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fork-join task exploring the attack paths of a range of targets
+     */
+    private static class TargetRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Vertex[] Targets;
+        private final Graph AttackGraph;
+        private final TopKAttackPaths Collector;
+        private final int From;
+        private final int To;
+        private final int RangeSize;
+        private final long Deadline;
+        private final AtomicBoolean Cancelled;
+
+        TargetRangeTask(Vertex[] targets, Graph attackGraph, TopKAttackPaths collector, int from, int to, int rangeSize, long deadline,
+                        AtomicBoolean cancelled) {
+            Targets = targets;
+            AttackGraph = attackGraph;
+            Collector = collector;
+            From = from;
+            To = to;
+            RangeSize = rangeSize;
+            Deadline = deadline;
+            Cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (To - From > RangeSize) {
+                int middle = (From + To) >>> 1;
+                invokeAll(new TargetRangeTask(Targets, AttackGraph, Collector, From, middle, RangeSize, Deadline, Cancelled),
+                        new TargetRangeTask(Targets, AttackGraph, Collector, middle, To, RangeSize, Deadline, Cancelled));
+                return;
+            }
+            AttackPathExtractor extractor = new AttackPathExtractor(AttackGraph);
+            for (int i = From; i < To; i++) {
+                if (Cancelled.get() || Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("The attack paths exploration has been cancelled");
+                }
+                if (System.nanoTime() > Deadline) {
+                    throw new CancellationException("The attack paths exploration timed out");
+                }
+                Collector.offer(i, extractor.extract(Targets[i]));
+            }
+        }
+    }
+
     /**
      * Create an atomic graph from two vertices
      *
@@ -82,20 +241,32 @@ public class AttackPaths {
      * @return the created attack path
      */
     public static Graph exploreAttackPath(Vertex V, Vertex[] Forbidden, Graph graph) {
+        PathBuilder Result = explorePath(V, Forbidden, graph);
+        if (Result == null) {
+            return null;
+        }
+        return Result.toGraph();
+    }
+
+    /**
+     * Explore the attack path from node V, accumulating the sub-paths in path builders
+     *
+     * @param V         the starting vertex
+     * @param Forbidden the list of forbidden vertices
+     * @param graph     the attack graph
+     * @return the created attack path, null if there is none
+     */
+    private static PathBuilder explorePath(Vertex V, Vertex[] Forbidden, Graph graph) {
         Vertex[] vertices = new Vertex[graph.getVertices().length];
-        Arc[] arcs = new Arc[graph.getArcs().length];
-        Vertex LEAFVertex = new Vertex(0.0, "", 0.0, "LEAF");
-        Vertex ORVertex = new Vertex(0.0, "", 0.0, "OR");
-        Vertex ANDVertex = new Vertex(0.0, "", 0.0, "AND");
-        Graph Result = null;
+        Vertex LEAFVertex = new Vertex(0, "", 0.0, "LEAF");
+        Vertex ORVertex = new Vertex(0, "", 0.0, "OR");
+        Vertex ANDVertex = new Vertex(0, "", 0.0, "AND");
+        PathBuilder Result = null;
 
         for (int m = 0; m < vertices.length; m++) {
             vertices[m] = new Vertex(graph.getVertices()[m]);
         }
-        for (int m = 0; m < arcs.length; m++) {
-            arcs[m] = new Arc(graph.getArcs()[m].getSource(), graph.getArcs()[m].getDestination());
-        }
-        Vertex[] V_Predecessors = Graph.getPredecessors(arcs, vertices, V.getID());
+        Vertex[] V_Predecessors = getPredecessors(graph.getIndex(), vertices, V.getID());
         if (V.getType().equals(ORVertex.getType()) && Forbidden == null) {
             Vertex ForbiddenVertex = new Vertex(V);
             Forbidden = new Vertex[1];
@@ -103,12 +274,13 @@ public class AttackPaths {
         }
         if (V.getType().equals(ANDVertex.getType())) {
             if (V_Predecessors != null) {
-                Graph[] Buffers = new Graph[V_Predecessors.length];
+                PathBuilder[] Buffers = new PathBuilder[V_Predecessors.length];
                 for (int i = 0; i < V_Predecessors.length; i++) {
                     Vertex D = V_Predecessors[i];
                     if (D != null) {
                         if (D.getType().equals(LEAFVertex.getType())) {
-                            Buffers[i] = createAtomicGraph(V, D);
+                            Buffers[i] = new PathBuilder();
+                            Buffers[i].addAtomicGraph(V, D);
                         } else if (D.getType().equals(ORVertex.getType())) {
                             if (checkForbiddenVertex(D, Forbidden) == 1) {
                                 if (Forbidden == null) {
@@ -120,14 +292,15 @@ public class AttackPaths {
                                     BufferForbidden[BufferForbidden.length - 1] = D;
                                     Forbidden = BufferForbidden;
                                 }
-                                Graph BufferGraph = createAtomicGraph(V, D);
-                                Graph parentRes = exploreAttackPath(D, Forbidden, graph);
+                                PathBuilder parentRes = explorePath(D, Forbidden, graph);
 
                                 //One parent of the AND is missing -> Delete the whole branch
                                 if (parentRes == null) {
                                     return null;
                                 } else {
-                                    Buffers[i] = mergeGraphs(BufferGraph, parentRes);
+                                    Buffers[i] = new PathBuilder();
+                                    Buffers[i].addAtomicGraph(V, D);
+                                    Buffers[i].addPath(parentRes);
                                 }
                             } else {
                                 return null;
@@ -135,30 +308,32 @@ public class AttackPaths {
                         }
                     }
                 }
-                for (Graph Buffer1 : Buffers) {
+                for (PathBuilder Buffer1 : Buffers) {
                     if (Buffer1 == null) {
                         return null;
                     }
                 }
-                for (Graph Buffer : Buffers) {
-                    Result = mergeGraphs(Result, Buffer);
+                Result = Buffers[0];
+                for (int i = 1; i < Buffers.length; i++) {
+                    Result.addPath(Buffers[i]);
                 }
             }
             return Result;
         }
         if (V.getType().equals(ORVertex.getType())) {
             if (V_Predecessors != null) {
-                Graph Buffer = null;
+                PathBuilder Buffer = new PathBuilder();
                 boolean atLeastOnePath = false;
                 for (Vertex D : V_Predecessors) {
                     if (D != null) {
                         if (D.getType().equals(LEAFVertex.getType())) {
-                            Buffer = mergeGraphs(Buffer, createAtomicGraph(V, D));
+                            Buffer.addAtomicGraph(V, D);
                             atLeastOnePath = true;
                         } else if (D.getType().equals(ANDVertex.getType())) {
-                            Graph TempBuffer = exploreAttackPath(D, Forbidden, graph);
+                            PathBuilder TempBuffer = explorePath(D, Forbidden, graph);
                             if (TempBuffer != null) {
-                                Buffer = mergeGraphs(Buffer, mergeGraphs(createAtomicGraph(V, D), TempBuffer));
+                                Buffer.addAtomicGraph(V, D);
+                                Buffer.addPath(TempBuffer);
                                 atLeastOnePath = true;
                             }
                         }
@@ -173,6 +348,29 @@ public class AttackPaths {
         return null;
     }
 
+    /**
+     * Get the predecessors of a vertex from the adjacency index of the graph
+     *
+     * @param index    the adjacency index of the graph
+     * @param vertices the vertices of the graph, in the order of the index
+     * @param vertexID the vertex iD
+     * @return the predecessors, null if the vertex has no predecessor
+     */
+    private static Vertex[] getPredecessors(AdjacencyIndex index, Vertex[] vertices, int vertexID) {
+        int vertexIndex = index.indexOf(vertexID);
+        if (vertexIndex < 0 || index.getIngoingArcsNumber(vertexIndex) == 0) {
+            return null;
+        }
+        Vertex[] result = new Vertex[index.getIngoingArcsNumber(vertexIndex)];
+        for (int k = 0; k < result.length; k++) {
+            int predecessor = index.getPredecessor(vertexIndex, k);
+            if (predecessor >= 0) {
+                result[k] = vertices[predecessor];
+            }
+        }
+        return result;
+    }
+
     /**
      * Merge two graphs in a new graph
      *
@@ -181,39 +379,17 @@ public class AttackPaths {
      * @return the merged graph
      */
     public static Graph mergeGraphs(Graph successor, Graph predecessor) {
-        Graph result;
         if (successor == null) {
             return predecessor;
         }
         if (predecessor == null) {
             return successor;
         }
-        Arc[] ArcsBuffer = new Arc[successor.getArcs().length];
-        Vertex[] VertexBuffer = new Vertex[successor.getVertices().length];
-        System.arraycopy(successor.getArcs(), 0, ArcsBuffer, 0, successor.getArcs().length);
-        for (int k = 0; k < predecessor.getArcs().length; k++) {
-            if (existsInSet(predecessor.getArcs()[k], successor.getArcs()) == 1) {
-                Arc[] TempBuffer = new Arc[ArcsBuffer.length + 1];
-                System.arraycopy(ArcsBuffer, 0, TempBuffer, 0, ArcsBuffer.length);
-                TempBuffer[TempBuffer.length - 1] = predecessor.getArcs()[k];
-                ArcsBuffer = TempBuffer;
-            }
-        }
-        System.arraycopy(successor.getVertices(), 0, VertexBuffer, 0, successor.getVertices().length);
-        double[] VertexIDs = new double[successor.getVertices().length];
-        for (int h = 0; h < successor.getVertices().length; h++) {
-            VertexIDs[h] = successor.getVertices()[h].getID();
-        }
-        for (int k = 0; k < predecessor.getVertices().length; k++) {
-            if (existsInSet(predecessor.getVertices()[k].getID(), VertexIDs) == 1) {
-                Vertex[] TempBuffer = new Vertex[VertexBuffer.length + 1];
-                System.arraycopy(VertexBuffer, 0, TempBuffer, 0, VertexBuffer.length);
-                TempBuffer[TempBuffer.length - 1] = predecessor.getVertices()[k];
-                VertexBuffer = TempBuffer;
-            }
-        }
-        result = new Graph(ArcsBuffer, VertexBuffer);
-        return result;
+        PathBuilder result = new PathBuilder(successor.getArcs().length + predecessor.getArcs().length,
+                successor.getVertices().length + predecessor.getVertices().length);
+        result.addGraph(successor);
+        result.addGraph(predecessor);
+        return result.toGraph();
     }
 
     /**
@@ -223,7 +399,7 @@ public class AttackPaths {
      * @param VertexID the vertex to search
      * @return the Vertex of the set
      */
-    public static Vertex getVertex(Vertex[] vertices, double VertexID) {
+    public static Vertex getVertex(Vertex[] vertices, int VertexID) {
         for (Vertex vertice : vertices) {
             if (vertice.getID() == VertexID) {
                 return new Vertex(vertice);
@@ -13,6 +13,11 @@ public class Graph {
      */
     private Vertex[] Vertices;
 
+    /**
+     * The adjacency index of the graph, built on the first query
+     */
+    private volatile AdjacencyIndex Index;
+
     /**
      * Instantiates a new Graph.
      *
@@ -29,11 +34,11 @@ public class Graph {
      *
      * @param arcs     the arcs
      * @param vertexID the vertex iD
-     * @return the double [ ]
+     * @return the int [ ]
      */
-    public static double[] getPredecessors(Arc[] arcs, double vertexID) {
+    public static int[] getPredecessors(Arc[] arcs, int vertexID) {
         int counter = 0;
-        double[] result = null;
+        int[] result = null;
         //the first for loop is to get the cardinality of the query result
         for (Arc arc : arcs) {
             if (arc.getSource() == vertexID) {
@@ -41,7 +46,7 @@ public class Graph {
             }
         }
         if (counter != 0) {
-            result = new double[counter];
+            result = new int[counter];
             counter = 0;
             for (Arc arc : arcs) {
                 if (arc.getSource() == vertexID) {
@@ -53,6 +58,72 @@ public class Graph {
         return result;
     }
 
+    /**
+     * Get the adjacency index of the graph, build it if necessary.
+     *
+     * @return the adjacency index
+     */
+    public AdjacencyIndex getIndex() {
+        AdjacencyIndex index = Index;
+        if (index == null) {
+            index = new AdjacencyIndex(getArcs(), getVertices());
+            Index = index;
+        }
+        return index;
+    }
+
+    /**
+     * Get predecessors.
+     *
+     * @param vertexID the vertex iD
+     * @return the vertex [ ], null if the vertex has no predecessor
+     */
+    public Vertex[] getPredecessors(int vertexID) {
+        AdjacencyIndex index = getIndex();
+        int vertexIndex = index.indexOf(vertexID);
+        if (vertexIndex < 0 || index.getIngoingArcsNumber(vertexIndex) == 0) {
+            return null;
+        }
+        Vertex[] result = new Vertex[index.getIngoingArcsNumber(vertexIndex)];
+        for (int k = 0; k < result.length; k++) {
+            int predecessor = index.getPredecessor(vertexIndex, k);
+            if (predecessor >= 0) {
+                result[k] = getVertices()[predecessor];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get ingoing arcs number.
+     *
+     * @param vertexID the vertex iD
+     * @return the int
+     */
+    public int getIngoingArcsNumber(int vertexID) {
+        AdjacencyIndex index = getIndex();
+        int vertexIndex = index.indexOf(vertexID);
+        if (vertexIndex < 0) {
+            return 0;
+        }
+        return index.getIngoingArcsNumber(vertexIndex);
+    }
+
+    /**
+     * Get outgoing arcs number.
+     *
+     * @param vertexID the vertex iD
+     * @return the int
+     */
+    public int getOutgoingArcsNumber(int vertexID) {
+        AdjacencyIndex index = getIndex();
+        int vertexIndex = index.indexOf(vertexID);
+        if (vertexIndex < 0) {
+            return 0;
+        }
+        return index.getOutgoingArcsNumber(vertexIndex);
+    }
+
     /**
      * Get vertices on type and fact.
      *
@@ -90,7 +161,7 @@ public class Graph {
      * @param vertexID the vertex iD
      * @return the vertex [ ]
      */
-    public static Vertex[] getPredecessors(Arc[] arcs, Vertex[] vertices, double vertexID) {
+    public static Vertex[] getPredecessors(Arc[] arcs, Vertex[] vertices, int vertexID) {
         int counter = 0;
         Vertex[] result = null;
         //the first for loop is to get the cardinality of the query result
@@ -117,10 +188,10 @@ public class Graph {
      *
      * @param arcs     the arcs
      * @param vertexID the vertex iD
-     * @return the double
+     * @return the int
      */
-    public static double getIngoingArcsNumber(Arc[] arcs, double vertexID) {
-        double counter = 0;
+    public static int getIngoingArcsNumber(Arc[] arcs, int vertexID) {
+        int counter = 0;
         for (Arc arc : arcs) {
             if (arc.getSource() == vertexID) {
                 counter++;
@@ -135,10 +206,10 @@ public class Graph {
      *
      * @param arcs     the arcs
      * @param vertexID the vertex iD
-     * @return the double
+     * @return the int
      */
-    public static double getOutgoingArcsNumber(Arc[] arcs, double vertexID) {
-        double counter = 0;
+    public static int getOutgoingArcsNumber(Arc[] arcs, int vertexID) {
+        int counter = 0;
         for (Arc arc : arcs) {
             if (arc.getDestination() == vertexID) {
                 counter++;
@@ -185,7 +256,7 @@ public class Graph {
      * @param ID       the iD
      * @return the vertex
      */
-    public static Vertex getVertexOnID(Vertex[] vertices, double ID) {
+    public static Vertex getVertexOnID(Vertex[] vertices, int ID) {
         //the first for loop is to get the cardinality of the query result
         for (Vertex vertice : vertices) {
             if (vertice.getID() == ID) {
@@ -211,6 +282,7 @@ public class Graph {
      */
     public void setArcs(Arc[] arcs) {
         Arcs = arcs;
+        Index = null;
     }
 
     /**
@@ -229,6 +301,7 @@ public class Graph {
      */
     public void setVertices(Vertex[] vertices) {
         Vertices = vertices;
+        Index = null;
     }
 
 }
@@ -0,0 +1,228 @@
+package server.scoring;
+
+import java.util.Arrays;
+
+/**
+ * Mutable attack path under construction.
+ * Arcs and vertices are kept in insertion order and deduplicated with primitive open-addressing hash sets
+ * (arcs on their packed source and destination, vertices on their ID), so that adding a graph to the path costs
+ * O(size of the added graph).
+ */
+public class PathBuilder {
+
+    /**
+     * The arcs of the path
+     */
+    private Arc[] Arcs;
+
+    /**
+     * The number of arcs of the path
+     */
+    private int ArcNumber = 0;
+
+    /**
+     * The vertices of the path
+     */
+    private Vertex[] Vertices;
+
+    /**
+     * The number of vertices of the path
+     */
+    private int VertexNumber = 0;
+
+    /**
+     * The (source, destination) of the arcs of the path
+     */
+    private final LongHashSet ArcSet;
+
+    /**
+     * The IDs of the vertices of the path
+     */
+    private final LongHashSet VertexSet;
+
+    /**
+     * Create an empty path
+     */
+    public PathBuilder() {
+        this(4, 4);
+    }
+
+    /**
+     * Create an empty path with an initial capacity
+     *
+     * @param arcCapacity    the expected number of arcs
+     * @param vertexCapacity the expected number of vertices
+     */
+    public PathBuilder(int arcCapacity, int vertexCapacity) {
+        Arcs = new Arc[Math.max(arcCapacity, 1)];
+        Vertices = new Vertex[Math.max(vertexCapacity, 1)];
+        ArcSet = new LongHashSet(arcCapacity);
+        VertexSet = new LongHashSet(vertexCapacity);
+    }
+
+    /**
+     * Create a path initialized with a graph
+     *
+     * @param graph the graph
+     */
+    public PathBuilder(Graph graph) {
+        this(graph.getArcs().length, graph.getVertices().length);
+        addGraph(graph);
+    }
+
+    /**
+     * Add an arc to the path if it is not already in the path
+     *
+     * @param arc the arc
+     * @return true if the arc has been added
+     */
+    public boolean addArc(Arc arc) {
+        if (!ArcSet.add(((long) arc.getSource() << 32) | (arc.getDestination() & 0xFFFFFFFFL))) {
+            return false;
+        }
+        if (ArcNumber == Arcs.length) {
+            Arcs = Arrays.copyOf(Arcs, ArcNumber * 2);
+        }
+        Arcs[ArcNumber++] = arc;
+        return true;
+    }
+
+    /**
+     * Add a vertex to the path if no vertex with the same ID is already in the path
+     *
+     * @param vertex the vertex
+     * @return true if the vertex has been added
+     */
+    public boolean addVertex(Vertex vertex) {
+        if (!VertexSet.add(vertex.getID())) {
+            return false;
+        }
+        if (VertexNumber == Vertices.length) {
+            Vertices = Arrays.copyOf(Vertices, VertexNumber * 2);
+        }
+        Vertices[VertexNumber++] = vertex;
+        return true;
+    }
+
+    /**
+     * Add the atomic graph V -&gt; D to the path (see {@link AttackPaths#createAtomicGraph(Vertex, Vertex)})
+     *
+     * @param V a vertex
+     * @param D a vertex
+     */
+    public void addAtomicGraph(Vertex V, Vertex D) {
+        addArc(new Arc(V.getID(), D.getID()));
+        addVertex(V);
+        addVertex(D);
+    }
+
+    /**
+     * Add all the arcs and vertices of a graph to the path
+     *
+     * @param graph the graph (may be null)
+     */
+    public void addGraph(Graph graph) {
+        if (graph == null) {
+            return;
+        }
+        for (Arc arc : graph.getArcs()) {
+            addArc(arc);
+        }
+        for (Vertex vertex : graph.getVertices()) {
+            addVertex(vertex);
+        }
+    }
+
+    /**
+     * Add all the arcs and vertices of another path to the path
+     *
+     * @param path the other path
+     */
+    public void addPath(PathBuilder path) {
+        for (int i = 0; i < path.ArcNumber; i++) {
+            addArc(path.Arcs[i]);
+        }
+        for (int i = 0; i < path.VertexNumber; i++) {
+            addVertex(path.Vertices[i]);
+        }
+    }
+
+    /**
+     * @return true if the path contains no arc and no vertex
+     */
+    public boolean isEmpty() {
+        return ArcNumber == 0 && VertexNumber == 0;
+    }
+
+    /**
+     * Create the graph of the path
+     *
+     * @return a new graph containing the arcs and vertices of the path
+     */
+    public Graph toGraph() {
+        return new Graph(Arrays.copyOf(Arcs, ArcNumber), Arrays.copyOf(Vertices, VertexNumber));
+    }
+
+    /**
+     * Open-addressing hash set of longs
+     */
+    private static class LongHashSet {
+        private long[] Keys;
+        private boolean[] Used;
+        private int Size = 0;
+
+        LongHashSet(int expectedSize) {
+            int capacity = 8;
+            while (capacity < expectedSize * 2) {
+                capacity <<= 1;
+            }
+            Keys = new long[capacity];
+            Used = new boolean[capacity];
+        }
+
+        /**
+         * Add a key to the set
+         *
+         * @return true if the key was not already in the set
+         */
+        boolean add(long key) {
+            int mask = Used.length - 1;
+            int slot = hash(key) & mask;
+            while (Used[slot]) {
+                if (Keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            Keys[slot] = key;
+            Used[slot] = true;
+            if (++Size * 2 > Used.length) {
+                resize();
+            }
+            return true;
+        }
+
+        private void resize() {
+            long[] oldKeys = Keys;
+            boolean[] oldUsed = Used;
+            Keys = new long[oldUsed.length * 2];
+            Used = new boolean[oldUsed.length * 2];
+            int mask = Used.length - 1;
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (Used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    Keys[slot] = oldKeys[i];
+                    Used[slot] = true;
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
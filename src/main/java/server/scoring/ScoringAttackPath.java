@@ -1,11 +1,15 @@
 package server.scoring;
 
 import server.attackgraph.ImpactMetric;
+import server.properties.ProjectProperties;
 import org.jdom2.Element;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,9 +18,9 @@ public class ScoringAttackPath {
     public static ScoringFormulas formulas = new ScoringFormulas();
 
     /**
-     * Function used to launch the scoring function
+     * Function used to launch the scoring function and save the scored attack paths into a XML file
      *
-     * @param vertexIDTable the vertex ids table
+     * @param vertexIDTable the vertex ids table (MulVAL ids)
      * @param vertexFactTable the vertex facts table
      * @param vertexMulvalMetricTable the vertex metrics table
      * @param vertexTypeTable the vertex types table
@@ -29,22 +33,101 @@ public class ScoringAttackPath {
      * @return the score of the attack graph
      * @throws Exception
      */
-    public static double ScoreCalculator(double[] vertexIDTable, String[] vertexFactTable,
-            double[] vertexMulvalMetricTable, String[] vertexTypeTable, double[] arcSrcTable,
-            double[] arcDstTable, ImpactMetric[][] ImpactMetrics, String pathToAttackPathsFile,
+    public static double ScoreCalculator(int[] vertexIDTable, String[] vertexFactTable,
+            double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable,
+            int[] arcDstTable, ImpactMetric[][] ImpactMetrics, String pathToAttackPathsFile,
             double previousMaxScore) throws Exception {
+        ScoringResult result = scoreAttackGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
+                arcSrcTable, arcDstTable, ImpactMetrics, previousMaxScore);
+        saveToXmlFile(pathToAttackPathsFile, result);
+        return result.getGlobalScore();
+    }
+
+    /**
+     * Function used to launch the scoring function
+     *
+     * @param vertexIDTable the vertex ids table (MulVAL ids). In the scoring graph, the vertices are
+     * identified by their dense index 0..N-1 in this table.
+     * @param vertexFactTable the vertex facts table
+     * @param vertexMulvalMetricTable the vertex metrics table
+     * @param vertexTypeTable the vertex types table
+     * @param arcSrcTable the arc sources table
+     * @param arcDstTable the arc destinations table
+     * @param ImpactMetrics the impact metrics table
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @return the score of the attack graph and the scored attack paths
+     * @throws Exception
+     */
+    public static ScoringResult scoreAttackGraph(int[] vertexIDTable, String[] vertexFactTable,
+            double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable,
+            int[] arcDstTable, ImpactMetric[][] ImpactMetrics, double previousMaxScore) throws Exception {
+        return scoreAttackGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
+                arcSrcTable, arcDstTable, ImpactMetrics, previousMaxScore, null);
+    }
+
+    /**
+     * Function used to launch the scoring function, computing only the attack paths of some targets.
+     * The global score is still computed on the whole attack graph.
+     *
+     * @param vertexIDTable the vertex ids table (MulVAL ids)
+     * @param vertexFactTable the vertex facts table
+     * @param vertexMulvalMetricTable the vertex metrics table
+     * @param vertexTypeTable the vertex types table
+     * @param arcSrcTable the arc sources table
+     * @param arcDstTable the arc destinations table
+     * @param ImpactMetrics the impact metrics table
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targetIDTable the MulVAL ids of the targets whose attack paths are computed (the vertices which
+     * are not targets are ignored), null for all the targets
+     * @return the score of the attack graph and the scored attack paths
+     * @throws Exception
+     */
+    public static ScoringResult scoreAttackGraph(int[] vertexIDTable, String[] vertexFactTable,
+            double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable,
+            int[] arcDstTable, ImpactMetric[][] ImpactMetrics, double previousMaxScore, int[] targetIDTable) throws Exception {
+        return scoreAttackGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
+                arcSrcTable, arcDstTable, ImpactMetrics, previousMaxScore, targetIDTable, 0, 0);
+    }
+
+    /**
+     * Function used to launch the scoring function, keeping only the best attack paths while they are explored
+     * (see {@link TopKAttackPaths}). The global score is still computed on the whole attack graph.
+     *
+     * @param vertexIDTable the vertex ids table (MulVAL ids)
+     * @param vertexFactTable the vertex facts table
+     * @param vertexMulvalMetricTable the vertex metrics table
+     * @param vertexTypeTable the vertex types table
+     * @param arcSrcTable the arc sources table
+     * @param arcDstTable the arc destinations table
+     * @param ImpactMetrics the impact metrics table
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @param targetIDTable the MulVAL ids of the targets whose attack paths are computed, null for all the targets
+     * @param topK the maximum number of attack paths kept, with the highest scores (0 to keep all the attack paths)
+     * @param minimumVertices the minimum number of vertices of a kept attack path
+     * @return the score of the attack graph and the kept scored attack paths
+     * @throws Exception
+     */
+    public static ScoringResult scoreAttackGraph(int[] vertexIDTable, String[] vertexFactTable,
+            double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable,
+            int[] arcDstTable, ImpactMetric[][] ImpactMetrics, double previousMaxScore, int[] targetIDTable,
+            int topK, int minimumVertices) throws Exception {
 
         Arc[] ArcsTable = new Arc[arcSrcTable.length];
         Vertex[] VerticesTable = new Vertex[vertexIDTable.length];
 
+        //remap the MulVAL ids to dense ids 0..N-1
+        HashMap<Integer, Integer> denseIDs = new HashMap<Integer, Integer>(vertexIDTable.length * 2);
+        for (int i = 0; i < vertexIDTable.length; i++) {
+            denseIDs.put(vertexIDTable[i], i);
+        }
         for (int i = 0; i < ArcsTable.length; i++) {
             ArcsTable[i] = new Arc(-1, -1);
-            ArcsTable[i].setSource(arcSrcTable[i]);
-            ArcsTable[i].setDestination(arcDstTable[i]);
+            ArcsTable[i].setSource(getDenseID(denseIDs, arcSrcTable[i]));
+            ArcsTable[i].setDestination(getDenseID(denseIDs, arcDstTable[i]));
         }
         for (int i = 0; i < vertexIDTable.length; i++) {
             VerticesTable[i] = new Vertex(-1, "EOF", -1, "EOF");
-            VerticesTable[i].setID(vertexIDTable[i]);
+            VerticesTable[i].setID(i);
             VerticesTable[i].setFact(vertexFactTable[i]);
             VerticesTable[i].setMulvalMetric(vertexMulvalMetricTable[i]);
             VerticesTable[i].setType(vertexTypeTable[i]);
@@ -52,35 +135,91 @@ public class ScoringAttackPath {
         }
         Graph graph = new Graph(ArcsTable, VerticesTable);
         Vertex[] TargetSet = Graph.getVerticesOnTypeAndFact(VerticesTable, "OR");
+        if (TargetSet != null && targetIDTable != null) {
+            TargetSet = selectTargets(TargetSet, denseIDs, targetIDTable);
+        }
 
         System.out.println("Generate Attack Paths");
-        Graph[] result = AttackPaths.AttackPathCalculator(TargetSet, graph); //Disabled following the test launch of attack path algorithm.
+        Graph[] result = null;
+        double[] scores = null;
+        if (TargetSet != null) {
+            TopKAttackPaths collector = new TopKAttackPaths(TargetSet.length, topK, minimumVertices);
+            AttackPaths.AttackPathCalculator(TargetSet, graph,
+                    ProjectProperties.getInstance().getIntegerProperty("scoring-parallelism", 1),
+                    ProjectProperties.getInstance().getIntegerProperty("scoring-timeout", 0), collector);
+            result = collector.getAttackPaths();
+            scores = collector.getScores();
+        }
 
         double scoreAttackGraph = formulas.MinMax(formulas.globalScore(graph), previousMaxScore);
 
-        saveToXmlFile(pathToAttackPathsFile, result);
         Logger.getAnonymousLogger().log(Level.INFO, "Attack paths generated");
-        return scoreAttackGraph;
+        return new ScoringResult(scoreAttackGraph, result, scores, vertexIDTable);
+    }
+
+    /**
+     * Keep only some targets
+     *
+     * @param targets the targets of the attack graph
+     * @param denseIDs the dense id of each MulVAL id
+     * @param targetIDTable the MulVAL ids of the targets to keep
+     * @return the kept targets, in the order of the targets of the attack graph
+     */
+    private static Vertex[] selectTargets(Vertex[] targets, HashMap<Integer, Integer> denseIDs, int[] targetIDTable) {
+        boolean[] selected = new boolean[denseIDs.size()];
+        for (int targetID : targetIDTable) {
+            int denseID = getDenseID(denseIDs, targetID);
+            if (denseID >= 0) {
+                selected[denseID] = true;
+            }
+        }
+        List<Vertex> result = new ArrayList<Vertex>();
+        for (Vertex target : targets) {
+            if (selected[target.getID()]) {
+                result.add(target);
+            }
+        }
+        return result.toArray(new Vertex[result.size()]);
     }
 
     /**
-     * Save the list of attack paths into a XML file
+     * Get the dense id of a MulVAL id
+     *
+     * @param denseIDs the dense id of each MulVAL id
+     * @param mulvalID the MulVAL id
+     * @return the dense id, -1 if the MulVAL id is not a vertex
+     */
+    private static int getDenseID(HashMap<Integer, Integer> denseIDs, int mulvalID) {
+        Integer denseID = denseIDs.get(mulvalID);
+        if (denseID == null) {
+            return -1;
+        }
+        return denseID;
+    }
+
+    /**
+     * Save the list of scored attack paths into a XML file
      *
      * @param filePath the paths where the list XML of attack paths can be
      * written
-     * @param AttackPaths list of attack paths
+     * @param scoringResult the scored attack paths
      * @throws Exception
      */
-    protected static void saveToXmlFile(String filePath, Graph[] AttackPaths) throws Exception {
+    public static void saveToXmlFile(String filePath, ScoringResult scoringResult) throws Exception {
         XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
         Element MainRoot = new Element("attack_paths");
         Element root;
+        Graph[] AttackPaths = scoringResult.getAttackPaths();
         if (AttackPaths != null) {
-            for (Graph AttackPathBuffer : AttackPaths) {
+            for (int i = 0; i < AttackPaths.length; i++) {
+                Graph AttackPathBuffer = AttackPaths[i];
+                if (AttackPathBuffer == null) {
+                    continue;
+                }
                 Arc[] AttackPathArcs = AttackPathBuffer.getArcs();
                 root = new Element("attack_path");
                 Element scoringElement = new Element("scoring");
-                scoringElement.setText(String.valueOf(formulas.MinMax(formulas.globalScore(AttackPathBuffer), AttackPathBuffer.getVertices().length)));
+                scoringElement.setText(String.valueOf(scoringResult.getScores()[i]));
                 root.addContent(scoringElement);
                 if (AttackPathArcs != null) {
                     Element arcsElement = new Element("arcs");
@@ -88,10 +227,10 @@ public class ScoringAttackPath {
                         Element arcElement = new Element("arc");
                         arcsElement.addContent(arcElement);
                         Element srcElement = new Element("src");
-                        srcElement.setText(String.valueOf(AttackPathArc.getSource()));
+                        srcElement.setText(String.valueOf(scoringResult.getMulvalID(AttackPathArc.getSource())));
                         arcElement.addContent(srcElement);
                         Element dstElement = new Element("dst");
-                        dstElement.setText(String.valueOf(AttackPathArc.getDestination()));
+                        dstElement.setText(String.valueOf(scoringResult.getMulvalID(AttackPathArc.getDestination())));
                         arcElement.addContent(dstElement);
                     }
                     root.addContent(arcsElement);
@@ -99,6 +238,11 @@ public class ScoringAttackPath {
                 }
             }
         }
-        output.output(MainRoot, new FileOutputStream(filePath));
+        FileOutputStream file = new FileOutputStream(filePath);
+        try {
+            output.output(MainRoot, file);
+        } finally {
+            file.close();
+        }
     }
 }
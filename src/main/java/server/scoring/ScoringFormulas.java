@@ -18,9 +18,7 @@ public class ScoringFormulas {
      * @return the gobal score
      */
     public double globalScore(Graph attackPath) {
-        Vertex[] vertices = attackPath.getVertices();
-        Arc[] arcs = attackPath.getArcs();
-        double RiskScore = riskScore(vertices, arcs);
+        double RiskScore = riskScore(attackPath);
         double ImpactScore = impactScore(attackPath);
         return RiskScore + ImpactScore;
     }
@@ -33,6 +31,17 @@ public class ScoringFormulas {
      * @return the risk score
      */
     public double riskScore(Vertex[] vertices, Arc[] arcs) {
+        return riskScore(new Graph(arcs, vertices));
+    }
+
+    /**
+     * Compute the risk score.
+     *
+     * @param graph the graph to score
+     * @return the risk score
+     */
+    public double riskScore(Graph graph) {
+        Vertex[] vertices = graph.getVertices();
         double[] RANDTable;
         double[] RORTable;
         double[] RLEAFTable;
@@ -52,8 +61,8 @@ public class ScoringFormulas {
         if (ANDVertices != null) {
             RANDTable = new double[ANDVertices.length];
             for (int i = 0; i < ANDVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, ANDVertices[i].getID());
-                double IngoingArcs = Graph.getIngoingArcsNumber(arcs, ANDVertices[i].getID());
+                double OutgoingArcs = graph.getOutgoingArcsNumber(ANDVertices[i].getID());
+                double IngoingArcs = graph.getIngoingArcsNumber(ANDVertices[i].getID());
                 double CumulativeScore = ANDVertices[i].getMulvalMetric();
                 RANDTable[i] = (CumulativeScore * (OutgoingArcs / IngoingArcs)) / a;
             }
@@ -62,8 +71,8 @@ public class ScoringFormulas {
         if (ORVertices != null) {
             RORTable = new double[ORVertices.length];
             for (int i = 0; i < ORVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, ORVertices[i].getID());
-                double IngoingArcs = Graph.getIngoingArcsNumber(arcs, ORVertices[i].getID());
+                double OutgoingArcs = graph.getOutgoingArcsNumber(ORVertices[i].getID());
+                double IngoingArcs = graph.getIngoingArcsNumber(ORVertices[i].getID());
                 double CumulativeScore = ORVertices[i].getMulvalMetric();
                 RORTable[i] = CumulativeScore * OutgoingArcs * IngoingArcs * o;
             }
@@ -72,7 +81,7 @@ public class ScoringFormulas {
         if (LEAFVertices != null) {
             RLEAFTable = new double[LEAFVertices.length];
             for (int i = 0; i < LEAFVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, LEAFVertices[i].getID());
+                double OutgoingArcs = graph.getOutgoingArcsNumber(LEAFVertices[i].getID());
                 RLEAFTable[i] = OutgoingArcs / l;//IngoingArcs=0 and CumulativeScore=1 for all LEAF vertices
             }
             RLEAF = getSum().evaluate(RLEAFTable, 0, RLEAFTable.length);
@@ -0,0 +1,79 @@
+package server.scoring;
+
+/**
+ * The result of the scoring of an attack graph: its global score and its scored attack paths.
+ */
+public class ScoringResult {
+
+    /**
+     * The normalized global score of the attack graph
+     */
+    private double GlobalScore;
+
+    /**
+     * The attack paths (vertices identified by their dense id), a null element when a target has no attack path
+     */
+    private Graph[] AttackPaths;
+
+    /**
+     * The score of each attack path
+     */
+    private double[] Scores;
+
+    /**
+     * The MulVAL id of each dense vertex id
+     */
+    private int[] VertexIDTable;
+
+    /**
+     * Instantiates a new scoring result.
+     *
+     * @param globalScore   the global score of the attack graph
+     * @param attackPaths   the attack paths
+     * @param scores        the score of each attack path
+     * @param vertexIDTable the MulVAL id of each dense vertex id
+     */
+    public ScoringResult(double globalScore, Graph[] attackPaths, double[] scores, int[] vertexIDTable) {
+        GlobalScore = globalScore;
+        AttackPaths = attackPaths;
+        Scores = scores;
+        VertexIDTable = vertexIDTable;
+    }
+
+    /**
+     * Gets global score.
+     *
+     * @return the global score
+     */
+    public double getGlobalScore() {
+        return GlobalScore;
+    }
+
+    /**
+     * Get attack paths.
+     *
+     * @return the graph [ ]
+     */
+    public Graph[] getAttackPaths() {
+        return AttackPaths;
+    }
+
+    /**
+     * Get the scores of the attack paths.
+     *
+     * @return the double [ ]
+     */
+    public double[] getScores() {
+        return Scores;
+    }
+
+    /**
+     * Get the MulVAL id of a dense vertex id.
+     *
+     * @param denseID the dense vertex id
+     * @return the MulVAL id
+     */
+    public int getMulvalID(int denseID) {
+        return VertexIDTable[denseID];
+    }
+}
@@ -0,0 +1,120 @@
+package server.scoring;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the attack paths of the targets while they are explored, and scores them.
+ * <p>
+ * The attack paths with too few vertices are dropped before being scored. In top-K mode, only the K attack paths
+ * with the highest scores are kept in a bounded heap: an attack path which is not better than the K already kept
+ * is dropped as soon as it is scored, and the attack path it replaces is released.
+ * With the same scores, the attack paths of the first targets are kept, as when the whole list is sorted.
+ * The collector can be fed concurrently by the workers exploring the targets in parallel.
+ */
+public class TopKAttackPaths {
+
+    /**
+     * The maximum number of attack paths kept (0 to keep all the attack paths)
+     */
+    private final int K;
+
+    /**
+     * The minimum number of vertices of a kept attack path
+     */
+    private final int MinimumVertices;
+
+    /**
+     * The kept attack paths, by target index (null when the target has no kept attack path)
+     */
+    private final Graph[] AttackPaths;
+
+    /**
+     * The scores of the kept attack paths, by target index
+     */
+    private final double[] Scores;
+
+    /**
+     * The target indexes of the kept attack paths, the worst attack path first
+     */
+    private final PriorityQueue<Integer> Heap;
+
+    /**
+     * Instantiates a new collector.
+     *
+     * @param targetsNumber   the number of targets
+     * @param k               the maximum number of attack paths kept (0 to keep all the attack paths)
+     * @param minimumVertices the minimum number of vertices of a kept attack path
+     */
+    public TopKAttackPaths(int targetsNumber, int k, int minimumVertices) {
+        K = k;
+        MinimumVertices = minimumVertices;
+        AttackPaths = new Graph[targetsNumber];
+        Scores = new double[targetsNumber];
+        Heap = new PriorityQueue<Integer>(Math.max(1, k > 0 ? Math.min(k + 1, targetsNumber) : 1), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return compareAttackPaths(index1, Scores[index1], index2, Scores[index2]);
+            }
+        });
+    }
+
+    /**
+     * Score the attack path of a target and keep it if it is one of the best attack paths
+     *
+     * @param targetIndex the index of the target
+     * @param attackPath  the attack path of the target (null if it has none)
+     */
+    public void offer(int targetIndex, Graph attackPath) {
+        if (attackPath == null || attackPath.getVertices().length < MinimumVertices) {
+            return;
+        }
+        double score = ScoringAttackPath.formulas.MinMax(ScoringAttackPath.formulas.globalScore(attackPath), attackPath.getVertices().length);
+        synchronized (this) {
+            if (K > 0 && Heap.size() >= K) {
+                int worst = Heap.peek();
+                if (compareAttackPaths(targetIndex, score, worst, Scores[worst]) <= 0) {
+                    return;
+                }
+                Heap.poll();
+                AttackPaths[worst] = null;
+            }
+            AttackPaths[targetIndex] = attackPath;
+            Scores[targetIndex] = score;
+            if (K > 0) {
+                Heap.add(targetIndex);
+            }
+        }
+    }
+
+    /**
+     * Get the kept attack paths.
+     *
+     * @return the kept attack paths, by target index (null when the target has no kept attack path)
+     */
+    public synchronized Graph[] getAttackPaths() {
+        return AttackPaths;
+    }
+
+    /**
+     * Get the scores of the kept attack paths.
+     *
+     * @return the scores, by target index
+     */
+    public synchronized double[] getScores() {
+        return Scores;
+    }
+
+    /**
+     * Compare two attack paths
+     *
+     * @return a negative number if the first attack path is worse than the second one (lower score, or same
+     * score and higher target index)
+     */
+    private static int compareAttackPaths(int index1, double score1, int index2, double score2) {
+        if (score1 != score2) {
+            return score1 < score2 ? -1 : 1;
+        }
+        return index2 - index1;
+    }
+}
@@ -7,7 +7,7 @@ public class Vertex {
     /**
      * The vertex ID
      */
-    private double ID;
+    private int ID;
 
     /**
      * The vertex Fact
@@ -38,7 +38,7 @@ public class Vertex {
      * @param metric the metric
      * @param type   the type
      */
-    public Vertex(double id, String fact, double metric, String type) {
+    public Vertex(int id, String fact, double metric, String type) {
         ID = id;
         Fact = fact;
         MulvalMetric = metric;
@@ -62,7 +62,7 @@ public class Vertex {
      *
      * @return the iD
      */
-    public double getID() {
+    public int getID() {
         return ID;
     }
 
@@ -71,7 +71,7 @@ public class Vertex {
      *
      * @param id the id
      */
-    public void setID(double id) {
+    public void setID(int id) {
         ID = id;
     }
 
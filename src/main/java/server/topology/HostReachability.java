@@ -0,0 +1,330 @@
+package server.topology;
+
+import server.topology.component.Host;
+import server.topology.component.Interface;
+import server.topology.component.Network;
+import server.topology.component.Route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Host-to-host IP reachability of a topology, computed from the networks of the interfaces and from the
+ * routing tables of the hosts.
+ * <p>
+ * A packet sent by a host to an address is delivered if the address is in the network of one of the
+ * interfaces of the host, or if the route found by a longest prefix match in the routing table of the host
+ * has no gateway (0.0.0.0, on-link). Otherwise it is forwarded to the host owning the gateway address,
+ * which applies the same rules. A host reaches another host if it can deliver a packet to one of the
+ * addresses of the other host.
+ */
+public class HostReachability {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte IN_PROGRESS = 1;
+    private static final byte REACHABLE = 2;
+    private static final byte UNREACHABLE = 3;
+
+    /**
+     * Next hop of a packet delivered on a network of the host
+     */
+    private static final int DELIVERED = -1;
+
+    /**
+     * Next hop of a packet that can not be forwarded
+     */
+    private static final int DROPPED = -2;
+
+    /**
+     * The hosts of the topology
+     */
+    private final List<Host> hosts;
+
+    /**
+     * The index of each host in {@link #hosts}
+     */
+    private final IdentityHashMap<Host, Integer> indexOfHost = new IdentityHashMap<Host, Integer>();
+
+    /**
+     * The hosts reachable from each host (bit i set if hosts[i] is reachable)
+     */
+    private final BitSet[] reachableHosts;
+
+    /**
+     * Compute the reachability between all the hosts of a topology
+     *
+     * @param topology the network topology
+     */
+    public HostReachability(Topology topology) {
+        this.hosts = new ArrayList<Host>(topology.getHosts());
+        int hostNumber = hosts.size();
+
+        //the owner of each address and the connected networks of each host
+        HashMap<Integer, Integer> ownerOfAddress = new HashMap<Integer, Integer>();
+        int[][] networkAddresses = new int[hostNumber][];
+        int[][] networkMasks = new int[hostNumber][];
+        for (int h = 0; h < hostNumber; h++) {
+            Host host = hosts.get(h);
+            indexOfHost.put(host, h);
+            List<Network> networks = new ArrayList<Network>();
+            for (Interface intface : host.getInterfaces().values()) {
+                if (intface.getAddress() != null && !ownerOfAddress.containsKey(intface.getAddress().toInt()))
+                    ownerOfAddress.put(intface.getAddress().toInt(), h);
+                if (intface.getNetwork() != null && intface.getNetwork().getAddress() != null)
+                    networks.add(intface.getNetwork());
+            }
+            networkAddresses[h] = new int[networks.size()];
+            networkMasks[h] = new int[networks.size()];
+            for (int k = 0; k < networks.size(); k++) {
+                networkMasks[h][k] = networks.get(k).getMask().toInt();
+                networkAddresses[h][k] = networks.get(k).getAddress().toInt() & networkMasks[h][k];
+            }
+        }
+
+        reachableHosts = new BitSet[hostNumber];
+        for (int h = 0; h < hostNumber; h++) {
+            reachableHosts[h] = new BitSet(hostNumber);
+            reachableHosts[h].set(h);
+        }
+
+        //The forwarding decisions only depend on the networks and route destinations containing the address:
+        //the addresses are grouped by their longest containing prefix and each group is resolved once.
+        PrefixTrie prefixes = new PrefixTrie();
+        for (int h = 0; h < hostNumber; h++) {
+            for (int k = 0; k < networkAddresses[h].length; k++) {
+                prefixes.add(networkAddresses[h][k], 32 - Integer.numberOfTrailingZeros(networkMasks[h][k]));
+            }
+            for (Route route : hosts.get(h).getRoutingTable().getRouteList()) {
+                if (route != null && route.getDestination() != null && route.getMask() != null)
+                    prefixes.add(route.getDestination().toInt(), route.getPrefixLength());
+            }
+        }
+        HashMap<Integer, List<Integer>> addressesOfGroup = new HashMap<Integer, List<Integer>>();
+        for (Integer address : ownerOfAddress.keySet()) {
+            int group = prefixes.longestPrefix(address);
+            List<Integer> addresses = addressesOfGroup.get(group);
+            if (addresses == null) {
+                addresses = new ArrayList<Integer>();
+                addressesOfGroup.put(group, addresses);
+            }
+            addresses.add(address);
+        }
+
+        int[] next = new int[hostNumber];
+        byte[] states = new byte[hostNumber];
+        int[] chain = new int[hostNumber];
+        for (List<Integer> addresses : addressesOfGroup.values()) {
+            int address = addresses.get(0);
+            for (int h = 0; h < hostNumber; h++) {
+                next[h] = nextHop(h, address, networkAddresses[h], networkMasks[h], ownerOfAddress);
+            }
+            resolveForwardingChains(next, states, chain);
+
+            BitSet owners = new BitSet(hostNumber);
+            for (Integer groupAddress : addresses) {
+                owners.set(ownerOfAddress.get(groupAddress));
+            }
+            for (int h = 0; h < hostNumber; h++) {
+                if (states[h] == REACHABLE)
+                    reachableHosts[h].or(owners);
+            }
+
+            //an owner whose packets to its own address are not delivered is still reached by the hosts forwarding to it
+            List<Integer>[] previousHops = null;
+            for (int d = owners.nextSetBit(0); d >= 0; d = owners.nextSetBit(d + 1)) {
+                if (states[d] == REACHABLE)
+                    continue;
+                if (previousHops == null)
+                    previousHops = getPreviousHops(next);
+                addHostsForwardingTo(d, previousHops);
+            }
+        }
+    }
+
+    /**
+     * Resolve the state of all the hosts following their next hops.
+     * A host is REACHABLE if its chain of next hops ends by a delivery, else UNREACHABLE (dropped or loop).
+     */
+    private static void resolveForwardingChains(int[] next, byte[] states, int[] chain) {
+        Arrays.fill(states, UNKNOWN);
+        for (int h = 0; h < next.length; h++) {
+            int chainLength = 0;
+            int current = h;
+            byte result;
+            while (true) {
+                if (states[current] != UNKNOWN) {
+                    //a host met twice on the chain is a forwarding loop
+                    result = states[current] == REACHABLE ? REACHABLE : UNREACHABLE;
+                    break;
+                }
+                states[current] = IN_PROGRESS;
+                chain[chainLength++] = current;
+                if (next[current] == DELIVERED) {
+                    result = REACHABLE;
+                    break;
+                } else if (next[current] == DROPPED) {
+                    result = UNREACHABLE;
+                    break;
+                }
+                current = next[current];
+            }
+            for (int k = 0; k < chainLength; k++) {
+                states[chain[k]] = result;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Integer>[] getPreviousHops(int[] next) {
+        List<Integer>[] result = new List[next.length];
+        for (int h = 0; h < next.length; h++) {
+            if (next[h] >= 0) {
+                if (result[next[h]] == null)
+                    result[next[h]] = new ArrayList<Integer>(2);
+                result[next[h]].add(h);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mark a host as reachable from all the hosts whose chain of next hops goes through it
+     */
+    private void addHostsForwardingTo(int destination, List<Integer>[] previousHops) {
+        BitSet visited = new BitSet(previousHops.length);
+        List<Integer> toVisit = new ArrayList<Integer>();
+        toVisit.add(destination);
+        visited.set(destination);
+        while (!toVisit.isEmpty()) {
+            int current = toVisit.remove(toVisit.size() - 1);
+            if (previousHops[current] == null)
+                continue;
+            for (int previous : previousHops[current]) {
+                if (!visited.get(previous)) {
+                    visited.set(previous);
+                    reachableHosts[previous].set(destination);
+                    toVisit.add(previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the next hop of a packet sent by a host to an address
+     *
+     * @param host             the index of the host
+     * @param address          the destination address
+     * @param networkAddresses the addresses of the networks of the host
+     * @param networkMasks     the masks of the networks of the host
+     * @param ownerOfAddress   the index of the host owning each address
+     * @return the index of the next host, {@link #DELIVERED} or {@link #DROPPED}
+     */
+    private int nextHop(int host, int address, int[] networkAddresses, int[] networkMasks, HashMap<Integer, Integer> ownerOfAddress) {
+        for (int k = 0; k < networkAddresses.length; k++) {
+            if ((address & networkMasks[k]) == networkAddresses[k])
+                return DELIVERED;
+        }
+        Route route = hosts.get(host).getRoutingTable().lookup(address);
+        if (route == null)
+            return DROPPED;
+        if (route.getGateway() == null || route.getGateway().toInt() == 0)
+            return DELIVERED;
+        Integer gatewayHost = ownerOfAddress.get(route.getGateway().toInt());
+        if (gatewayHost == null)
+            return DROPPED;
+        return gatewayHost;
+    }
+
+    /**
+     * Test if a host can reach another host
+     *
+     * @param from the source host
+     * @param to   the destination host
+     * @return true if a packet sent by the source host can be delivered to one of the addresses of the destination host
+     */
+    public boolean isReachable(Host from, Host to) {
+        Integer fromIndex = indexOfHost.get(from);
+        Integer toIndex = indexOfHost.get(to);
+        return fromIndex != null && toIndex != null && reachableHosts[fromIndex].get(toIndex);
+    }
+
+    /**
+     * Gets reachable hosts.
+     *
+     * @param from the source host
+     * @return the hosts that can be reached from the source host (including itself)
+     */
+    public List<Host> getReachableHosts(Host from) {
+        List<Host> result = new ArrayList<Host>();
+        Integer fromIndex = indexOfHost.get(from);
+        if (fromIndex == null)
+            return result;
+        BitSet reachable = reachableHosts[fromIndex];
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            result.add(hosts.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Binary trie of network prefixes
+     */
+    private static class PrefixTrie {
+        /**
+         * The children of node n are at 2n (bit 0) and 2n+1 (bit 1), 0 if absent (the root is node 0)
+         */
+        private int[] children = new int[64];
+
+        /**
+         * True if a prefix ends at the node
+         */
+        private boolean[] prefixEnd = new boolean[32];
+
+        private int nodeNumber = 1;
+
+        void add(int address, int prefixLength) {
+            int node = 0;
+            for (int depth = 0; depth < prefixLength; depth++) {
+                int child = 2 * node + ((address >>> (31 - depth)) & 1);
+                if (children[child] == 0) {
+                    if (nodeNumber == prefixEnd.length) {
+                        children = Arrays.copyOf(children, children.length * 2);
+                        prefixEnd = Arrays.copyOf(prefixEnd, prefixEnd.length * 2);
+                    }
+                    children[child] = nodeNumber++;
+                }
+                node = children[child];
+            }
+            prefixEnd[node] = true;
+        }
+
+        /**
+         * @return the node of the longest prefix containing the address (the root if there is none)
+         */
+        int longestPrefix(int address) {
+            int result = 0;
+            int node = 0;
+            for (int depth = 0; depth < 32; depth++) {
+                node = children[2 * node + ((address >>> (31 - depth)) & 1)];
+                if (node == 0)
+                    break;
+                if (prefixEnd[node])
+                    result = node;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Gets hosts.
+     *
+     * @return the hosts of the topology at the time of the computation
+     */
+    public List<Host> getHosts() {
+        return hosts;
+    }
+}
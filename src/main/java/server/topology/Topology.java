@@ -7,8 +7,11 @@ import server.topology.component.VLAN;
 import server.topology.component.Interface;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 
 public class Topology implements Cloneable {
@@ -22,6 +25,26 @@ public class Topology implements Cloneable {
      */
     private HashMap<String, VLAN> vlans = new HashMap<String, VLAN>();
 
+    /**
+     * The hosts indexed by name (the first host of the list for a given name)
+     */
+    private HashMap<String, Host> hostsByName = new HashMap<String, Host>();
+
+    /**
+     * The interfaces indexed by IPv4 address (the first interface of the list of hosts for a given address)
+     */
+    private HashMap<Integer, Interface> interfacesByIPAddress = new HashMap<Integer, Interface>();
+
+    /**
+     * The hosts taken into account in the indexes
+     */
+    private Set<Host> indexedHosts = Collections.newSetFromMap(new IdentityHashMap<Host, Boolean>());
+
+    /**
+     * True if the indexes must be rebuilt from the list of hosts
+     */
+    private boolean indexesOutdated = false;
+
     /**
      * Gets hosts.
      *
@@ -36,8 +59,64 @@ public class Topology implements Cloneable {
      *
      * @param host the host to add
      */
-    public void addHost(Host host) {
+    public synchronized void addHost(Host host) {
+        updateIndexes();
         this.hosts.add(host);
+        indexHost(host);
+    }
+
+    /**
+     * Update the indexes after an interface has been added to a host of the topology
+     *
+     * @param intface the new interface
+     */
+    public synchronized void interfaceAdded(Interface intface) {
+        if (indexedHosts.contains(intface.getHost())) {
+            indexInterface(intface);
+        }
+    }
+
+    /**
+     * Update the indexes after a host of the topology has been renamed
+     *
+     * @param host the renamed host
+     */
+    public synchronized void hostRenamed(Host host) {
+        if (indexedHosts.contains(host)) {
+            indexesOutdated = true;
+        }
+    }
+
+    /**
+     * Rebuild the indexes if they are outdated or if the list of hosts has been modified without {@link #addHost(Host)}
+     */
+    private void updateIndexes() {
+        if (!indexesOutdated && indexedHosts.size() == this.hosts.size()) {
+            return;
+        }
+        hostsByName = new HashMap<String, Host>();
+        interfacesByIPAddress = new HashMap<Integer, Interface>();
+        indexedHosts = Collections.newSetFromMap(new IdentityHashMap<Host, Boolean>());
+        for (Host host : this.hosts) {
+            indexHost(host);
+        }
+        indexesOutdated = false;
+    }
+
+    private void indexHost(Host host) {
+        indexedHosts.add(host);
+        if (host.getName() != null && !hostsByName.containsKey(host.getName())) {
+            hostsByName.put(host.getName(), host);
+        }
+        for (Interface intface : host.getInterfaces().values()) {
+            indexInterface(intface);
+        }
+    }
+
+    private void indexInterface(Interface intface) {
+        if (intface.getAddress() != null && !interfacesByIPAddress.containsKey(intface.getAddress().toInt())) {
+            interfacesByIPAddress.put(intface.getAddress().toInt(), intface);
+        }
     }
 
     /**
@@ -109,15 +188,9 @@ public class Topology implements Cloneable {
      * @return the interface by ip address
      * @throws Exception the exception
      */
-    public Interface getInterfaceByIpAddress(IPAddress ipAddress) throws Exception {
-        for (Host host : getHosts()) {
-            for (Interface networkInterface : host.getInterfaces().values()) {
-                if (networkInterface.getAddress().equals(ipAddress)) {
-                    return networkInterface;
-                }
-            }
-        }
-        return null;
+    public synchronized Interface getInterfaceByIpAddress(IPAddress ipAddress) throws Exception {
+        updateIndexes();
+        return interfacesByIPAddress.get(ipAddress.toInt());
     }
 
     /**
@@ -126,12 +199,12 @@ public class Topology implements Cloneable {
      * @param ipAddress the ip address
      * @return the host if it exists else null
      */
-    public Host existingHostByIPAddress(IPAddress ipAddress) {
-        for (int i = 0; i < this.getHosts().size(); i++) {
-            if (this.getHosts().get(i).hasIP(ipAddress))
-                return this.getHosts().get(i);
-        }
-        return null;
+    public synchronized Host existingHostByIPAddress(IPAddress ipAddress) {
+        updateIndexes();
+        Interface intface = interfacesByIPAddress.get(ipAddress.toInt());
+        if (intface == null)
+            return null;
+        return intface.getHost();
     }
 
     /**
@@ -140,15 +213,12 @@ public class Topology implements Cloneable {
      * @param name the name of the host
      * @return the host if it exists else null
      */
-    public Host existingHostByName(String name) {
-        for (int i = 0; i < this.getHosts().size(); i++) {
-            if (this.getHosts().get(i).getName().equals(name))
-                return this.getHosts().get(i);
-        }
+    public synchronized Host existingHostByName(String name) {
+        updateIndexes();
         //if(name.equals("internet"))
         //	return new Host("internet",this);
 
-        return null;
+        return hostsByName.get(name);
     }
 
     @Override
@@ -159,6 +229,11 @@ public class Topology implements Cloneable {
         for (int i = 0; i < copie.getHosts().size(); i++) {
             copie.getHosts().set(i, copie.getHosts().get(i).clone());
         }
+        //the indexes of the copy are built on the copied hosts
+        copie.hostsByName = new HashMap<String, Host>();
+        copie.interfacesByIPAddress = new HashMap<Integer, Interface>();
+        copie.indexedHosts = Collections.newSetFromMap(new IdentityHashMap<Host, Boolean>());
+        copie.indexesOutdated = true;
 
         copie.vlans = new HashMap<String, VLAN>(this.getVlans());
         for (String key : copie.getVlans().keySet()) {
@@ -216,6 +291,15 @@ public class Topology implements Cloneable {
         return result;
     }
 
+    /**
+     * Compute the host-to-host reachability from the networks of the interfaces and the routing tables of the hosts
+     *
+     * @return the reachability between all the hosts of the topology
+     */
+    public synchronized HostReachability computeHostReachability() {
+        return new HostReachability(this);
+    }
+
     /**
      * Gets hosts in network.
      *
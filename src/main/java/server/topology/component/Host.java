@@ -60,6 +60,8 @@ public class Host implements Cloneable {
      */
     public void setName(String name) {
         this.name = name;
+        if (this.topology != null)
+            this.topology.hostRenamed(this);
     }
 
     /**
@@ -109,6 +111,8 @@ public class Host implements Cloneable {
         if (!this.getInterfaces().containsKey(name)) { //If this host has not already this interface
             Interface intface = new Interface(name, ipAddress, this);
             this.getInterfaces().put(name, intface);
+            if (this.topology != null)
+                this.topology.interfaceAdded(intface);
             return intface;
         } else
             return this.getInterfaces().get(name);
@@ -127,6 +131,8 @@ public class Host implements Cloneable {
         if (!this.getInterfaces().containsKey(name)) { //If this host has not already this interface
             Interface intface = new Interface(name, ipAddress, this, vlan);
             this.getInterfaces().put(name, intface);
+            if (this.topology != null)
+                this.topology.interfaceAdded(intface);
             return intface;
         } else
             return this.getInterfaces().get(name);
@@ -181,7 +187,7 @@ public class Host implements Cloneable {
     public boolean inNetwork(Network network) {
         for (String key : this.getInterfaces().keySet()) {
             Interface intface = this.getInterfaces().get(key);
-            if (intface.getNetwork() != null && (new Network(intface.getAddress())).isIncludedIn(network))
+            if (intface.getNetwork() != null && IPAddress.networkInOtherNetwork(intface.getAddress().toInt(), -1, network.getAddress().toInt(), network.getMask().toInt()))
                 return true;
         }
         return false;
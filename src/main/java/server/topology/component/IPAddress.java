@@ -1,18 +1,39 @@
 package server.topology.component;
 
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class IPAddress implements Cloneable {
     /**
-     * The IPv4 address pattern
+     * The maximum number of addresses kept in the cache of {@link #valueOf(int)}
      */
-    public static Pattern pattern = Pattern.compile("^(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?).(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?).(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?).(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$");
+    private static final int MAX_CACHED_ADDRESSES = 1 << 16;
+
+    /**
+     * The cache of the IP addresses, by 32 bits value
+     */
+    private static final ConcurrentHashMap<Integer, IPAddress> cache = new ConcurrentHashMap<Integer, IPAddress>();
+
+    /**
+     * The IPv4 masks, by prefix length (0 to 32)
+     */
+    private static final IPAddress[] netMasks = new IPAddress[33];
+
+    static {
+        for (int netPrefix = 0; netPrefix <= 32; netPrefix++) {
+            netMasks[netPrefix] = new IPAddress(netPrefix == 0 ? 0 : -1 << (32 - netPrefix));
+        }
+    }
+
+    /**
+     * The 32 bits value of the IP address
+     */
+    private final int value;
 
     /**
      * The string of the  IP address
      */
-    private String address = "";
+    private final String address;
 
     /**
      * Create an IPAddress
@@ -21,10 +42,48 @@ public class IPAddress implements Cloneable {
      * @throws Exception
      */
     public IPAddress(String address) throws Exception {
+        this((int) parseOrThrow(address));
+    }
+
+    /**
+     * Create an IPAddress
+     *
+     * @param value the 32 bits value of the ip address
+     */
+    public IPAddress(int value) {
         super();
-        if (!isAnIPAddress(address))
-            throw new Exception("Invalid IP Address ");
-        this.address = address;
+        this.value = value;
+        this.address = ((value >>> 24) & 0xFF) + "." + ((value >>> 16) & 0xFF) + "." + ((value >>> 8) & 0xFF) + "." + (value & 0xFF);
+    }
+
+    /**
+     * Get an IPAddress from its string, shared with the other addresses of same value if possible
+     *
+     * @param address the string of the ip address
+     * @return the IPAddress
+     * @throws Exception if the string is not an IPv4 address
+     */
+    public static IPAddress valueOf(String address) throws Exception {
+        return valueOf((int) parseOrThrow(address));
+    }
+
+    /**
+     * Get an IPAddress from its value, shared with the other addresses of same value if possible
+     *
+     * @param value the 32 bits value of the ip address
+     * @return the IPAddress
+     */
+    public static IPAddress valueOf(int value) {
+        IPAddress result = cache.get(value);
+        if (result == null) {
+            result = new IPAddress(value);
+            if (cache.size() < MAX_CACHED_ADDRESSES) {
+                IPAddress existing = cache.putIfAbsent(value, result);
+                if (existing != null)
+                    result = existing;
+            }
+        }
+        return result;
     }
 
     /**
@@ -34,20 +93,9 @@ public class IPAddress implements Cloneable {
      * @return the IPv4 mask
      */
     public static IPAddress getIPv4NetMask(int netPrefix) {
-        try {
-            if (netPrefix == 0) {
-                return new IPAddress("0.0.0.0");
-            }
-            int shiftby = (1 << 31);
-            for (int i = netPrefix - 1; i > 0; i--) {
-                shiftby = (shiftby >> 1);
-            }
-            String maskString = Integer.toString((shiftby >> 24) & 255) + "." + Integer.toString((shiftby >> 16) & 255) + "." + Integer.toString((shiftby >> 8) & 255) + "." + Integer.toString(shiftby & 255);
-            return new IPAddress(maskString);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        if (netPrefix < 0)
+            return netMasks[1];
+        return netMasks[Math.min(netPrefix, 32)];
     }
 
     /**
@@ -58,15 +106,65 @@ public class IPAddress implements Cloneable {
      * @return true if the first network is contained in the second network
      */
     public static boolean networkInOtherNetwork(IPAddress ipNetwork1, IPAddress maskNetwork1, IPAddress ipNetwork2, IPAddress maskNetwork2) {
-        int intIpNetwork1 = ipNetwork1.toInt();
-        int intmaskNetwork1 = maskNetwork1.toInt();
-        int intIpNetwork2 = ipNetwork2.toInt();
-        int intmaskNetwork2 = maskNetwork2.toInt();
-        return (intIpNetwork1 & intmaskNetwork1 & intmaskNetwork2) == (intIpNetwork2 & intmaskNetwork2);
+        return networkInOtherNetwork(ipNetwork1.value, maskNetwork1.value, ipNetwork2.value, maskNetwork2.value);
+    }
+
+    /**
+     * @param ipNetwork1   the 32 bits ip of the first network
+     * @param maskNetwork1 the 32 bits mask of the first network
+     * @param ipNetwork2   the 32 bits ip of the second network
+     * @param maskNetwork2 the 32 bits mask of the second network
+     * @return true if the first network is contained in the second network
+     */
+    public static boolean networkInOtherNetwork(int ipNetwork1, int maskNetwork1, int ipNetwork2, int maskNetwork2) {
+        return (ipNetwork1 & maskNetwork1 & maskNetwork2) == (ipNetwork2 & maskNetwork2);
     }
 
     public static boolean isAnIPAddress(String str) {
-        return pattern.matcher(str).matches();
+        return parse(str) >= 0;
+    }
+
+    /**
+     * Parse a dotted-quad IPv4 address (four decimal numbers of at most 3 digits between 0 and 255)
+     *
+     * @param str the string to parse
+     * @return the 32 bits value of the address (as an unsigned int), -1 if the string is not an IPv4 address
+     */
+    private static long parse(String str) {
+        if (str == null)
+            return -1;
+        int length = str.length();
+        if (length < 7 || length > 15)
+            return -1;
+        long result = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255)
+                    return -1;
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0)
+            return -1;
+        return (result << 8) | octet;
+    }
+
+    private static long parseOrThrow(String str) throws Exception {
+        long result = parse(str);
+        if (result < 0)
+            throw new Exception("Invalid IP Address ");
+        return result;
     }
 
     /**
@@ -82,13 +180,7 @@ public class IPAddress implements Cloneable {
      * @return the mask
      */
     public int getMaskFromIPv4Address() {
-        int ip_int = this.toInt();
-        int i = 31;
-        while (i >= 0 && (ip_int << i) == 0) {
-            i--;
-        }
-        return i + 1;
-
+        return 32 - Integer.numberOfTrailingZeros(value);
     }
 
     /**
@@ -97,12 +189,12 @@ public class IPAddress implements Cloneable {
      * @return the 32 bit int
      */
     public int toInt() {
-        String[] ip_string = this.getAddress().split("\\.");
+        return value;
+    }
 
-        return ((Integer.parseInt(ip_string[0]) & 0xFF) << 24) |
-                ((Integer.parseInt(ip_string[1]) & 0xFF) << 16) |
-                ((Integer.parseInt(ip_string[2]) & 0xFF) << 8) |
-                ((Integer.parseInt(ip_string[3]) & 0xFF));
+    @Override
+    public int hashCode() {
+        return value;
     }
 
     @Override
@@ -114,18 +206,13 @@ public class IPAddress implements Cloneable {
         if (getClass() != obj.getClass())
             return false;
         IPAddress other = (IPAddress) obj;
-        if (getAddress() == null) {
-            if (other.getAddress() != null)
-                return false;
-        } else if (!getAddress().equals(other.getAddress()))
-            return false;
-        return true;
+        return value == other.value;
     }
 
     @Override
     public IPAddress clone() throws CloneNotSupportedException {
-
-        return (IPAddress) super.clone();
+        //an IP address is immutable
+        return this;
     }
 
     @Override
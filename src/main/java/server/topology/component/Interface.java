@@ -48,7 +48,7 @@ public class Interface implements Cloneable {
     public Interface(String name, String address, Host host) throws Exception {
         this.host = host;
         this.name = name;
-        this.address = new IPAddress(address);
+        this.address = IPAddress.valueOf(address);
         vlan = new VLAN();
     }
 
@@ -64,7 +64,7 @@ public class Interface implements Cloneable {
     public Interface(String name, String address, Host host, VLAN vlan) throws Exception {
         this.host = host;
         this.name = name;
-        this.address = new IPAddress(address);
+        this.address = IPAddress.valueOf(address);
         this.vlan = vlan;
     }
 
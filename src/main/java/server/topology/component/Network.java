@@ -49,7 +49,7 @@ public class Network implements Cloneable {
             throw new Exception("Wrong network format");
         String address = networkString.split("/")[0];
         String mask = networkString.split("/")[1];
-        this.address = new IPAddress(address);
+        this.address = IPAddress.valueOf(address);
         this.mask = IPAddress.getIPv4NetMask(Integer.parseInt(mask));
     }
 
@@ -96,17 +96,14 @@ public class Network implements Cloneable {
      * @return true if this network is included in the other network
      */
     public boolean isIncludedIn(Network network) {
-        return IPAddress.networkInOtherNetwork(this.getAddress(), this.getMask(), network.getAddress(), network.getMask());
+        return IPAddress.networkInOtherNetwork(this.getAddress().toInt(), this.getMask().toInt(), network.getAddress().toInt(), network.getMask().toInt());
     }
 
 
     @Override
     public Network clone() throws CloneNotSupportedException {
-        Network copie = (Network) super.clone();
-        copie.address = this.getAddress().clone();
-        copie.mask = this.getMask().clone();
-
-        return copie;
+        //the ip addresses are immutable and shared with the copy
+        return (Network) super.clone();
     }
 
     @Override
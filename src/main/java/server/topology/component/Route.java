@@ -2,7 +2,15 @@ package server.topology.component;
 
 import org.jdom2.Element;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Route implements Cloneable {
+    /**
+     * The number of changes of the destination or of the mask of any route, to rebuild the tries of the
+     * routing tables (see {@link RoutingTable#lookup(int)})
+     */
+    private static final AtomicLong networkModificationCount = new AtomicLong();
+
     /**
      * The destination
      */
@@ -56,6 +64,7 @@ public class Route implements Cloneable {
      */
     public void setDestination(IPAddress destination) {
         this.destination = destination;
+        networkModificationCount.incrementAndGet();
     }
 
     /**
@@ -92,6 +101,14 @@ public class Route implements Cloneable {
      */
     public void setMask(IPAddress mask) {
         this.mask = mask;
+        networkModificationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of changes of the destination or of the mask of any route
+     */
+    static long getNetworkModificationCount() {
+        return networkModificationCount.get();
     }
 
     /**
@@ -112,6 +129,26 @@ public class Route implements Cloneable {
         this.intface = intface;
     }
 
+    /**
+     * Gets prefix length.
+     *
+     * @return the length of the prefix of the destination network (the X of A.B.C.D/X)
+     */
+    public int getPrefixLength() {
+        return getMask().getMaskFromIPv4Address();
+    }
+
+    /**
+     * Test if an address is in the destination network of the route
+     *
+     * @param address the 32 bits ip address
+     * @return true if the route can be used to reach the address
+     */
+    public boolean matches(int address) {
+        int mask = getMask().toInt();
+        return (address & mask) == (getDestination().toInt() & mask);
+    }
+
     /**
      * To dom xML element.
      *
@@ -3,6 +3,8 @@ package server.topology.component;
 import org.jdom2.Element;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class RoutingTable implements Cloneable {
@@ -17,22 +19,135 @@ public class RoutingTable implements Cloneable {
      */
     private ArrayList<Route> routeList = new ArrayList<Route>();
 
+    /**
+     * The binary trie of the destinations of the routes, used for the longest prefix match.
+     * Node n has its children at 2n (bit 0) and 2n+1 (bit 1), 0 if absent (the root is node 0).
+     */
+    private int[] trieChildren;
+
+    /**
+     * The index in the route list of the route ending at each node of the trie, -1 if none
+     */
+    private int[] trieRoutes;
+
+    /**
+     * The number of nodes of the trie
+     */
+    private int trieNodeNumber = 0;
+
+    /**
+     * The number of changes of the route list
+     */
+    private int modificationCount = 0;
+
+    /**
+     * The number of changes of the route list and of the routes ({@link Route#getNetworkModificationCount()})
+     * when the trie has been built
+     */
+    private int indexedModificationCount = -1;
+    private long indexedNetworkModificationCount = -1;
+
     public RoutingTable(Host host) {
         this.relatedHost = host;
     }
 
     /**
-     * @return the routeList
+     * @return the routeList (read only: the routes are added with {@link #addRoute(Route)})
+     */
+    public List<Route> getRouteList() {
+        return Collections.unmodifiableList(routeList);
+    }
+
+    /**
+     * @param routeList the routeList to set (copied)
+     */
+    public synchronized void setRouteList(List<Route> routeList) {
+        this.routeList = new ArrayList<Route>(routeList);
+        modificationCount++;
+    }
+
+    /**
+     * Add a route at the end of the routing table
+     *
+     * @param route the route
+     */
+    public synchronized void addRoute(Route route) {
+        this.routeList.add(route);
+        modificationCount++;
+    }
+
+    /**
+     * Find the route to use to reach an address (longest prefix match).
+     * When several routes have the same destination network, the first one of the list is used.
+     *
+     * @param address an IP address
+     * @return the route with the longest destination network containing the address, null if there is none
+     */
+    public Route lookup(IPAddress address) {
+        return lookup(address.toInt());
+    }
+
+    /**
+     * Find the route to use to reach an address (longest prefix match).
+     *
+     * @param address the 32 bits ip address
+     * @return the route with the longest destination network containing the address, null if there is none
      */
-    public ArrayList<Route> getRouteList() {
-        return routeList;
+    public synchronized Route lookup(int address) {
+        updateTrie();
+        int result = trieRoutes[0];
+        int node = 0;
+        for (int depth = 0; depth < 32; depth++) {
+            node = trieChildren[2 * node + ((address >>> (31 - depth)) & 1)];
+            if (node == 0)
+                break;
+            if (trieRoutes[node] >= 0)
+                result = trieRoutes[node];
+        }
+        return result >= 0 ? this.routeList.get(result) : null;
     }
 
     /**
-     * @param routeList the routeList to set
+     * Rebuild the trie if the route list or the destination of a route has been changed since it has been built
      */
-    public void setRouteList(ArrayList<Route> routeList) {
-        this.routeList = routeList;
+    private void updateTrie() {
+        long networkModificationCount = Route.getNetworkModificationCount();
+        if (indexedModificationCount == modificationCount && indexedNetworkModificationCount == networkModificationCount)
+            return;
+        trieChildren = new int[64];
+        trieRoutes = new int[32];
+        Arrays.fill(trieRoutes, -1);
+        trieNodeNumber = 1;
+        for (int i = 0; i < this.routeList.size(); i++) {
+            Route route = this.routeList.get(i);
+            if (route == null || route.getDestination() == null || route.getMask() == null)
+                continue;
+            int destination = route.getDestination().toInt();
+            int prefixLength = route.getPrefixLength();
+            int node = 0;
+            for (int depth = 0; depth < prefixLength; depth++) {
+                int child = 2 * node + ((destination >>> (31 - depth)) & 1);
+                if (trieChildren[child] == 0) {
+                    //the node is created first as it may reallocate the arrays
+                    int newNode = newTrieNode();
+                    trieChildren[child] = newNode;
+                }
+                node = trieChildren[child];
+            }
+            if (trieRoutes[node] < 0)
+                trieRoutes[node] = i;
+        }
+        indexedModificationCount = modificationCount;
+        indexedNetworkModificationCount = networkModificationCount;
+    }
+
+    private int newTrieNode() {
+        if (trieNodeNumber == trieRoutes.length) {
+            trieChildren = Arrays.copyOf(trieChildren, trieChildren.length * 2);
+            trieRoutes = Arrays.copyOf(trieRoutes, trieRoutes.length * 2);
+            Arrays.fill(trieRoutes, trieNodeNumber, trieRoutes.length, -1);
+        }
+        return trieNodeNumber++;
     }
 
     /**
@@ -57,8 +172,8 @@ public class RoutingTable implements Cloneable {
             Element interfaceElement = routeElement.getChild("interface");
 
             if (destinationElement != null && maskElement != null && gatewayElement != null && interfaceElement != null) {
-                Route route = new Route(new IPAddress(destinationElement.getText()), new IPAddress(gatewayElement.getText()), new IPAddress(maskElement.getText()), host.getInterfaces().get(interfaceElement.getText()));
-                this.getRouteList().add(route);
+                Route route = new Route(IPAddress.valueOf(destinationElement.getText()), IPAddress.valueOf(gatewayElement.getText()), IPAddress.valueOf(maskElement.getText()), host.getInterfaces().get(interfaceElement.getText()));
+                this.addRoute(route);
             }
         }
     }
@@ -67,10 +182,11 @@ public class RoutingTable implements Cloneable {
     public RoutingTable clone() throws CloneNotSupportedException {
         RoutingTable copie = (RoutingTable) super.clone();
 
-        copie.setRouteList(new ArrayList<Route>(this.getRouteList()));
-        for (int i = 0; i < copie.getRouteList().size(); i++) {
-            copie.getRouteList().set(i, copie.getRouteList().get(i).clone());
+        ArrayList<Route> routes = new ArrayList<Route>(this.routeList.size());
+        for (Route route : this.routeList) {
+            routes.add(route.clone());
         }
+        copie.setRouteList(routes);
 
         return copie;
     }
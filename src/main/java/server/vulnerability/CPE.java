@@ -46,6 +46,8 @@ public class CPE {
                 Vulnerability vulnerability = new Vulnerability(conn, res.getInt(1));
                 result.add(vulnerability);
             }
+            res.close();
+            pstmt.close();
         }
         return result;
     }
@@ -58,7 +60,7 @@ public class CPE {
      * @throws java.sql.SQLException the sQL exception
      */
     public boolean inDatabase(Connection conn) throws SQLException {
-        PreparedStatement pstmt = conn.prepareStatement("SELECT id,cpe_id FROM cpe WHERE cpe_id LIKE ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT id,cpe_id FROM cpe WHERE cpe_id = ? COLLATE NOCASE");
         pstmt.setString(1, this.cpe_id);
         pstmt.execute();
         ResultSet res = pstmt.getResultSet();
@@ -67,8 +69,8 @@ public class CPE {
             //We get the id of this CPE
             id = res.getInt(1);
         }
-        pstmt.close();
         res.close();
+        pstmt.close();
         return result;
     }
 
@@ -90,6 +92,7 @@ public class CPE {
             ResultSet resultSetId = pstmt.getGeneratedKeys();
             id = resultSetId.getInt(1);
             resultSetId.close();
+            pstmt.close();
         }
     }
 
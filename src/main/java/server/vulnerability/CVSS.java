@@ -58,6 +58,22 @@ public class CVSS {
         loadFromDatabase(id_cvss, conn);
     }
 
+    /**
+     * Create a copy of a cvss
+     *
+     * @param cvss the cvss to copy
+     */
+    public CVSS(CVSS cvss) {
+        this.id = cvss.id;
+        this.score = cvss.score;
+        this.accessVector = cvss.accessVector;
+        this.accessComplexity = cvss.accessComplexity;
+        this.authentication = cvss.authentication;
+        this.confidentialityImpact = cvss.confidentialityImpact;
+        this.integrityImpact = cvss.integrityImpact;
+        this.availabilityImpact = cvss.availabilityImpact;
+    }
+
     /**
      * Gets id.
      *
@@ -228,9 +244,12 @@ public class CVSS {
             setIntegrityImpact(ImpactValues.fromString(res.getString(7)));
             setAvailabilityImpact(ImpactValues.fromString(res.getString(8)));
             res.close();
+            pstmt.close();
             return true;
 
         } else {
+            res.close();
+            pstmt.close();
             return false;
         }
     }
@@ -254,6 +273,7 @@ public class CVSS {
         ResultSet resultSetId = pstmt.getGeneratedKeys();
         setId(resultSetId.getInt(1));
         resultSetId.close();
+        pstmt.close();
     }
 
     /**
@@ -29,11 +29,12 @@ public class CWE {
             ResultSet resultSetId = pstmt.getGeneratedKeys();
             id = resultSetId.getInt(1);
             resultSetId.close();
+            pstmt.close();
         }
     }
 
     public boolean inDatabase(Connection conn) throws SQLException {
-        PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM cwe WHERE id LIKE ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM cwe WHERE id = ?");
         pstmt.setInt(1, this.id);
         pstmt.execute();
         ResultSet res = pstmt.getResultSet();
@@ -42,8 +43,8 @@ public class CWE {
             //We get the id of this CPE
             id = res.getInt(1);
         }
-        pstmt.close();
         res.close();
+        pstmt.close();
         return result;
     }
 
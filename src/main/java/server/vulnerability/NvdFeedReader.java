@@ -0,0 +1,272 @@
+package server.vulnerability;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the items of the CVE_Items array of a NVD JSON feed one at a time, without loading the whole feed in memory.
+ * <p>
+ * The feed is parsed token by token with the streaming API of json-simple, in a background thread which puts each
+ * item in a bounded queue. The next items are parsed while the previous ones are saved in the database, and the
+ * parsing waits when the queue is full: the memory used does not depend on the size of the feed.
+ */
+public class NvdFeedReader implements Closeable {
+
+    /**
+     * Put in the queue after the last item
+     */
+    private static final Object END = new Object();
+
+    /**
+     * The parsed items, waiting to be read
+     */
+    private final BlockingQueue<Object> queue;
+
+    /**
+     * The thread parsing the feed
+     */
+    private final Thread parser;
+
+    /**
+     * The error that stopped the parsing, null if there was no error
+     */
+    private volatile Exception error = null;
+
+    /**
+     * True when the reader is closed
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * True when the last item has been read
+     */
+    private boolean ended = false;
+
+    /**
+     * The number of items read
+     */
+    private long count = 0;
+
+    /**
+     * Start parsing a feed
+     *
+     * @param reader    the reader of the NVD JSON feed
+     * @param queueSize the maximum number of parsed items waiting to be read
+     */
+    public NvdFeedReader(final Reader reader, int queueSize) {
+        this.queue = new ArrayBlockingQueue<Object>(Math.max(1, queueSize));
+        this.parser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new JSONParser().parse(reader, new ItemHandler());
+                } catch (Exception e) {
+                    error = e;
+                } finally {
+                    if (!closed) {
+                        try {
+                            queue.put(END);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+        }, "nvd-feed-reader");
+        this.parser.setDaemon(true);
+        this.parser.start();
+    }
+
+    /**
+     * Read the next item of the feed, waiting for it to be parsed
+     *
+     * @return the next item of the CVE_Items array, null after the last item
+     * @throws Exception if the feed can not be read or parsed
+     */
+    public JSONObject next() throws Exception {
+        if (ended) {
+            return null;
+        }
+        Object item = queue.take();
+        if (item == END) {
+            ended = true;
+            if (error != null) {
+                throw error;
+            }
+            return null;
+        }
+        count++;
+        return (JSONObject) item;
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the number of items read
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Stop the parsing of the feed. The reader of the feed is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        parser.interrupt();
+        queue.clear();
+    }
+
+    /**
+     * Builds the items of the CVE_Items array of the root object from the tokens of the feed, and puts them in the queue
+     */
+    private class ItemHandler implements ContentHandler {
+
+        /**
+         * The depth of the current object or array out of the items (1 in the root object)
+         */
+        private int depth = 0;
+
+        /**
+         * The key of the current entry of the root object
+         */
+        private String rootKey = null;
+
+        /**
+         * True in the CVE_Items array
+         */
+        private boolean inItems = false;
+
+        /**
+         * The objects and arrays of the item being built, the current one first
+         */
+        private final LinkedList<Object> containers = new LinkedList<Object>();
+
+        /**
+         * The keys of the current entries of the objects of the item being built, the current one first
+         */
+        private final LinkedList<String> keys = new LinkedList<String>();
+
+        @Override
+        public void startJSON() throws ParseException, IOException {
+
+        }
+
+        @Override
+        public void endJSON() throws ParseException, IOException {
+
+        }
+
+        @Override
+        public boolean startObject() throws ParseException, IOException {
+            if (!containers.isEmpty() || (inItems && depth == 2)) {
+                startContainer(new JSONObject());
+            } else {
+                depth++;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                endContainer();
+            } else {
+                depth--;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                keys.push(key);
+            } else if (depth == 1) {
+                rootKey = key;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                keys.pop();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startArray() throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                startContainer(new JSONArray());
+            } else {
+                depth++;
+                if (depth == 2 && "CVE_Items".equals(rootKey)) {
+                    inItems = true;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endArray() throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                endContainer();
+            } else {
+                if (depth == 2) {
+                    inItems = false;
+                }
+                depth--;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) throws ParseException, IOException {
+            if (!containers.isEmpty()) {
+                addToCurrentContainer(value);
+            }
+            return true;
+        }
+
+        private void startContainer(Object container) {
+            if (!containers.isEmpty()) {
+                addToCurrentContainer(container);
+            }
+            containers.push(container);
+        }
+
+        private void endContainer() throws IOException {
+            Object container = containers.pop();
+            if (containers.isEmpty()) {
+                try {
+                    queue.put(container);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("The parsing of the NVD feed has been stopped");
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addToCurrentContainer(Object value) {
+            Object container = containers.peek();
+            if (container instanceof JSONObject) {
+                ((JSONObject) container).put(keys.peek(), value);
+            } else {
+                ((JSONArray) container).add(value);
+            }
+        }
+    }
+}
@@ -3,15 +3,21 @@ package server.vulnerability;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.IOException;
+import java.io.FilenameFilter;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import server.database.Database;
+import server.database.SchemaMigrations;
 import server.properties.ProjectProperties;
 
 
@@ -19,63 +25,227 @@ public class UpdateDataBase {
 
     public static void main(String[] args) {
         UpdateDataBase updateDataBase = new UpdateDataBase();
-        updateDataBase.ExtractDataToDataBase("2016");
+        if (args.length == 0) {
+            updateDataBase.ExtractDataToDataBase("2016");
+            return;
+        }
+        //Bulk import: a year, a range of years (2002-2019) or a directory of feeds
+        try {
+            updateDataBase.importFeeds(getFeeds(args[0]), getThreads());
+        } catch (Exception e) {
+            Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, null, e);
+        }
     }
 
     public void ExtractDataToDataBase(String year) {
-        //JSON parser object to parse read file
-        JSONParser jsonParser = new JSONParser();
-        String path = ProjectProperties.class.getResource("/DataBaseFiles/" + year + ".json").getPath();
-        try (FileReader reader = new FileReader(path)) {
-            //Read JSON file
-            JSONObject obj = (JSONObject) jsonParser.parse(reader);
-            JSONArray items = (JSONArray) obj.get("CVE_Items");
-            String itemsNumbers = (String) obj.get("CVE_data_numberOfCVEs");
-            ParseDataAndSaveOnDB(items, itemsNumbers);
-        } catch (FileNotFoundException e) {
-            Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, null, e);
-        } catch (IOException e) {
-            Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, null, e);
-        } catch (ParseException e) {
-            Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, null, e);
+        try {
+            importFeeds(getFeeds(year), 1);
         } catch (Exception ex) {
             Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
-    private void ParseDataAndSaveOnDB(JSONArray items, String itemsNumbers) throws Exception {
+    /**
+     * Get the NVD JSON feeds to import
+     *
+     * @param feeds a year or a range of years as "2002-2019" (the files DataBaseFiles/[year].json of the resources),
+     *              or a directory containing the feeds
+     * @return the files of the feeds
+     * @throws Exception if the feed of a year is missing
+     */
+    public static List<File> getFeeds(String feeds) throws Exception {
+        List<File> result = new ArrayList<File>();
+        File directory = new File(feeds);
+        if (directory.isDirectory()) {
+            File[] files = directory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".json");
+                }
+            });
+            Arrays.sort(files);
+            result.addAll(Arrays.asList(files));
+            return result;
+        }
+        String[] years = feeds.split("-");
+        int firstYear = Integer.parseInt(years[0].trim());
+        int lastYear = years.length > 1 ? Integer.parseInt(years[1].trim()) : firstYear;
+        for (int year = firstYear; year <= lastYear; year++) {
+            URL resource = ProjectProperties.class.getResource("/DataBaseFiles/" + year + ".json");
+            if (resource == null) {
+                throw new FileNotFoundException("No NVD feed for the year " + year);
+            }
+            result.add(new File(resource.getPath()));
+        }
+        return result;
+    }
+
+    /**
+     * Import NVD JSON feeds in the database. The feeds are parsed in parallel, and their CVEs are saved by the
+     * calling thread only, as SQLite allows one writer at a time.
+     *
+     * @param feeds   the files of the feeds
+     * @param threads the number of feeds parsed at the same time
+     * @throws Exception if the CVEs can not be saved (a feed that can not be parsed is only reported)
+     */
+    public void importFeeds(List<File> feeds, int threads) throws Exception {
+        final BlockingQueue<Object> items = new ArrayBlockingQueue<Object>(getQueueSize());
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, feeds.size())));
+        List<FeedSummary> summaries = new ArrayList<FeedSummary>();
+        for (final File feed : feeds) {
+            final FeedSummary summary = new FeedSummary(feed.getName());
+            summaries.add(summary);
+            workers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    parseFeed(feed, summary, items);
+                }
+            });
+        }
+        workers.shutdown();
+
         Database db = getDatabaseConnection();
-        for (int i = 0; i < Integer.parseInt(itemsNumbers); i++) {
-            JSONObject item = (JSONObject) items.get(i);
-
-            //extract Cvss Data
-            JSONObject impactData = (JSONObject) item.get("impact");
-            if (!impactData.isEmpty()) {
-                CVSS cvss = ParsaImpactData(impactData);
-                cvss.addToDatabase(db.getConn());
-
-                //extract Vulnerability Data
-                JSONObject cveData = (JSONObject) item.get("cve");
-                if (!cveData.isEmpty()) {
-                    Vulnerability vulnerability = ParsaCVEData_vul(cveData);
-                    vulnerability.cvss.setId(cvss.getId());
-                    vulnerability.addToDatabase(db.getConn());
-                    
-                    //extract cpe data
-                    JSONObject configurationsData = (JSONObject) item.get("configurations");
-                    if (!configurationsData.isEmpty()) {
-                        ArrayList<CPE> cpeList = ParsaConfigurationData(configurationsData);
-                        //know we get all Data
-                        for(int j=0 ; j < cpeList.size() ; j++){
-                            cpeList.get(j).saveToDatabase(db.getConn());
-                            vulnerability.addACPEInDatabase(cpeList.get(j), db.getConn());
-                        }
-                        
-                    }
+        if (db == null) {
+            workers.shutdownNow();
+            throw new Exception("The database can not be opened");
+        }
+        long start = System.nanoTime();
+        long saved = 0;
+        VulnerabilityBatchWriter writer = new VulnerabilityBatchWriter(db.getConn(), getBatchSize());
+        try {
+            int endedFeeds = 0;
+            while (endedFeeds < feeds.size()) {
+                Object item = items.take();
+                if (item instanceof FeedSummary) {
+                    endedFeeds++;
+                    Logger.getLogger(UpdateDataBase.class.getName()).log(Level.INFO, item.toString());
+                    continue;
                 }
+                ParsedCVE parsedCVE = (ParsedCVE) item;
+                writer.add(parsedCVE.vulnerability, parsedCVE.cpes);
+                parsedCVE.summary.saved++;
+                saved++;
             }
-            System.out.println("CVE_" + i + "Update in database");
+        } catch (Exception e) {
+            workers.shutdownNow();
+            throw e;
+        } finally {
+            try {
+                writer.close();
+                //update the statistics of the indexes for the query planner, after the import of the CVEs
+                SchemaMigrations.analyze(db.getConn());
+            } finally {
+                db.clearVulnerabilityCache();
+                db.close();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(saved).append(" CVEs updated in database from ").append(feeds.size()).append(" feeds in ")
+                .append(String.format("%.1f", seconds)).append(" s (")
+                .append(String.format("%.0f", seconds > 0 ? saved / seconds : 0.)).append(" CVEs/s)");
+        for (FeedSummary summary : summaries) {
+            report.append("\n  ").append(summary);
         }
+        Logger.getLogger(UpdateDataBase.class.getName()).log(Level.INFO, report.toString());
+    }
+
+    /**
+     * Parse the CVEs of a feed and put them in the queue of the CVEs to save, followed by the summary of the feed
+     *
+     * @param feed    the file of the feed
+     * @param summary the summary of the feed
+     * @param items   the queue of the CVEs to save
+     */
+    private void parseFeed(File feed, FeedSummary summary, BlockingQueue<Object> items) {
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        try (FileReader reader = new FileReader(feed);
+             NvdFeedReader feedReader = new NvdFeedReader(reader, getQueueSize())) {
+            JSONObject item;
+            while ((item = feedReader.next()) != null) {
+                ParsedCVE parsedCVE = null;
+                try {
+                    parsedCVE = parseItem(item);
+                } catch (RuntimeException e) {
+                    Logger.getLogger(UpdateDataBase.class.getName()).log(Level.FINE, "Invalid CVE item in " + feed.getName(), e);
+                }
+                if (parsedCVE == null) {
+                    summary.skipped++;
+                    continue;
+                }
+                parsedCVE.summary = summary;
+                summary.parsed++;
+                items.put(parsedCVE);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            summary.error = "interrupted";
+        } catch (Exception e) {
+            Logger.getLogger(UpdateDataBase.class.getName()).log(Level.SEVERE, "The feed " + feed.getName() + " can not be parsed", e);
+            summary.error = e.toString();
+        } finally {
+            summary.parseSeconds = (System.nanoTime() - start) / 1e9;
+            if (!interrupted) {
+                try {
+                    items.put(summary);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Extract the vulnerability, its cvss and its CPEs from an item of a feed
+     *
+     * @param item an item of the CVE_Items array
+     * @return the parsed CVE, null if the item has no CVSS v2 impact
+     * @throws Exception
+     */
+    private ParsedCVE parseItem(JSONObject item) throws Exception {
+        //extract Cvss Data
+        JSONObject impactData = (JSONObject) item.get("impact");
+        if (impactData == null || impactData.get("baseMetricV2") == null) {
+            return null;
+        }
+        //extract Vulnerability Data
+        JSONObject cveData = (JSONObject) item.get("cve");
+        if (cveData == null || cveData.isEmpty()) {
+            return null;
+        }
+        Vulnerability vulnerability = ParsaCVEData_vul(cveData);
+        vulnerability.cvss = ParsaImpactData(impactData);
+
+        //extract cpe data
+        JSONObject configurationsData = (JSONObject) item.get("configurations");
+        ArrayList<CPE> cpeList = new ArrayList<>();
+        if (configurationsData != null && !configurationsData.isEmpty()) {
+            cpeList = ParsaConfigurationData(configurationsData);
+        }
+        return new ParsedCVE(vulnerability, cpeList);
+    }
+
+    /**
+     * @return the number of feeds parsed at the same time, the nvd-import-threads property
+     */
+    private static int getThreads() {
+        return ProjectProperties.getInstance().getIntegerProperty("nvd-import-threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the maximum number of parsed CVEs waiting to be saved, the nvd-import-queue-size property
+     */
+    private static int getQueueSize() {
+        return ProjectProperties.getInstance().getIntegerProperty("nvd-import-queue-size", 256);
+    }
+
+    /**
+     * @return the number of CVEs saved in a transaction, the nvd-import-batch-size property
+     */
+    private static int getBatchSize() {
+        return ProjectProperties.getInstance().getIntegerProperty("nvd-import-batch-size", 1000);
     }
 
     private Vulnerability ParsaCVEData_vul(JSONObject cveData) throws Exception {
@@ -191,4 +361,40 @@ public class UpdateDataBase {
         return cpelist;
     }
 
+    /**
+     * A CVE parsed from a feed, waiting to be saved
+     */
+    private static class ParsedCVE {
+        private final Vulnerability vulnerability;
+        private final List<CPE> cpes;
+        private FeedSummary summary;
+
+        private ParsedCVE(Vulnerability vulnerability, List<CPE> cpes) {
+            this.vulnerability = vulnerability;
+            this.cpes = cpes;
+        }
+    }
+
+    /**
+     * The result of the import of a feed. Put in the queue after the CVEs of the feed.
+     */
+    private static class FeedSummary {
+        private final String name;
+        private long parsed = 0;
+        private long skipped = 0;
+        private long saved = 0;
+        private double parseSeconds = 0;
+        private String error = null;
+
+        private FeedSummary(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + parsed + " CVEs parsed in " + String.format("%.1f", parseSeconds) + " s, " + saved
+                    + " saved, " + skipped + " skipped (no CVSS v2 impact or invalid)" + (error == null ? "" : ", error: " + error);
+        }
+    }
+
 }
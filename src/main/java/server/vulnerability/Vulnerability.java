@@ -103,6 +103,8 @@ public class Vulnerability {
             Vulnerability vulnerability = new Vulnerability(res.getInt(1), res.getString(2), res.getString(3));
             result.add(vulnerability);
         }
+        res.close();
+        pstmt.close();
         return result;
     }
 
@@ -115,7 +117,7 @@ public class Vulnerability {
      * @throws Exception
      */
     public static int getIdVulnerabilityFromCVE(String cve, Connection conn) throws Exception {
-        PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM vulnerability WHERE cve LIKE ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM vulnerability WHERE cve = ? COLLATE NOCASE");
         pstmt.setString(1, cve);
         pstmt.execute();
         ResultSet res = pstmt.getResultSet();
@@ -125,6 +127,7 @@ public class Vulnerability {
             result = res.getInt(1);
         }
         res.close();
+        pstmt.close();
         return result;
     }
 
@@ -138,7 +141,7 @@ public class Vulnerability {
      * @throws java.sql.SQLException
      */
     public boolean inDatabase(Connection conn) throws SQLException {
-        PreparedStatement pstmt = conn.prepareStatement("SELECT id,cve,description,cvss_id FROM vulnerability WHERE cve LIKE ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT id,cve,description,cvss_id FROM vulnerability WHERE cve = ? COLLATE NOCASE");
         pstmt.setString(1, cve);
         pstmt.execute();
         ResultSet res = pstmt.getResultSet();
@@ -156,8 +159,8 @@ public class Vulnerability {
                 pstmt2.close();
             }
         }
-        pstmt.close();
         res.close();
+        pstmt.close();
         return result;
     }
 
@@ -177,6 +180,7 @@ public class Vulnerability {
             ResultSet resultSetId = pstmt.getGeneratedKeys();
             id = resultSetId.getInt(1);
             resultSetId.close();
+            pstmt.close();
         }
     }
 
@@ -239,13 +243,16 @@ public class Vulnerability {
             cve = res.getString(2);
             description = res.getString(3);
             int id_cvss = res.getInt(4);
+            res.close();
+            pstmt.close();
             if (id_cvss > 0) {
                 cvss.loadFromDatabase(id_cvss, conn);
             }
-            res.close();
             return true;
 
         } else {
+            res.close();
+            pstmt.close();
             return false;
         }
     }
@@ -260,7 +267,7 @@ public class Vulnerability {
         if (cve.isEmpty() || cve.equals("")) {
             return;
         }
-        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM vulnerability WHERE cve LIKE ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM vulnerability WHERE cve = ? COLLATE NOCASE");
         pstmt.setString(1, cve);
         pstmt.execute();
         ResultSet res = pstmt.getResultSet();
@@ -268,11 +275,15 @@ public class Vulnerability {
             id = res.getInt(1);
             description = res.getString(3);
             int id_cvss = res.getInt(4);
+            res.close();
+            pstmt.close();
             if (id_cvss > 0) {
                 cvss.loadFromDatabase(id_cvss, conn);
             }
-            res.close();
 
+        } else {
+            res.close();
+            pstmt.close();
         }
     }
 
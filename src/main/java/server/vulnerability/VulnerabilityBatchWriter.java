@@ -0,0 +1,292 @@
+package server.vulnerability;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves vulnerabilities, their cvss and their CPEs in the database with batches of statements, and commits a
+ * transaction every batchSize vulnerabilities.
+ * <p>
+ * The ids of the vulnerabilities and of the CPEs already in the database are loaded once in memory, so that no
+ * query is needed to know whether a CVE or a CPE must be inserted or updated. The ids of the new rows are given by
+ * the writer, so that the inserts can be batched: the writer must be the only one writing in these tables until it
+ * is closed. If an error occurs, the current transaction is rolled back and the writer can not be used anymore.
+ */
+public class VulnerabilityBatchWriter {
+
+    /**
+     * The database connection
+     */
+    private final Connection conn;
+
+    /**
+     * The number of vulnerabilities saved in a transaction
+     */
+    private final int batchSize;
+
+    /**
+     * The auto-commit mode of the connection before the writer
+     */
+    private final boolean autoCommit;
+
+    /**
+     * The ids of the vulnerabilities in the database, by upper case CVE
+     */
+    private final HashMap<String, Integer> vulnerabilityIds = new HashMap<String, Integer>();
+
+    /**
+     * The ids of the cvss of the vulnerabilities in the database, by upper case CVE
+     */
+    private final HashMap<String, Integer> cvssIds = new HashMap<String, Integer>();
+
+    /**
+     * The ids of the CPEs in the database, by lower case CPE identifier
+     */
+    private final HashMap<String, Integer> cpeIds = new HashMap<String, Integer>();
+
+    private final PreparedStatement insertCVSS;
+    private final PreparedStatement updateCVSS;
+    private final PreparedStatement insertVulnerability;
+    private final PreparedStatement updateVulnerability;
+    private final PreparedStatement insertCPE;
+    private final PreparedStatement insertCPEVulnerability;
+
+    /**
+     * The last ids given to a new row
+     */
+    private int lastCVSSId;
+    private int lastVulnerabilityId;
+    private int lastCPEId;
+
+    /**
+     * The number of vulnerabilities saved in the current transaction
+     */
+    private int pending = 0;
+
+    /**
+     * The number of vulnerabilities saved in committed transactions
+     */
+    private long committed = 0;
+
+    /**
+     * True if the current transaction has been rolled back after an error
+     */
+    private boolean failed = false;
+
+    /**
+     * Create a writer and start a transaction
+     *
+     * @param conn      the database connection
+     * @param batchSize the number of vulnerabilities saved in a transaction
+     * @throws SQLException
+     */
+    public VulnerabilityBatchWriter(Connection conn, int batchSize) throws SQLException {
+        this.conn = conn;
+        this.batchSize = Math.max(1, batchSize);
+        this.autoCommit = conn.getAutoCommit();
+
+        Statement stmt = conn.createStatement();
+        ResultSet res = stmt.executeQuery("SELECT id, cve, cvss_id FROM vulnerability");
+        while (res.next()) {
+            String cve = res.getString(2);
+            if (cve != null) {
+                vulnerabilityIds.put(cve.toUpperCase(), res.getInt(1));
+                cvssIds.put(cve.toUpperCase(), res.getInt(3));
+            }
+        }
+        res.close();
+        res = stmt.executeQuery("SELECT id, cpe_id FROM cpe");
+        while (res.next()) {
+            String cpe = res.getString(2);
+            if (cpe != null && !cpeIds.containsKey(cpe.toLowerCase())) {
+                cpeIds.put(cpe.toLowerCase(), res.getInt(1));
+            }
+        }
+        res.close();
+        stmt.close();
+        lastCVSSId = getLastId("cvss");
+        lastVulnerabilityId = getLastId("vulnerability");
+        lastCPEId = getLastId("cpe");
+
+        insertCVSS = conn.prepareStatement("INSERT INTO cvss(id,score,access_vector,access_complexity,authentication,confidentiality_impact,integrity_impact,availability_impact) VALUES(?,?,?,?,?,?,?,?)");
+        updateCVSS = conn.prepareStatement("UPDATE cvss SET score = ?, access_vector = ?, access_complexity = ?, authentication = ?, confidentiality_impact = ?, integrity_impact = ?, availability_impact = ? WHERE id = ?");
+        insertVulnerability = conn.prepareStatement("INSERT INTO vulnerability(id,cve,description,cvss_id) VALUES(?,?,?,?)");
+        updateVulnerability = conn.prepareStatement("UPDATE vulnerability SET description = ?, cvss_id = ? WHERE id = ?");
+        insertCPE = conn.prepareStatement("INSERT INTO cpe(id,cpe_id) VALUES(?,?)");
+        insertCPEVulnerability = conn.prepareStatement("REPLACE INTO cpe_vulnerability(id_cpe,id_vulnerability) VALUES(?,?)");
+        conn.setAutoCommit(false);
+    }
+
+    /**
+     * Save a vulnerability, its cvss and the CPEs it affects. The ids of the objects are set.
+     *
+     * @param vulnerability the vulnerability
+     * @param cpes          the vulnerable CPEs
+     * @throws SQLException
+     */
+    public void add(Vulnerability vulnerability, List<CPE> cpes) throws SQLException {
+        if (failed) {
+            throw new SQLException("The transaction has been rolled back after an error");
+        }
+        try {
+            String cve = vulnerability.cve.toUpperCase();
+            CVSS cvss = vulnerability.cvss;
+            Integer cvssId = cvssIds.get(cve);
+            if (cvssId != null && cvssId > 0) {
+                cvss.setId(cvssId);
+                setCVSSParameters(updateCVSS, 1, cvss);
+                updateCVSS.setInt(8, cvss.getId());
+                updateCVSS.addBatch();
+            } else {
+                cvss.setId(++lastCVSSId);
+                insertCVSS.setInt(1, cvss.getId());
+                setCVSSParameters(insertCVSS, 2, cvss);
+                insertCVSS.addBatch();
+            }
+            cvssIds.put(cve, cvss.getId());
+
+            Integer vulnerabilityId = vulnerabilityIds.get(cve);
+            if (vulnerabilityId != null) {
+                vulnerability.id = vulnerabilityId;
+                updateVulnerability.setString(1, vulnerability.description);
+                updateVulnerability.setInt(2, cvss.getId());
+                updateVulnerability.setInt(3, vulnerability.id);
+                updateVulnerability.addBatch();
+            } else {
+                vulnerability.id = ++lastVulnerabilityId;
+                insertVulnerability.setInt(1, vulnerability.id);
+                insertVulnerability.setString(2, vulnerability.cve);
+                insertVulnerability.setString(3, vulnerability.description);
+                insertVulnerability.setInt(4, cvss.getId());
+                insertVulnerability.addBatch();
+                vulnerabilityIds.put(cve, vulnerability.id);
+            }
+
+            for (CPE cpe : cpes) {
+                if (cpe.cpe_id.isEmpty()) {
+                    continue;
+                }
+                Integer cpeId = cpeIds.get(cpe.cpe_id.toLowerCase());
+                if (cpeId != null) {
+                    cpe.id = cpeId;
+                } else {
+                    cpe.id = ++lastCPEId;
+                    insertCPE.setInt(1, cpe.id);
+                    insertCPE.setString(2, cpe.cpe_id);
+                    insertCPE.addBatch();
+                    cpeIds.put(cpe.cpe_id.toLowerCase(), cpe.id);
+                }
+                insertCPEVulnerability.setInt(1, cpe.id);
+                insertCPEVulnerability.setInt(2, vulnerability.id);
+                insertCPEVulnerability.addBatch();
+            }
+
+            if (++pending >= batchSize) {
+                commit();
+            }
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Commit the current transaction, close the statements and restore the auto-commit mode of the connection
+     *
+     * @throws SQLException
+     */
+    public void close() throws SQLException {
+        try {
+            if (!failed) {
+                commit();
+            }
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        } finally {
+            insertCVSS.close();
+            updateCVSS.close();
+            insertVulnerability.close();
+            updateVulnerability.close();
+            insertCPE.close();
+            insertCPEVulnerability.close();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Gets committed.
+     *
+     * @return the number of vulnerabilities saved in committed transactions
+     */
+    public long getCommitted() {
+        return committed;
+    }
+
+    /**
+     * Execute the batches of the current transaction and commit it
+     */
+    private void commit() throws SQLException {
+        insertCVSS.executeBatch();
+        updateCVSS.executeBatch();
+        insertVulnerability.executeBatch();
+        updateVulnerability.executeBatch();
+        insertCPE.executeBatch();
+        insertCPEVulnerability.executeBatch();
+        conn.commit();
+        committed += pending;
+        pending = 0;
+        Logger.getLogger(VulnerabilityBatchWriter.class.getName()).log(Level.INFO, committed + " vulnerabilities saved in database");
+    }
+
+    private void rollback() {
+        failed = true;
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            Logger.getLogger(VulnerabilityBatchWriter.class.getName()).log(Level.SEVERE, "The transaction can not be rolled back", e);
+        }
+    }
+
+    /**
+     * @param table a table with an AUTOINCREMENT id
+     * @return the last id given to a row of the table
+     */
+    private int getLastId(String table) throws SQLException {
+        int result = 0;
+        PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(id) FROM " + table);
+        ResultSet res = pstmt.executeQuery();
+        if (res.next()) {
+            result = res.getInt(1);
+        }
+        res.close();
+        pstmt.close();
+        //A deleted id is never given again to a row
+        pstmt = conn.prepareStatement("SELECT seq FROM sqlite_sequence WHERE name = ?");
+        pstmt.setString(1, table);
+        res = pstmt.executeQuery();
+        if (res.next()) {
+            result = Math.max(result, res.getInt(1));
+        }
+        res.close();
+        pstmt.close();
+        return result;
+    }
+
+    private static void setCVSSParameters(PreparedStatement pstmt, int first, CVSS cvss) throws SQLException {
+        pstmt.setDouble(first, cvss.getScore());
+        pstmt.setString(first + 1, cvss.getAccessVector().toString().toUpperCase());
+        pstmt.setString(first + 2, cvss.getAccessComplexity().toString().toUpperCase());
+        pstmt.setString(first + 3, cvss.getAuthentication().toString().toUpperCase());
+        pstmt.setString(first + 4, cvss.getConfidentialityImpact().toString().toUpperCase());
+        pstmt.setString(first + 5, cvss.getIntegrityImpact().toString().toUpperCase());
+        pstmt.setString(first + 6, cvss.getAvailabilityImpact().toString().toUpperCase());
+    }
+}
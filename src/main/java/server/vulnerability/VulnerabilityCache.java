@@ -0,0 +1,227 @@
+package server.vulnerability;
+
+import server.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-through cache of the vulnerabilities of the database and of their CVSS, by CVE.
+ * <p>
+ * The cache is bounded: when it is full, the least recently used vulnerability is evicted. The CVEs that are not
+ * in the database are also cached, so that they are not searched again. The vulnerabilities can be prefetched
+ * with one query for many CVEs, instead of two queries for each vulnerability.
+ * The cached vulnerabilities are not modified: their parameters are copied in the vulnerabilities that are loaded.
+ * The cache of a {@link Database} is cleared when the database is changed, see {@link Database#getVulnerabilityCache()}.
+ */
+public class VulnerabilityCache {
+
+    /**
+     * The maximum number of CVEs searched in one query (SQLite allows 999 parameters by default)
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * The vulnerabilities of the database by upper case CVE, null for a CVE that is not in the database,
+     * the least recently used first
+     */
+    private final LinkedHashMap<String, Vulnerability> vulnerabilities;
+
+    /**
+     * The number of queries run on the database
+     */
+    private long queries = 0;
+
+    /**
+     * Create an empty cache
+     *
+     * @param maximumSize the maximum number of cached CVEs
+     */
+    public VulnerabilityCache(final int maximumSize) {
+        this.vulnerabilities = new LinkedHashMap<String, Vulnerability>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Vulnerability> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Load all the parameters : id, description, cvss (except the CVE) of a vulnerability from the cache, or from the
+     * database if its CVE is not cached. Same as {@link Vulnerability#loadParametersFromDatabase(Connection)}.
+     *
+     * @param vulnerability the vulnerability to load
+     * @param conn          the database connection
+     * @throws SQLException
+     */
+    public void loadParameters(Vulnerability vulnerability, Connection conn) throws SQLException {
+        if (vulnerability.cve.isEmpty()) {
+            return;
+        }
+        String key = vulnerability.cve.toUpperCase();
+        Vulnerability cached;
+        synchronized (this) {
+            cached = vulnerabilities.get(key);
+            if (cached == null && !vulnerabilities.containsKey(key)) {
+                cached = load(key, conn);
+            }
+        }
+        copyParameters(cached, vulnerability);
+    }
+
+    /**
+     * Load all the parameters : id, description, cvss (except the CVE) of a vulnerability from the cache, or with
+     * a connection of the pool of the database if its CVE is not cached
+     *
+     * @param vulnerability the vulnerability to load
+     * @param db            the database
+     * @throws SQLException
+     */
+    public void loadParameters(Vulnerability vulnerability, Database db) throws SQLException {
+        if (vulnerability.cve.isEmpty()) {
+            return;
+        }
+        String key = vulnerability.cve.toUpperCase();
+        synchronized (this) {
+            if (vulnerabilities.containsKey(key)) {
+                copyParameters(vulnerabilities.get(key), vulnerability);
+                return;
+            }
+        }
+        Connection conn = db.getConnection();
+        try {
+            loadParameters(vulnerability, conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Load in the cache the vulnerabilities of the CVEs that are not cached, with a query for each batch of CVEs
+     *
+     * @param cves the CVEs
+     * @param conn the database connection
+     * @throws SQLException
+     */
+    public synchronized void prefetch(Collection<String> cves, Connection conn) throws SQLException {
+        Set<String> missing = new LinkedHashSet<String>();
+        for (String cve : cves) {
+            String key = cve.toUpperCase();
+            if (!vulnerabilities.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        long previousQueries = queries;
+        List<String> batch = new ArrayList<String>();
+        for (String key : missing) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                loadBatch(batch, conn);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            loadBatch(batch, conn);
+        }
+        Logger.getLogger(VulnerabilityCache.class.getName()).log(Level.INFO, missing.size() + " vulnerabilities prefetched with "
+                + (queries - previousQueries) + " queries, " + vulnerabilities.size() + " vulnerabilities in cache");
+    }
+
+    /**
+     * Remove all the vulnerabilities from the cache, after a change of the database
+     */
+    public synchronized void clear() {
+        vulnerabilities.clear();
+    }
+
+    /**
+     * Gets queries.
+     *
+     * @return the number of queries run on the database
+     */
+    public synchronized long getQueries() {
+        return queries;
+    }
+
+    /**
+     * @param cached        the cached vulnerability, null if it is not in the database
+     * @param vulnerability the vulnerability in which its parameters are copied
+     */
+    private static void copyParameters(Vulnerability cached, Vulnerability vulnerability) {
+        if (cached != null) {
+            vulnerability.id = cached.id;
+            vulnerability.description = cached.description;
+            vulnerability.cvss = new CVSS(cached.cvss);
+        }
+    }
+
+    /**
+     * @param key  an upper case CVE that is not cached
+     * @param conn the database connection
+     * @return the vulnerability of the CVE, null if it is not in the database
+     */
+    private Vulnerability load(String key, Connection conn) throws SQLException {
+        List<String> batch = new ArrayList<String>();
+        batch.add(key);
+        loadBatch(batch, conn);
+        return vulnerabilities.get(key);
+    }
+
+    /**
+     * Load the vulnerabilities of CVEs and their cvss with one query and put them in the cache
+     *
+     * @param keys the upper case CVEs
+     * @param conn the database connection
+     */
+    private void loadBatch(List<String> keys, Connection conn) throws SQLException {
+        StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            parameters.append(i == 0 ? "?" : ",?");
+        }
+        //The CVEs are compared without case, as in Vulnerability, with the index of the cve column
+        PreparedStatement pstmt = conn.prepareStatement("SELECT v.id, v.cve, v.description, c.id, c.score, c.access_vector, " +
+                "c.access_complexity, c.authentication, c.confidentiality_impact, c.integrity_impact, c.availability_impact " +
+                "FROM vulnerability v LEFT JOIN cvss c ON c.id = v.cvss_id WHERE v.cve COLLATE NOCASE IN (" + parameters + ")");
+        for (int i = 0; i < keys.size(); i++) {
+            pstmt.setString(i + 1, keys.get(i));
+        }
+        queries++;
+        ResultSet res = pstmt.executeQuery();
+        Map<String, Vulnerability> found = new LinkedHashMap<String, Vulnerability>();
+        while (res.next()) {
+            String key = res.getString(2).toUpperCase();
+            if (found.containsKey(key)) {
+                continue;
+            }
+            Vulnerability vulnerability = new Vulnerability(res.getInt(1), res.getString(2), res.getString(3));
+            if (res.getInt(4) > 0) {
+                CVSS cvss = vulnerability.cvss;
+                cvss.setId(res.getInt(4));
+                cvss.setScore(res.getDouble(5));
+                cvss.setAccessVector(CVSS.AccessVectorValues.fromString(res.getString(6)));
+                cvss.setAccessComplexity(CVSS.AccessComplexityValues.fromString(res.getString(7)));
+                cvss.setAuthentication(CVSS.AuthenticationValues.fromString(res.getString(8)));
+                cvss.setConfidentialityImpact(CVSS.ImpactValues.fromString(res.getString(9)));
+                cvss.setIntegrityImpact(CVSS.ImpactValues.fromString(res.getString(10)));
+                cvss.setAvailabilityImpact(CVSS.ImpactValues.fromString(res.getString(11)));
+            }
+            found.put(key, vulnerability);
+        }
+        res.close();
+        pstmt.close();
+        for (String key : keys) {
+            vulnerabilities.put(key, found.get(key));
+        }
+    }
+}